@@ -0,0 +1,322 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * Class that gives the benchmarks access to the project's classes
+ * JMH will not generate code for benchmarks in the default package, and classes in a named package cannot refer to the
+ * default package, so every call goes through a method handle that is looked up once. The handles are static final,
+ * which lets the JIT treat them as constants and inline straight through them. Project objects are passed as Object
+ */
+final class Api {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodHandle NEW_FIELD = constructor("GaloisField", String.class);
+    private static final MethodHandle FIELD_ORDER = virtual("GaloisField", "getOrder", int.class);
+    private static final MethodHandle FIELD_ADD = virtual("GaloisField", "add", int.class, int.class, int.class);
+    private static final MethodHandle FIELD_MULTIPLY = virtual("GaloisField", "multiplyElements", int.class,
+            int.class, int.class);
+    private static final MethodHandle FIELD_DIVIDE = virtual("GaloisField", "divideElements", int.class,
+            int.class, int.class);
+    private static final MethodHandle FIELD_EXPONENTIATE = virtual("GaloisField", "exponentiate", int.class,
+            int.class, int.class);
+    private static final MethodHandle FIELD_SCALE = virtual("GaloisField", "scaleElements", void.class, int.class,
+            byte[].class, byte[].class, int.class);
+    private static final MethodHandle FIELD_MULTIPLY_ACCUMULATE = virtual("GaloisField", "multiplyAccumulate",
+            void.class, int.class, byte[].class, byte[].class, int.class);
+    private static final MethodHandle FIELD_EVALUATE = virtual("GaloisField", "evaluate", int.class, byte[].class,
+            int.class, int.class, int.class);
+
+    private static final MethodHandle NEW_ENCODER = constructor("Encoder", String.class);
+    private static final MethodHandle ENCODE_WORD = virtual("Encoder", "encodeWord", long.class, long.class);
+    private static final MethodHandle DECODE_WORD = virtual("Encoder", "decodeWord", long.class, long.class, int.class);
+    private static final MethodHandle ENCODE_STRING = virtual("Encoder", "encode", String.class, String.class);
+    private static final MethodHandle DECODE_STRING = virtual("Encoder", "decode", String.class, String.class);
+    private static final MethodHandle ENCODE_PACKED = virtual("Encoder", "encode", byte[].class, byte[].class);
+    private static final MethodHandle DECODE_PACKED = virtual("Encoder", "decode", byte[].class, byte[].class);
+
+    private static final MethodHandle NEW_REED_SOLOMON = constructor("ReedSolomon", String.class, int.class);
+    private static final MethodHandle RS_ENCODE = virtual("ReedSolomon", "encode", byte[].class, byte[].class);
+    private static final MethodHandle RS_DECODE = virtual("ReedSolomon", "decode", byte[].class, byte[].class);
+
+    private static final MethodHandle NEW_KEY = constructor("RsaKey", BigInteger.class, BigInteger.class,
+            BigInteger.class);
+    private static final MethodHandle GENERATE_KEY = findStatic(LOOKUP, "RsaKey", "generate", load("RsaKey"),
+            int.class, SecureRandom.class);
+    private static final MethodHandle KEY_ENCRYPT = virtual("RsaKey", "encrypt", BigInteger.class, BigInteger.class);
+    private static final MethodHandle KEY_DECRYPT = virtual("RsaKey", "decrypt", BigInteger.class, BigInteger.class);
+    private static final MethodHandle KEY_MODULUS = virtual("RsaKey", "getModulus", BigInteger.class);
+
+    private static final MethodHandle DEFAULT_ALPHABET = staticGetter("SymbolAlphabet", "DEFAULT", "SymbolAlphabet");
+    private static final MethodHandle NEW_ENCRYPTER = constructor("Encrypter", load("RsaKey"), load("SymbolAlphabet"),
+            boolean.class);
+    private static final MethodHandle ENCRYPT_STRING = virtual("Encrypter", "encrypt", String.class, String.class);
+    private static final MethodHandle DECRYPT_STRING = virtual("Encrypter", "decrypt", String.class, String.class);
+    private static final MethodHandle ENCRYPT_PACKED = virtual("Encrypter", "encryptPacked", byte[].class,
+            String.class);
+    private static final MethodHandle DECRYPT_PACKED = virtual("Encrypter", "decrypt", String.class, byte[].class);
+    private static final MethodHandle RSA = privateStatic("Encrypter", "rsa", long.class, long.class, long.class,
+            long.class);
+
+    private static final MethodHandle NEW_PIPELINE = constructor("ParallelPipeline", load("Encrypter"),
+            load("Encoder"));
+    private static final MethodHandle PIPELINE_ENCRYPT = virtual("ParallelPipeline", "encryptAndEncode", byte[].class,
+            String.class);
+    private static final MethodHandle PIPELINE_DECRYPT = virtual("ParallelPipeline", "decodeAndDecrypt", String.class,
+            byte[].class);
+
+    private Api() {
+    }
+
+    /**
+     * get a primitive polynomial to use as the generator for a given degree
+     * @param degree, degree of the polynomial
+     * @return the polynomial as a string of bits, most significant first, like Main's "10000011"
+     */
+    static String generator(int degree) {
+        switch(degree) {
+            case 3: return "1011";
+            case 4: return "10011";
+            case 5: return "100101";
+            case 6: return "1000011";
+            case 7: return "10000011";
+            case 8: return "100011101";
+            case 10: return "10000001001";
+            case 12: return "1000001010011";
+            case 16: return "10001000000001011";
+            default: throw new IllegalArgumentException("no generator of degree " + degree);
+        }
+    }
+
+    /**
+     * get the number of bits in a codeword for a generator of the given degree, the Hamming length 2^r-1 shortened to
+     * what fits in a long
+     * @param degree, degree of the generator
+     * @return the codeword length in bits
+     */
+    static int codewordBits(int degree) {
+        return degree >= 6 ? 63 : (1 << degree) - 1;
+    }
+
+    static Object newField(String generator) throws Throwable {
+        return (Object) NEW_FIELD.invokeExact(generator);
+    }
+
+    static int order(Object field) throws Throwable {
+        return (int) FIELD_ORDER.invokeExact(field);
+    }
+
+    static int add(Object field, int exp1, int exp2) throws Throwable {
+        return (int) FIELD_ADD.invokeExact(field, exp1, exp2);
+    }
+
+    static int multiplyElements(Object field, int element1, int element2) throws Throwable {
+        return (int) FIELD_MULTIPLY.invokeExact(field, element1, element2);
+    }
+
+    static int divideElements(Object field, int element1, int element2) throws Throwable {
+        return (int) FIELD_DIVIDE.invokeExact(field, element1, element2);
+    }
+
+    static int exponentiate(Object field, int exp, int pow) throws Throwable {
+        return (int) FIELD_EXPONENTIATE.invokeExact(field, exp, pow);
+    }
+
+    static void scaleElements(Object field, int scalar, byte[] a, byte[] result, int length) throws Throwable {
+        FIELD_SCALE.invokeExact(field, scalar, a, result, length);
+    }
+
+    static void multiplyAccumulate(Object field, int scalar, byte[] a, byte[] accumulator, int length)
+            throws Throwable {
+        FIELD_MULTIPLY_ACCUMULATE.invokeExact(field, scalar, a, accumulator, length);
+    }
+
+    static int evaluate(Object field, byte[] poly, int offset, int length, int x) throws Throwable {
+        return (int) FIELD_EVALUATE.invokeExact(field, poly, offset, length, x);
+    }
+
+    static Object newEncoder(String generator) throws Throwable {
+        return (Object) NEW_ENCODER.invokeExact(generator);
+    }
+
+    static long encodeWord(Object encoder, long word) throws Throwable {
+        return (long) ENCODE_WORD.invokeExact(encoder, word);
+    }
+
+    static long decodeWord(Object encoder, long codeword, int length) throws Throwable {
+        return (long) DECODE_WORD.invokeExact(encoder, codeword, length);
+    }
+
+    static String encode(Object encoder, String message) throws Throwable {
+        return (String) ENCODE_STRING.invokeExact(encoder, message);
+    }
+
+    static String decode(Object encoder, String message) throws Throwable {
+        return (String) DECODE_STRING.invokeExact(encoder, message);
+    }
+
+    static byte[] encode(Object encoder, byte[] packed) throws Throwable {
+        return (byte[]) ENCODE_PACKED.invokeExact(encoder, packed);
+    }
+
+    static byte[] decode(Object encoder, byte[] packed) throws Throwable {
+        return (byte[]) DECODE_PACKED.invokeExact(encoder, packed);
+    }
+
+    static Object newReedSolomon(String generator, int paritySymbols) throws Throwable {
+        return (Object) NEW_REED_SOLOMON.invokeExact(generator, paritySymbols);
+    }
+
+    static byte[] encodeBytes(Object code, byte[] data) throws Throwable {
+        return (byte[]) RS_ENCODE.invokeExact(code, data);
+    }
+
+    static byte[] decodeBytes(Object code, byte[] encoded) throws Throwable {
+        return (byte[]) RS_DECODE.invokeExact(code, encoded);
+    }
+
+    /**
+     * get the toy key that Main uses (p=683, q=701, e=13963), or generate a key of a real size
+     * @param bits, size of the modulus, 0 for the toy key
+     * @return the key
+     */
+    static Object newKey(int bits) throws Throwable {
+        if(bits == 0) {
+            return (Object) NEW_KEY.invokeExact(BigInteger.valueOf(683), BigInteger.valueOf(701),
+                    BigInteger.valueOf(13963));
+        }
+
+        return (Object) GENERATE_KEY.invokeExact(bits, new SecureRandom());
+    }
+
+    static BigInteger encrypt(Object key, BigInteger num) throws Throwable {
+        return (BigInteger) KEY_ENCRYPT.invokeExact(key, num);
+    }
+
+    static BigInteger decrypt(Object key, BigInteger num) throws Throwable {
+        return (BigInteger) KEY_DECRYPT.invokeExact(key, num);
+    }
+
+    static BigInteger modulus(Object key) throws Throwable {
+        return (BigInteger) KEY_MODULUS.invokeExact(key);
+    }
+
+    static Object newEncrypter(Object key, boolean blockMode) throws Throwable {
+        return (Object) NEW_ENCRYPTER.invokeExact(key, (Object) DEFAULT_ALPHABET.invokeExact(), blockMode);
+    }
+
+    static String encrypt(Object encrypter, String message) throws Throwable {
+        return (String) ENCRYPT_STRING.invokeExact(encrypter, message);
+    }
+
+    static String decrypt(Object encrypter, String message) throws Throwable {
+        return (String) DECRYPT_STRING.invokeExact(encrypter, message);
+    }
+
+    static byte[] encryptPacked(Object encrypter, String message) throws Throwable {
+        return (byte[]) ENCRYPT_PACKED.invokeExact(encrypter, message);
+    }
+
+    static String decrypt(Object encrypter, byte[] packed) throws Throwable {
+        return (String) DECRYPT_PACKED.invokeExact(encrypter, packed);
+    }
+
+    static long rsa(long num, long exp, long mod) throws Throwable {
+        return (long) RSA.invokeExact(num, exp, mod);
+    }
+
+    static Object newPipeline(Object encrypter, Object encoder) throws Throwable {
+        return (Object) NEW_PIPELINE.invokeExact(encrypter, encoder);
+    }
+
+    static byte[] encryptAndEncode(Object pipeline, String message) throws Throwable {
+        return (byte[]) PIPELINE_ENCRYPT.invokeExact(pipeline, message);
+    }
+
+    static String decodeAndDecrypt(Object pipeline, byte[] packed) throws Throwable {
+        return (String) PIPELINE_DECRYPT.invokeExact(pipeline, packed);
+    }
+
+    /**
+     * load one of the project's classes, which are all in the default package
+     * @param name, simple name of the class
+     * @return the class
+     */
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name, false, Api.class.getClassLoader());
+        } catch(ClassNotFoundException e) {
+            throw new IllegalStateException("project class " + name + " is not on the class path", e);
+        }
+    }
+
+    private static MethodHandle constructor(String owner, Class<?>... params) {
+        try {
+            return erase(LOOKUP.findConstructor(load(owner), MethodType.methodType(void.class, params)));
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot find constructor of " + owner, e);
+        }
+    }
+
+    private static MethodHandle virtual(String owner, String name, Class<?> ret, Class<?>... params) {
+        try {
+            return erase(LOOKUP.findVirtual(load(owner), name, MethodType.methodType(ret, params)));
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot find " + owner + "." + name, e);
+        }
+    }
+
+    private static MethodHandle findStatic(MethodHandles.Lookup lookup, String owner, String name, Class<?> ret,
+                                           Class<?>... params) {
+        try {
+            return erase(lookup.findStatic(load(owner), name, MethodType.methodType(ret, params)));
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot find " + owner + "." + name, e);
+        }
+    }
+
+    private static MethodHandle privateStatic(String owner, String name, Class<?> ret, Class<?>... params) {
+        try {
+            // the benchmarks and the project share the unnamed module, so private members can be looked up too
+            return findStatic(MethodHandles.privateLookupIn(load(owner), LOOKUP), owner, name, ret, params);
+        } catch(IllegalAccessException e) {
+            throw new IllegalStateException("cannot access " + owner, e);
+        }
+    }
+
+    private static MethodHandle staticGetter(String owner, String name, String type) {
+        try {
+            return erase(LOOKUP.findStaticGetter(load(owner), name, load(type)));
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot find " + owner + "." + name, e);
+        }
+    }
+
+    /**
+     * change every project class in a handle's type to Object, so that it can be invoked exactly from here
+     * @param handle, handle to change
+     * @return the handle with project classes replaced by Object
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for(int i = 0; i < type.parameterCount(); ++i) {
+            if(isProjectClass(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if(isProjectClass(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+
+        return handle.asType(type);
+    }
+
+    private static boolean isProjectClass(Class<?> type) {
+        // primitives, arrays of primitives and the JDK's classes all come from the boot class loader
+        return type.getClassLoader() != null;
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * Class that adds errors to encoded data in the same way that a noisy channel would
+ * Each word is hit with a probability equal to the error rate, and a word that is hit has exactly one of its bits
+ * flipped, so every error can be corrected by the Hamming code. A fixed seed keeps every run of a benchmark the same
+ */
+final class Channel {
+    static final long SEED = 0x5EC0DEL;
+
+    private Channel() {
+    }
+
+    /**
+     * add errors to codewords
+     * @param codewords, codewords to change in place
+     * @param width, number of bits in each codeword
+     * @param errorRate, probability that a codeword has one bit flipped
+     */
+    static void corrupt(long[] codewords, int width, double errorRate) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for(int i = 0; i < codewords.length; ++i) {
+            if(random.nextDouble() < errorRate) {
+                codewords[i] ^= 1L << random.nextInt(width);
+            }
+        }
+    }
+
+    /**
+     * add errors to a packed message, the 6 byte header (parity bits, width, count) is never touched
+     * @param packed, packed message to change in place
+     * @param errorRate, probability that a word has one bit flipped
+     */
+    static void corrupt(byte[] packed, double errorRate) {
+        int width = packed[1];
+        int count = ((packed[2] & 0xFF) << 24) | ((packed[3] & 0xFF) << 16) | ((packed[4] & 0xFF) << 8)
+                | (packed[5] & 0xFF);
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        for(int i = 0; i < count; ++i) {
+            if(random.nextDouble() < errorRate) {
+                long bit = (long) i * width + random.nextInt(width);
+                packed[6 + (int) (bit >>> 3)] ^= (byte) (0x80 >>> (bit & 7));
+            }
+        }
+    }
+
+    /**
+     * add errors to a message made by Encoder.encode(String), which is codewords written in binary separated by spaces
+     * @param message, encoded message
+     * @param errorRate, probability that a codeword has one of its digits flipped
+     * @return the message with the errors
+     */
+    static String corrupt(String message, double errorRate) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        char[] chars = message.toCharArray();
+        int start = 0;
+        while(start < chars.length) {
+            int end = start;
+            while(end < chars.length && chars[end] != ' ') {
+                ++end;
+            }
+
+            if(end > start && random.nextDouble() < errorRate) {
+                int index = start + random.nextInt(end - start);
+                chars[index] = chars[index] == '0' ? '1' : '0';
+            }
+            start = end + 1;
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * make a message of random characters from the project's default alphabet
+     * @param length, number of characters
+     * @return the message
+     */
+    static String message(int length) {
+        String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 .,?!";
+        SplittableRandom random = new SplittableRandom(SEED);
+        char[] chars = new char[length];
+        for(int i = 0; i < length; ++i) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+
+        return new String(chars);
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for building an Encoder and for encoding and decoding single words
+ * The error rate is the fraction of codewords that have one bit flipped before they are decoded, so 0 measures clean
+ * words and 1 measures words that all need correcting. Word operations are measured over a batch, and the score is
+ * per word
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncoderBenchmark {
+    private static final int BATCH = 1024;
+
+    @Param({"4", "7", "8", "16"})
+    public int degree;
+
+    @Param({"0", "0.01", "1"})
+    public double errorRate;
+
+    private String generator;
+    private Object encoder;
+    private int length; // number of bits in a codeword
+    private long[] words; // random words that fill the message part of a codeword
+    private long[] codewords; // encoded words, with errors added at the error rate
+
+    @Setup
+    public void setup() throws Throwable {
+        generator = Api.generator(degree);
+        encoder = Api.newEncoder(generator);
+        length = Api.codewordBits(degree);
+
+        SplittableRandom random = new SplittableRandom(Channel.SEED);
+        words = new long[BATCH];
+        codewords = new long[BATCH];
+        for(int i = 0; i < BATCH; ++i) {
+            words[i] = random.nextLong() >>> (64 - (length - degree));
+            codewords[i] = Api.encodeWord(encoder, words[i]);
+        }
+        Channel.corrupt(codewords, length, errorRate);
+    }
+
+    @Benchmark
+    public Object construct() throws Throwable {
+        return Api.newEncoder(generator);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long encodeWord() throws Throwable {
+        long result = 0;
+        for(int i = 0; i < BATCH; ++i) {
+            result ^= Api.encodeWord(encoder, words[i]);
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long decodeWord() throws Throwable {
+        long result = 0;
+        for(int i = 0; i < BATCH; ++i) {
+            result ^= Api.decodeWord(encoder, codewords[i], length);
+        }
+
+        return result;
+    }
+}
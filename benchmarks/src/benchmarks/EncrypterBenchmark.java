@@ -0,0 +1,152 @@
+package benchmarks;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for RSA, from the single word operation on the toy key up to whole messages
+ * A key size of 0 is the toy key that Main uses, with one character per block like Main. Real keys use block mode,
+ * since they would otherwise spend a whole RSA operation on every character
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncrypterBenchmark {
+    private static final int BATCH = 1024;
+
+    /**
+     * Random numbers below the toy modulus, for the long version of RSA that small keys use
+     */
+    @State(Scope.Thread)
+    public static class ToyState {
+        static final long N = 478783; // 683*701
+        static final long E = 13963;
+        static final long D = 70227;
+
+        long[] nums;
+
+        @Setup
+        public void setup() {
+            SplittableRandom random = new SplittableRandom(Channel.SEED);
+            nums = new long[BATCH];
+            for(int i = 0; i < BATCH; ++i) {
+                nums[i] = random.nextLong(N);
+            }
+        }
+    }
+
+    /**
+     * A key, along with a random number below its modulus and that number encrypted
+     */
+    @State(Scope.Thread)
+    public static class KeyState {
+        @Param({"0", "2048", "4096"})
+        public int keyBits;
+
+        Object key;
+        BigInteger plain;
+        BigInteger cipher;
+
+        @Setup
+        public void setup() throws Throwable {
+            key = Api.newKey(keyBits);
+            BigInteger modulus = Api.modulus(key);
+            Random random = new Random(Channel.SEED);
+            do {
+                plain = new BigInteger(modulus.bitLength(), random);
+            } while(plain.compareTo(modulus) >= 0);
+            cipher = Api.encrypt(key, plain);
+        }
+    }
+
+    /**
+     * An encrypter for the key of a KeyState, along with a message and its encrypted forms
+     */
+    @State(Scope.Thread)
+    public static class MessageState {
+        @Param({"16", "1024", "16384"})
+        public int messageLength;
+
+        Object encrypter;
+        String message;
+        String encrypted;
+        byte[] packed;
+
+        @Setup
+        public void setup(KeyState keyState) throws Throwable {
+            encrypter = Api.newEncrypter(keyState.key, keyState.keyBits != 0);
+            message = Channel.message(messageLength);
+            encrypted = Api.encrypt(encrypter, message);
+            packed = Api.encryptPacked(encrypter, message);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long rsaEncrypt(ToyState state) throws Throwable {
+        long result = 0;
+        for(int i = 0; i < BATCH; ++i) {
+            result ^= Api.rsa(state.nums[i], ToyState.E, ToyState.N);
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long rsaDecrypt(ToyState state) throws Throwable {
+        long result = 0;
+        for(int i = 0; i < BATCH; ++i) {
+            result ^= Api.rsa(state.nums[i], ToyState.D, ToyState.N);
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public BigInteger keyEncrypt(KeyState state) throws Throwable {
+        return Api.encrypt(state.key, state.plain);
+    }
+
+    @Benchmark
+    public BigInteger keyDecrypt(KeyState state) throws Throwable {
+        return Api.decrypt(state.key, state.cipher);
+    }
+
+    @Benchmark
+    public String encrypt(MessageState state) throws Throwable {
+        return Api.encrypt(state.encrypter, state.message);
+    }
+
+    @Benchmark
+    public String decrypt(MessageState state) throws Throwable {
+        return Api.decrypt(state.encrypter, state.encrypted);
+    }
+
+    @Benchmark
+    public byte[] encryptPacked(MessageState state) throws Throwable {
+        return Api.encryptPacked(state.encrypter, state.message);
+    }
+
+    @Benchmark
+    public String decryptPacked(MessageState state) throws Throwable {
+        return Api.decrypt(state.encrypter, state.packed);
+    }
+}
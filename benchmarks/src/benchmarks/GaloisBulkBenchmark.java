@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for GaloisField's bulk operations on byte arrays in GF(2^8), by array length
+ * Every operation is run twice, once in a JVM without the Vector API (the plain loops) and once in a JVM with it
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GaloisBulkBenchmark {
+    private static final String VECTORS = "--add-modules=jdk.incubator.vector";
+
+    @Param({"255", "65536"})
+    public int messageLength;
+
+    private Object field;
+    private byte[] a;
+    private byte[] result;
+    private int scalar;
+
+    @Setup
+    public void setup() throws Throwable {
+        field = Api.newField(Api.generator(8));
+        SplittableRandom random = new SplittableRandom(Channel.SEED);
+        a = new byte[messageLength];
+        for(int i = 0; i < a.length; ++i) {
+            a[i] = (byte) random.nextInt(256);
+        }
+        result = new byte[messageLength];
+        scalar = 1 + random.nextInt(255);
+    }
+
+    @Benchmark
+    public byte[] scale() throws Throwable {
+        Api.scaleElements(field, scalar, a, result, messageLength);
+        return result;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTORS)
+    public byte[] scaleVectors() throws Throwable {
+        return scale();
+    }
+
+    @Benchmark
+    public byte[] multiplyAccumulate() throws Throwable {
+        Api.multiplyAccumulate(field, scalar, a, result, messageLength);
+        return result;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTORS)
+    public byte[] multiplyAccumulateVectors() throws Throwable {
+        return multiplyAccumulate();
+    }
+
+    @Benchmark
+    public int evaluate() throws Throwable {
+        return Api.evaluate(field, a, 0, messageLength, scalar);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = VECTORS)
+    public int evaluateVectors() throws Throwable {
+        return evaluate();
+    }
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for building a GaloisField and for its arithmetic
+ * Arithmetic is measured over a batch of random operands, and the score is per operation
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GaloisFieldBenchmark {
+    private static final int BATCH = 1024;
+
+    @Param({"4", "8", "12", "16"})
+    public int degree;
+
+    private String generator;
+    private Object field;
+    private int[] elements1; // random elements, bit i is the coefficient of x^i
+    private int[] elements2; // random nonzero elements, so they can be divided by
+    private int[] exponents1; // random exponents, -1 included for zero
+    private int[] exponents2;
+
+    @Setup
+    public void setup() throws Throwable {
+        generator = Api.generator(degree);
+        field = Api.newField(generator);
+        int order = Api.order(field);
+
+        SplittableRandom random = new SplittableRandom(Channel.SEED);
+        elements1 = new int[BATCH];
+        elements2 = new int[BATCH];
+        exponents1 = new int[BATCH];
+        exponents2 = new int[BATCH];
+        for(int i = 0; i < BATCH; ++i) {
+            elements1[i] = random.nextInt(order + 1);
+            elements2[i] = 1 + random.nextInt(order);
+            exponents1[i] = random.nextInt(order + 1) - 1;
+            exponents2[i] = random.nextInt(order + 1) - 1;
+        }
+    }
+
+    @Benchmark
+    public Object construct() throws Throwable {
+        return Api.newField(generator);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int add() throws Throwable {
+        int result = 0;
+        for(int i = 0; i < BATCH; ++i) {
+            result ^= Api.add(field, exponents1[i], exponents2[i]);
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int multiply() throws Throwable {
+        int result = 0;
+        for(int i = 0; i < BATCH; ++i) {
+            result ^= Api.multiplyElements(field, elements1[i], elements2[i]);
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int divide() throws Throwable {
+        int result = 0;
+        for(int i = 0; i < BATCH; ++i) {
+            result ^= Api.divideElements(field, elements1[i], elements2[i]);
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int exponentiate() throws Throwable {
+        int result = 0;
+        for(int i = 0; i < BATCH; ++i) {
+            result ^= Api.exponentiate(field, exponents1[i], elements1[i]);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the whole pipeline with the toy key, split into the sending side (encrypt then encode) and the
+ * receiving side (decode then decrypt). Each side is measured three ways: through strings like Main does, through
+ * packed messages, and through the parallel pipeline. The receiving side is given messages with errors added at the
+ * error rate, which are all corrected on the way through
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    /**
+     * The stages for a generator, along with a message to send
+     */
+    @State(Scope.Thread)
+    public static class SendState {
+        @Param({"7", "16"})
+        public int degree;
+
+        @Param({"16", "1024", "65536"})
+        public int messageLength;
+
+        Object encrypter;
+        Object encoder;
+        Object pipeline;
+        String message;
+
+        @Setup
+        public void setup() throws Throwable {
+            encrypter = Api.newEncrypter(Api.newKey(0), false);
+            encoder = Api.newEncoder(Api.generator(degree));
+            pipeline = Api.newPipeline(encrypter, encoder);
+            message = Channel.message(messageLength);
+        }
+    }
+
+    /**
+     * The message of a SendState after it has been sent over a noisy channel
+     */
+    @State(Scope.Thread)
+    public static class ReceiveState {
+        @Param({"0", "0.01"})
+        public double errorRate;
+
+        String received; // as a string of binary codewords
+        byte[] receivedPacked;
+
+        @Setup
+        public void setup(SendState send) throws Throwable {
+            received = Channel.corrupt(Api.encode(send.encoder, Api.encrypt(send.encrypter, send.message)), errorRate);
+            receivedPacked = Api.encode(send.encoder, Api.encryptPacked(send.encrypter, send.message));
+            Channel.corrupt(receivedPacked, errorRate);
+        }
+    }
+
+    @Benchmark
+    public String mainSend(SendState send) throws Throwable {
+        return Api.encode(send.encoder, Api.encrypt(send.encrypter, send.message));
+    }
+
+    @Benchmark
+    public String mainReceive(SendState send, ReceiveState receive) throws Throwable {
+        return Api.decrypt(send.encrypter, Api.decode(send.encoder, receive.received));
+    }
+
+    @Benchmark
+    public byte[] packedSend(SendState send) throws Throwable {
+        return Api.encode(send.encoder, Api.encryptPacked(send.encrypter, send.message));
+    }
+
+    @Benchmark
+    public String packedReceive(SendState send, ReceiveState receive) throws Throwable {
+        return Api.decrypt(send.encrypter, Api.decode(send.encoder, receive.receivedPacked));
+    }
+
+    @Benchmark
+    public byte[] parallelSend(SendState send) throws Throwable {
+        return Api.encryptAndEncode(send.pipeline, send.message);
+    }
+
+    @Benchmark
+    public String parallelReceive(SendState send, ReceiveState receive) throws Throwable {
+        return Api.decodeAndDecrypt(send.pipeline, receive.receivedPacked);
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the Reed-Solomon code over GF(2^8), by the number of parity bytes in a block, the length of the data,
+ * and the fraction of the correctable byte errors that each block of the received data has (0 is clean, 1 is as many
+ * errors as every block can take)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReedSolomonBenchmark {
+    /**
+     * A code and some data to encode
+     */
+    @State(Scope.Thread)
+    public static class SendState {
+        @Param({"16", "32"})
+        public int paritySymbols;
+
+        @Param({"223", "65536"})
+        public int messageLength;
+
+        Object code;
+        byte[] data;
+
+        @Setup
+        public void setup() throws Throwable {
+            code = Api.newReedSolomon(Api.generator(8), paritySymbols);
+            SplittableRandom random = new SplittableRandom(Channel.SEED);
+            data = new byte[messageLength];
+            for(int i = 0; i < data.length; ++i) {
+                data[i] = (byte) random.nextInt(256);
+            }
+        }
+    }
+
+    /**
+     * The encoded data of a SendState with byte errors added to every block
+     */
+    @State(Scope.Thread)
+    public static class ReceiveState {
+        @Param({"0", "0.5", "1"})
+        public double errorRate;
+
+        byte[] received;
+
+        @Setup
+        public void setup(SendState send) throws Throwable {
+            // put the errors in different bytes of each block
+            SplittableRandom random = new SplittableRandom(Channel.SEED);
+            received = Api.encodeBytes(send.code, send.data);
+            int errors = (int) (errorRate * (send.paritySymbols / 2));
+            for(int from = 0; from < received.length; from += 255) {
+                int length = Math.min(255, received.length - from);
+                for(int i = 0; i < errors; ++i) {
+                    received[from + (i * 37 + from) % length] ^= (byte) (1 + random.nextInt(255));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] encode(SendState send) throws Throwable {
+        return Api.encodeBytes(send.code, send.data);
+    }
+
+    @Benchmark
+    public byte[] decode(SendState send, ReceiveState receive) throws Throwable {
+        return Api.decodeBytes(send.code, receive.received);
+    }
+}
@@ -0,0 +1,252 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Class that picks the code for each message from a set of codes, going by how noisy the link has been lately
+ * Every code has a different number of parity bits, so the header of an encoded message (see PackedWords) says which
+ * code it went through and the receiver needs no other signal. Each decoded message adds its number of bit errors to
+ * a sliding window over the last windowBits codeword bits, counting a word that could not be corrected as t+1 errors
+ * since at least that many hit it, which gives an estimate of the channel's bit error rate. The code that is used is the
+ * one with the fewest parity bits whose word error rate at that estimate would be under the target. A weaker code than
+ * the current one is only moved to once its rate would be well under the target, so the choice does not flap back and
+ * forth at a boundary, and until the window has filled up once the strongest code is used
+ * When both ends of a link are in one process the same object encodes and decodes, otherwise the receiver's counts
+ * need to be passed back to the sender's observe
+ */
+public class AdaptiveEncoder {
+    public static final long DEFAULT_WINDOW_BITS = 1 << 20;
+    public static final double DEFAULT_TARGET_WORD_ERROR_RATE = 1e-6;
+
+    private static final double WEAKER_MARGIN = 10; // a weaker code must beat the target by this factor to be used
+
+    private final WordCode[] codes; // ordered from the fewest parity bits to the most
+    private final WordCode[] codesByParity; // codes indexed by their number of parity bits
+    private final int wordWidth; // width of the words that are encoded
+    private final long windowBits;
+    private final double targetWordErrorRate;
+    private final ArrayDeque<long[]> window = new ArrayDeque<>(); // {codeword bits, bit errors} of recent messages
+    private long windowTotalBits; // codeword bits in the window
+    private long windowErrors; // bit errors in the window
+    private boolean windowFilled; // whether the window has held windowBits at some point
+    private volatile int level; // index of the code that messages are encoded with
+
+    /**
+     * constructor for an adaptive encoder
+     * @param codes, codes to choose between, in any order, each with a different number of parity bits
+     * @param wordWidth, width of the words that are encoded, which every code must have room for
+     * @param windowBits, number of codeword bits that the error rate is estimated over
+     * @param targetWordErrorRate, highest acceptable rate of words that are still wrong after decoding
+     */
+    public AdaptiveEncoder(WordCode[] codes, int wordWidth, long windowBits, double targetWordErrorRate) {
+        if(codes.length == 0) {
+            throw new IllegalArgumentException("there must be at least one code to choose from");
+        } else if(windowBits < 1 || !(targetWordErrorRate > 0 && targetWordErrorRate < 1)) {
+            throw new IllegalArgumentException("window must have at least one bit and the target must be between 0 "
+                    + "and 1, not " + windowBits + " and " + targetWordErrorRate);
+        }
+
+        this.codes = codes.clone();
+        Arrays.sort(this.codes, Comparator.comparingInt(WordCode::getParityBits));
+        codesByParity = new WordCode[PackedWords.MAX_WIDTH];
+        for(WordCode code : this.codes) {
+            if(wordWidth < 1 || wordWidth + code.getParityBits() > code.getLength()) {
+                throw new IllegalArgumentException("words of width " + wordWidth + " do not fit in a "
+                        + code.getLength() + "-bit codeword with " + code.getParityBits() + " parity bits");
+            } else if(codesByParity[code.getParityBits()] != null) {
+                throw new IllegalArgumentException("two codes have " + code.getParityBits() + " parity bits, so "
+                        + "messages would not say which one they went through");
+            }
+            codesByParity[code.getParityBits()] = code;
+        }
+
+        this.wordWidth = wordWidth;
+        this.windowBits = windowBits;
+        this.targetWordErrorRate = targetWordErrorRate;
+        level = this.codes.length - 1;
+    }
+
+    /**
+     * make an adaptive encoder with the usual set of codes, which goes from a Hamming code with as few parity bits as
+     * the words allow up to BCH codes over GF(2^6) that correct 2, 3 and 5 errors, leaving out the ones the words are
+     * too wide for
+     * @param wordWidth, width of the words that are encoded, such as the limb width of an Encrypter
+     * @return the adaptive encoder
+     */
+    public static AdaptiveEncoder createDefault(int wordWidth) {
+        List<WordCode> codes = new ArrayList<>();
+        for(String generator : new String[] {"100101", "1000011", "10000011"}) {
+            Encoder hamming = Encoder.forGenerator(generator);
+            if(wordWidth + hamming.getParityBits() <= hamming.getLength()) {
+                codes.add(hamming);
+                break;
+            }
+        }
+        for(int designedDistance : new int[] {5, 7, 11}) {
+            BchCode bch = new BchCode("1000011", designedDistance);
+            if(wordWidth + bch.getParityBits() <= bch.getLength()) {
+                codes.add(bch);
+            }
+        }
+
+        return new AdaptiveEncoder(codes.toArray(new WordCode[0]), wordWidth, DEFAULT_WINDOW_BITS,
+                DEFAULT_TARGET_WORD_ERROR_RATE);
+    }
+
+    /**
+     * get the width of the words that are encoded
+     * @return the word width
+     */
+    public int getWordWidth() {
+        return wordWidth;
+    }
+
+    /**
+     * get the code that messages are currently encoded with
+     * @return the code
+     */
+    public WordCode getCode() {
+        return codes[level];
+    }
+
+    /**
+     * get the code that has the given number of parity bits, which is how an encoded message names its code
+     * @param parityBits, number of parity bits, as in the header of a packed message
+     * @return the code, or null if none of the codes has that many parity bits
+     */
+    public WordCode getCode(int parityBits) {
+        return parityBits > 0 && parityBits < codesByParity.length ? codesByParity[parityBits] : null;
+    }
+
+    /**
+     * get the estimate of the channel's bit error rate that the current code was chosen with
+     * @return errors per codeword bit over the window, 0 if nothing has been decoded
+     */
+    public synchronized double getBitErrorRate() {
+        return windowTotalBits == 0 ? 0 : (double) windowErrors / windowTotalBits;
+    }
+
+    /**
+     * encode a packed message with the current code, whose number of parity bits ends up in the header
+     * @param packed, packed message whose words will be encoded (see PackedWords)
+     * @return the packed encoded message
+     */
+    public byte[] encode(byte[] packed) {
+        if(PackedWords.getWidth(packed) != wordWidth) {
+            throw new IllegalArgumentException("words have width " + PackedWords.getWidth(packed) + ", expected "
+                    + wordWidth);
+        }
+
+        return codes[level].encode(packed);
+    }
+
+    /**
+     * decode a packed message with the code named by its header, and add the errors it had to the window
+     * Words that have more errors than can be corrected are passed on without any correction
+     * @param packed, packed message to be decoded (see PackedWords)
+     * @return the packed decoded message
+     * @throws IllegalArgumentException if none of the codes has the number of parity bits in the header
+     */
+    public byte[] decode(byte[] packed) {
+        long start = PipelineMetrics.start();
+        int parityBits = PackedWords.getParityBits(packed);
+        WordCode code = getCode(parityBits);
+        if(code == null) {
+            throw new IllegalArgumentException("message was encoded with " + parityBits + " parity bits, which "
+                    + "none of the codes has");
+        } else if(PackedWords.getWidth(packed) != wordWidth + parityBits) {
+            throw new IllegalArgumentException("message has words of width " + PackedWords.getWidth(packed)
+                    + ", expected " + (wordWidth + parityBits));
+        }
+
+        // re-encoding each decoded word shows every bit that was corrected, parity bits included
+        int width = PackedWords.getWidth(packed);
+        int count = PackedWords.getCount(packed);
+        byte[] decoded = PackedWords.allocate(0, wordWidth, count);
+        long errors = 0;
+        int corrected = 0;
+        int uncorrectable = 0;
+        for(int i = 0; i < count; ++i) {
+            long codeword = PackedWords.getWord(packed, i);
+            long word = code.decodeWord(codeword, width);
+            if(word == -1) {
+                errors += code.getMaxErrors() + 1;
+                ++uncorrectable;
+                word = codeword >>> parityBits;
+            } else {
+                errors += Long.bitCount(code.encodeWord(word) ^ codeword);
+                if(word != codeword >>> parityBits) {
+                    ++corrected;
+                }
+            }
+            PackedWords.putWord(decoded, i, word);
+        }
+
+        observe((long) count * width, errors);
+        PipelineMetrics.recordDecode(start, count, corrected, uncorrectable);
+        return decoded;
+    }
+
+    /**
+     * add what a receiver saw to the window and choose the code again
+     * @param codewordBits, number of codeword bits that were received
+     * @param bitErrors, number of those bits that were wrong
+     */
+    public synchronized void observe(long codewordBits, long bitErrors) {
+        if(codewordBits <= 0) {
+            return;
+        }
+
+        window.addLast(new long[] {codewordBits, bitErrors});
+        windowTotalBits += codewordBits;
+        windowErrors += bitErrors;
+        while(windowTotalBits - window.getFirst()[0] >= windowBits) {
+            long[] oldest = window.removeFirst();
+            windowTotalBits -= oldest[0];
+            windowErrors -= oldest[1];
+        }
+
+        windowFilled |= windowTotalBits >= windowBits;
+        if(windowFilled) {
+            level = chooseLevel((double) windowErrors / windowTotalBits);
+        }
+    }
+
+    /**
+     * choose the code with the fewest parity bits that keeps the word error rate under the target
+     * @param bitErrorRate, estimate of the channel's bit error rate
+     * @return the index of the code, the strongest one if none of them is good enough
+     */
+    private int chooseLevel(double bitErrorRate) {
+        for(int i = 0; i < codes.length - 1; ++i) {
+            double target = i < level ? targetWordErrorRate / WEAKER_MARGIN : targetWordErrorRate;
+            if(wordErrorRate(codes[i], bitErrorRate) <= target) {
+                return i;
+            }
+        }
+
+        return codes.length - 1;
+    }
+
+    /**
+     * work out the chance that a codeword has more errors than a code can correct when bits are flipped independently
+     * @param code, the code
+     * @param bitErrorRate, chance that each bit is flipped
+     * @return the word error rate
+     */
+    private double wordErrorRate(WordCode code, double bitErrorRate) {
+        int length = wordWidth + code.getParityBits();
+        double rate = 0;
+        double binomial = 1; // length choose i
+        for(int i = 0; i <= length; ++i) {
+            if(i > code.getMaxErrors()) {
+                rate += binomial * Math.pow(bitErrorRate, i) * Math.pow(1 - bitErrorRate, length - i);
+            }
+            binomial = binomial * (length - i) / (i + 1);
+        }
+
+        return rate;
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class that pushes whole files through the pipeline without going through the interactive prompt
+ * Both files are memory mapped, and a BufferPipeline reads each chunk straight out of the input's window and writes its
+ * codewords straight into the output's window, so data moves between the page cache and the stages with no read or
+ * write system calls and no copies on the heap. Files are mapped a window at a time, which keeps files bigger than 2GB
+ * working. Encoded files are a sequence of packed messages, the same as the streams make, so either can read the other's
+ */
+public class BatchProcessor {
+    private static final int CHUNK_BYTES = 1 << 20; // bytes handed to the stages at a time
+    private static final long WINDOW_BYTES = 1L << 28; // bytes of a file that are mapped at once
+
+    private final Encrypter encrypter;
+    private final WordCode encoder;
+
+    /**
+     * constructor for a batch processor
+     * @param encrypter, encrypter for the files, which must have the byte alphabet
+     * @param encoder, code for the encrypted files, such as an Encoder or a BchCode
+     */
+    public BatchProcessor(Encrypter encrypter, WordCode encoder) {
+        if(!encrypter.getAlphabet().isBytes()) {
+            throw new IllegalArgumentException("files can only be encrypted with the byte alphabet");
+        }
+
+        this.encrypter = encrypter;
+        this.encoder = encoder;
+    }
+
+    /**
+     * encrypt and then encode a file
+     * @param input, file to be sent
+     * @param output, file that the encrypted and encoded data is written to, replaced if it exists
+     * @return the number of bytes written
+     * @throws IOException if either file cannot be used
+     */
+    public long encryptAndEncode(Path input, Path output) throws IOException {
+        try(MappedInput in = new MappedInput(input);
+            MappedOutput out = new MappedOutput(output)) {
+            BufferPipeline pipeline = new BufferPipeline(encrypter, encoder);
+
+            // a whole number of blocks goes into each chunk, so only the last one can end with a short block
+            int symbolsPerBlock = encrypter.getSymbolsPerBlock();
+            int chunk = Math.max(CHUNK_BYTES / symbolsPerBlock, 1) * symbolsPerBlock;
+            ByteBuffer data;
+            while((data = in.next(chunk)).hasRemaining()) {
+                pipeline.encryptAndEncode(data, out.reserve(pipeline.getEncodedSize(data.remaining())));
+            }
+
+            return out.getPosition();
+        }
+    }
+
+    /**
+     * decode and then decrypt a file
+     * @param input, file that was made by encryptAndEncode
+     * @param output, file that the original data is written to, replaced if it exists
+     * @return the number of bytes written
+     * @throws IOException if either file cannot be used, or the input does not hold packed messages
+     */
+    public long decodeAndDecrypt(Path input, Path output) throws IOException {
+        try(MappedInput in = new MappedInput(input);
+            MappedOutput out = new MappedOutput(output)) {
+            BufferPipeline pipeline = new BufferPipeline(encrypter, encoder);
+            int limbCount = encrypter.getLimbCount();
+            int parityBits = encoder.getParityBits();
+            int width = encrypter.getLimbWidth() + parityBits;
+            byte[] header = new byte[PackedWords.HEADER_BYTES];
+            ByteBuffer packed;
+            while((packed = in.next(PackedWords.HEADER_BYTES)).hasRemaining()) {
+                if(packed.remaining() < PackedWords.HEADER_BYTES) {
+                    throw new IOException("file ends in the middle of a header");
+                }
+
+                // the header is checked before anything is sized from it, then the whole message is mapped and the
+                // decrypted bytes are given room for full blocks
+                packed.get(packed.position(), header);
+                if(!PackedWords.isHeader(header)) {
+                    throw new IOException("file does not hold packed messages");
+                } else if(PackedWords.getParityBits(header) != parityBits || PackedWords.getWidth(header) != width
+                        || PackedWords.getCount(header) % limbCount != 0) {
+                    throw new IOException("file was not made with this encrypter and code");
+                }
+                int count = PackedWords.getCount(header);
+                int size = PackedWords.getSize(header);
+                if((packed = in.next(size)).remaining() < size) {
+                    throw new IOException("file ends in the middle of a message of " + size + " bytes");
+                }
+
+                try {
+                    pipeline.decodeAndDecrypt(packed,
+                            out.reserve((long) count / limbCount * encrypter.getSymbolsPerBlock()));
+                } catch(IllegalArgumentException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+
+            return out.getPosition();
+        }
+    }
+
+    /**
+     * Class that reads a file through memory mapped windows
+     */
+    private static class MappedInput implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window; // currently mapped part of the file
+        private long windowStart; // position in the file of the start of the window
+
+        MappedInput(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            size = channel.size();
+            mapWindow(0, 0);
+        }
+
+        /**
+         * get the next bytes of the file, mapping a new window that starts at them if the current one ends too soon
+         * The bytes are handed out by moving the position of the window past them
+         * @param length, most bytes to get
+         * @return the window, with up to length bytes remaining, which is fewer only at the end of the file
+         * @throws IOException if the file cannot be mapped
+         */
+        ByteBuffer next(int length) throws IOException {
+            long position = windowStart + window.position();
+            if(window.capacity() - window.position() < length && windowStart + window.capacity() < size) {
+                mapWindow(position, length);
+            }
+
+            window.limit(Math.min(window.capacity(), window.position() + length));
+            return window;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        /**
+         * map the window that starts at the given position
+         * @param start, position in the file
+         * @param length, fewest bytes the window should have, if the file has that many left
+         * @throws IOException if the file cannot be mapped
+         */
+        private void mapWindow(long start, int length) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(Math.max(WINDOW_BYTES, length), size - start));
+        }
+    }
+
+    /**
+     * Class that writes a file through memory mapped windows, the file is cut down to what was written on close
+     */
+    private static class MappedOutput implements Closeable {
+        private final FileChannel channel;
+        private MappedByteBuffer window; // currently mapped part of the file
+        private long windowStart; // position in the file of the start of the window
+
+        MappedOutput(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            window = channel.map(FileChannel.MapMode.READ_WRITE, 0, WINDOW_BYTES);
+        }
+
+        /**
+         * get room for the next bytes of the file, mapping a new window that starts at them if the current one is too
+         * small. The bytes are written by putting them in the window and moving its position past them
+         * @param length, number of bytes that may be written
+         * @return the window, with at least length bytes remaining
+         * @throws IOException if the file cannot be mapped
+         */
+        ByteBuffer reserve(long length) throws IOException {
+            if(window.remaining() < length) {
+                long position = getPosition();
+                window = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(WINDOW_BYTES, length));
+                windowStart = position;
+            }
+
+            return window;
+        }
+
+        /**
+         * get the number of bytes written so far
+         * @return the position in the file after the last byte written
+         */
+        long getPosition() {
+            return windowStart + window.position();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(!channel.isOpen()) {
+                return;
+            }
+
+            // mapping a window grows the file to cover it, so remove whatever was not written
+            window.force();
+            channel.truncate(getPosition());
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,431 @@
+/**
+ * Class that encodes and decodes words with a binary BCH code, which can correct several bit errors in each word
+ * The code is built over a GaloisField of size 2^m. Its generator is the least common multiple of the minimal
+ * polynomials of alpha^1 ... alpha^(d-1), where d is the designed distance, so up to t=(d-1)/2 errors can be corrected.
+ * Codewords are packed into a long, so codes longer than 63 bits are shortened to 63 bits
+ * Codes are immutable, so one can be shared between threads
+ */
+public class BchCode implements WordCode {
+    private static final int MAX_CODEWORD_BITS = 63; // codewords are packed into a non-negative long
+
+    private final GaloisField field; // field that the roots of the generator come from
+    private final int order; // number of nonzero elements in the field
+    private final int maxErrors; // number of errors that can be corrected in each codeword, t
+    private final int length; // number of bits in each codeword, n
+    private final long generator; // generator polynomial of the code, bit i is the coefficient of x^i
+    private final int parityBits; // degree of the generator, which is the number of parity bits in each codeword
+    private final long parityMask; // mask that keeps only the parity bits of a codeword
+    private final long[] parityTable; // parity of every possible byte, used to encode a byte at a time
+    private final int[][][] syndromeTables; // [j][p][b] is the value at alpha^(2j+1) of byte b at byte p of a remainder
+
+    /**
+     * constructor for a BCH code
+     * @param generator, a binary string that represents a primitive polynomial over Z2 (most significant term on left),
+     * which generates the field the code is built over
+     * @param designedDistance, designed minimum distance of the code, at least 3
+     */
+    public BchCode(String generator, int designedDistance) {
+        field = GaloisField.forGenerator(generator);
+        order = field.getOrder();
+        if(designedDistance < 3 || designedDistance > order) {
+            throw new IllegalArgumentException("designed distance must be from 3 to " + order + ", not "
+                    + designedDistance);
+        }
+
+        maxErrors = (designedDistance - 1) / 2;
+        length = Math.min(order, MAX_CODEWORD_BITS);
+        this.generator = createGenerator(designedDistance);
+        parityBits = 63 - Long.numberOfLeadingZeros(this.generator);
+        if(parityBits >= length) {
+            throw new IllegalArgumentException("a designed distance of " + designedDistance + " leaves no room for a "
+                    + "message in a " + length + "-bit codeword");
+        }
+
+        parityMask = (1L << parityBits) - 1;
+        parityTable = createParityTable();
+        syndromeTables = createSyndromeTables();
+    }
+
+    /**
+     * get the number of parity bits that encoding adds to each word
+     * @return the degree of the generator
+     */
+    public int getParityBits() {
+        return parityBits;
+    }
+
+    /**
+     * get the number of bit errors that can be corrected in each codeword
+     * @return t, half of one less than the designed distance
+     */
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    /**
+     * get the number of bits in each codeword
+     * @return n, the length of the code, 2^m-1 or 63 if that is smaller
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * get the generator polynomial of the code
+     * @return the generator, bit i is the coefficient of x^i
+     */
+    public long getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Encode a packed message using the BCH code, each word gains the parity bits of the code
+     * @param packed, packed message whose words will be encoded (see PackedWords)
+     * @return the packed encoded message
+     */
+    public byte[] encode(byte[] packed) {
+        long start = PipelineMetrics.start();
+        int width = PackedWords.getWidth(packed);
+        int count = PackedWords.getCount(packed);
+        if(PackedWords.getParityBits(packed) != 0) {
+            throw new IllegalArgumentException("message is already encoded");
+        } else if(width + parityBits > length) {
+            throw new IllegalArgumentException("words of width " + width + " do not fit in a " + length
+                    + "-bit codeword");
+        }
+
+        byte[] encoded = PackedWords.allocate(parityBits, width + parityBits, count);
+        for(int i = 0; i < count; ++i) {
+            PackedWords.putWord(encoded, i, encodeWord(PackedWords.getWord(packed, i)));
+        }
+
+        PipelineMetrics.record(PipelineMetrics.Stage.ENCODE, start, count);
+        return encoded;
+    }
+
+    /**
+     * Encode a single word in systematic form, the word is shifted up by the degree of the generator and the remainder
+     * of dividing that by the generator is placed in the low bits, so the codeword is divisible by the generator
+     * @param word, word to be encoded, bit i is the coefficient of x^i
+     * @return the encoded word, with the message in the high bits and the parity in the low bits
+     */
+    public long encodeWord(long word) {
+        if(word < 0 || (word >>> (length - parityBits)) != 0) {
+            throw new IllegalArgumentException("word " + word + " does not fit in a " + length + "-bit codeword");
+        }
+
+        return (word << parityBits) | parity(word);
+    }
+
+    /**
+     * compute the parity of a word, which is word*x^r mod generator where r is the degree of the generator
+     * This works a byte at a time using the parity table, in the same way that a table-driven CRC does
+     * @param word, word to compute the parity of
+     * @return the parity bits of the word
+     */
+    private long parity(long word) {
+        if(word == 0) {
+            return 0;
+        }
+
+        // skip the leading zero bytes since they leave the remainder unchanged
+        long remainder = 0;
+        for(int shift = (63 - Long.numberOfLeadingZeros(word)) & ~7; shift >= 0; shift -= 8) {
+            int nextByte = (int) (word >>> shift) & 0xFF;
+            if(parityBits < 8) {
+                // remainder*x^8 + byte*x^r = (remainder*x^(8-r) + byte)*x^r, and the factor is just one byte
+                remainder = parityTable[(int) (remainder << (8 - parityBits)) ^ nextByte];
+            } else {
+                // the top byte of the remainder combines with the incoming byte, the rest just shifts up
+                int top = (int) (remainder >>> (parityBits - 8)) ^ nextByte;
+                remainder = parityTable[top] ^ ((remainder << 8) & parityMask);
+            }
+        }
+
+        return remainder;
+    }
+
+    /**
+     * decode a packed message that has previously been encoded, which removes the parity bits from each word
+     * Words that have more errors than can be corrected are passed on without any correction
+     * @param packed, packed message to be decoded (see PackedWords)
+     * @return the packed decoded message
+     */
+    public byte[] decode(byte[] packed) {
+        long start = PipelineMetrics.start();
+        int width = PackedWords.getWidth(packed);
+        int count = PackedWords.getCount(packed);
+        if(PackedWords.getParityBits(packed) != parityBits) {
+            throw new IllegalArgumentException("message was encoded with " + PackedWords.getParityBits(packed)
+                    + " parity bits, expected " + parityBits);
+        }
+
+        byte[] decoded = PackedWords.allocate(0, width - parityBits, count);
+        int corrected = 0;
+        int uncorrectable = 0;
+        for(int i = 0; i < count; ++i) {
+            long codeword = PackedWords.getWord(packed, i);
+            long word = decodeWord(codeword, width);
+            if(word == -1) {
+                ++uncorrectable;
+                word = codeword >>> parityBits;
+            } else if(word != codeword >>> parityBits) {
+                ++corrected;
+            }
+            PackedWords.putWord(decoded, i, word);
+        }
+
+        PipelineMetrics.recordDecode(start, count, corrected, uncorrectable);
+        return decoded;
+    }
+
+    /**
+     * decode a single word, correcting up to t bit errors
+     * The remainder of dividing by the generator is zero for a valid codeword. Otherwise the syndromes (the received
+     * word evaluated at the roots of the generator) give the error locator polynomial through Berlekamp-Massey, and
+     * a Chien search finds its roots, which are the locations of the errors
+     * @param codeword, word to be decoded, bit i is the coefficient of x^i
+     * @param length, number of bits in the codeword, an error located past this cannot be corrected
+     * @return the decoded word, or -1 if the codeword has more errors than can be corrected
+     */
+    public long decodeWord(long codeword, int length) {
+        long remainder = parity(codeword >>> parityBits) ^ (codeword & parityMask);
+        if(remainder != 0) {
+            int[] locator = findErrorLocator(syndromes(remainder));
+            if(locator == null) {
+                return -1;
+            }
+
+            long errors = findErrors(locator, Math.min(length, this.length));
+            if(errors == -1) {
+                return -1;
+            }
+            codeword ^= errors;
+        }
+
+        // the code is systematic, so the message is everything above the parity bits
+        return codeword >>> parityBits;
+    }
+
+    /**
+     * compute the syndromes S_1 ... S_2t of a received word from its remainder, which has the same value as the word at
+     * every root of the generator. The odd syndromes come from the tables, and S_2j = S_j^2 since the code is binary
+     * @param remainder, the received word mod the generator
+     * @return the syndromes as packed field elements, S_j is at index j and index 0 is unused
+     */
+    private int[] syndromes(long remainder) {
+        int[] syndromes = new int[2 * maxErrors + 1];
+        for(int j = 0; j < maxErrors; ++j) {
+            int[][] tables = syndromeTables[j];
+            int syndrome = 0;
+            for(int p = 0; p < tables.length; ++p) {
+                syndrome ^= tables[p][(int) (remainder >>> (8 * p)) & 0xFF];
+            }
+            syndromes[2 * j + 1] = syndrome;
+        }
+        for(int j = 2; j < syndromes.length; j += 2) {
+            syndromes[j] = field.multiplyElements(syndromes[j / 2], syndromes[j / 2]);
+        }
+
+        return syndromes;
+    }
+
+    /**
+     * find the error locator polynomial with the Berlekamp-Massey algorithm, the shortest LFSR that generates the
+     * syndromes. Its roots are the inverses of alpha^i for every error location i
+     * @param syndromes, the syndromes S_1 ... S_2t at indices 1 ... 2t
+     * @return the coefficients of the error locator as packed field elements (lowest degree first, trimmed to its
+     * degree), or null if it has a degree greater than t
+     */
+    private int[] findErrorLocator(int[] syndromes) {
+        int[] locator = new int[2 * maxErrors + 1]; // current connection polynomial, Lambda
+        int[] previous = new int[2 * maxErrors + 1]; // connection polynomial before the last length change, B
+        locator[0] = 1;
+        previous[0] = 1;
+        int degree = 0; // length of the current LFSR, L
+        int shift = 1; // steps since the last length change, m
+        int previousDiscrepancy = 1; // discrepancy at the last length change, b
+
+        for(int n = 0; n < 2 * maxErrors; ++n) {
+            // discrepancy between the next syndrome and what the current LFSR predicts
+            int discrepancy = syndromes[n + 1];
+            for(int i = 1; i <= degree; ++i) {
+                discrepancy ^= field.multiplyElements(locator[i], syndromes[n + 1 - i]);
+            }
+
+            if(discrepancy == 0) {
+                ++shift;
+                continue;
+            }
+
+            // Lambda(x) -= (d/b) x^m B(x), and the LFSR gets longer if it was too short to explain the syndromes
+            int scale = field.divideElements(discrepancy, previousDiscrepancy);
+            int[] old = 2 * degree <= n ? locator.clone() : null;
+            for(int i = 0; i + shift < locator.length; ++i) {
+                locator[i + shift] ^= field.multiplyElements(scale, previous[i]);
+            }
+
+            if(old != null) {
+                degree = n + 1 - degree;
+                previous = old;
+                previousDiscrepancy = discrepancy;
+                shift = 1;
+            } else {
+                ++shift;
+            }
+        }
+
+        if(degree > maxErrors) {
+            return null;
+        }
+
+        int[] trimmed = new int[degree + 1];
+        System.arraycopy(locator, 0, trimmed, 0, degree + 1);
+        return trimmed;
+    }
+
+    /**
+     * find the error locations with a Chien search, which tries every location i by evaluating the error locator at
+     * alpha^-i. Each term lambda_k*alpha^(-ik) is kept as an exponent, so moving to the next location is an addition
+     * @param locator, the error locator polynomial
+     * @param length, number of bits in the codeword, only locations below this are tried
+     * @return the error pattern with a one at every error location, or -1 if the locator does not have as many roots
+     * inside the codeword as its degree
+     */
+    private long findErrors(int[] locator, int length) {
+        int degree = locator.length - 1;
+        int[] exponents = new int[locator.length];
+        for(int k = 1; k <= degree; ++k) {
+            exponents[k] = field.getExponent(locator[k]);
+        }
+
+        long errors = 0;
+        int found = 0;
+        for(int i = 0; i < length && found < degree; ++i) {
+            int value = 1; // lambda_0 is always one
+            for(int k = 1; k <= degree; ++k) {
+                if(exponents[k] != -1) {
+                    value ^= field.getElementBits(exponents[k]);
+
+                    // multiply the term by alpha^-k for the next location
+                    exponents[k] -= k;
+                    if(exponents[k] < 0) {
+                        exponents[k] += order;
+                    }
+                }
+            }
+
+            if(value == 0) {
+                errors |= 1L << i;
+                ++found;
+            }
+        }
+
+        return found == degree ? errors : -1;
+    }
+
+    /**
+     * build the generator polynomial, the product of the distinct minimal polynomials of alpha^1 ... alpha^(d-1)
+     * The minimal polynomial of alpha^i is the product of (x + alpha^c) over its conjugates c = i*2^j mod (2^m-1),
+     * which always has coefficients of zero or one
+     * @param designedDistance, designed minimum distance of the code
+     * @return the generator, bit i is the coefficient of x^i
+     */
+    private long createGenerator(int designedDistance) {
+        boolean[] covered = new boolean[order]; // exponents that are already roots of the generator
+        long product = 1;
+        for(int i = 1; i < designedDistance; ++i) {
+            if(covered[i]) {
+                continue;
+            }
+
+            // multiply the minimal polynomial out over the field, one conjugate root at a time
+            int[] minimal = {1};
+            for(int c = i; !covered[c]; c = (int) ((2L * c) % order)) {
+                covered[c] = true;
+                int root = field.getElementBits(c);
+                int[] next = new int[minimal.length + 1];
+                for(int k = 0; k < minimal.length; ++k) {
+                    next[k + 1] ^= minimal[k];
+                    next[k] ^= field.multiplyElements(minimal[k], root);
+                }
+                minimal = next;
+            }
+
+            long minimalBits = 0;
+            for(int k = 0; k < minimal.length; ++k) {
+                minimalBits |= (long) minimal[k] << k;
+            }
+
+            if((63 - Long.numberOfLeadingZeros(product)) + minimal.length - 1 >= MAX_CODEWORD_BITS) {
+                throw new IllegalArgumentException("a designed distance of " + designedDistance
+                        + " needs more than " + MAX_CODEWORD_BITS + " parity bits");
+            }
+            product = multiplyPolynomials(product, minimalBits);
+        }
+
+        return product;
+    }
+
+    /**
+     * multiply two polynomials over Z2, which is a multiplication without carries
+     * @param a, the first polynomial, bit i is the coefficient of x^i
+     * @param b, the second polynomial, the degrees of the two must add up to less than 64
+     * @return the product
+     */
+    private static long multiplyPolynomials(long a, long b) {
+        long product = 0;
+        for(; b != 0; b &= b - 1) {
+            product ^= a << Long.numberOfTrailingZeros(b);
+        }
+
+        return product;
+    }
+
+    /**
+     * build the table of parities for every possible byte, entry i is i*x^r mod generator
+     * The entries are found by running the division one bit at a time through a linear feedback shift register, which
+     * never needs more than r bits, so it works for generators right up to degree 62
+     * @return the parity table
+     */
+    private long[] createParityTable() {
+        long[] table = new long[256];
+        long feedback = generator & parityMask;
+        for(int i = 0; i < table.length; ++i) {
+            long remainder = 0;
+            for(int bit = 7; bit >= 0; --bit) {
+                boolean carry = ((remainder >>> (parityBits - 1)) & 1) != ((i >>> bit) & 1);
+                remainder = (remainder << 1) & parityMask;
+                if(carry) {
+                    remainder ^= feedback;
+                }
+            }
+            table[i] = remainder;
+        }
+
+        return table;
+    }
+
+    /**
+     * build the tables that turn a remainder into its odd syndromes a byte at a time
+     * Entry [j][p][b] is the sum of alpha^((2j+1)*(8p+i)) over the bits i that are set in b
+     * @return the syndrome tables
+     */
+    private int[][][] createSyndromeTables() {
+        int bytes = (parityBits + 7) / 8;
+        int[][][] tables = new int[maxErrors][bytes][256];
+        for(int j = 0; j < maxErrors; ++j) {
+            long root = 2 * j + 1;
+            for(int p = 0; p < bytes; ++p) {
+                int[] table = tables[j][p];
+                for(int b = 1; b < 256; ++b) {
+                    // reuse the entry without the lowest bit, and add the term for that bit
+                    int bit = 8 * p + Integer.numberOfTrailingZeros(b);
+                    table[b] = table[b & (b - 1)] ^ field.getElementBits((int) ((root * bit) % order));
+                }
+            }
+        }
+
+        return tables;
+    }
+}
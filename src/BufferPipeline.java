@@ -0,0 +1,272 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Class that encrypts and encodes raw data from one ByteBuffer straight into another, and decodes and decrypts it back
+ * The limbs of each encrypted block go from the encrypter to the code through an array that is reused, and each
+ * codeword is written into its place in the destination as soon as it is made, so no packed message is built in
+ * between the stages. The output is the same packed encoded message that encode(encryptBytes(data)) gives, so either
+ * side of a link can use either way. With the small key (N fits in a long) a message costs no allocation at all, while
+ * a BigInteger key still makes its numbers on the heap. Blocks go through the stages a batch at a time, so each stage
+ * is timed and counted on its own in the PipelineMetrics, corrected and uncorrectable words included
+ * Buffers can be direct or memory mapped ones, and a BufferPool can hand out the destinations so that they are reused
+ * A pipeline has scratch space of its own, so it should only be used by one thread at a time
+ */
+public class BufferPipeline {
+    private static final int BATCH_BLOCKS = 64; // blocks that go through one stage before the next stage takes them
+
+    private final Encrypter encrypter;
+    private final WordCode encoder;
+    private final BufferPool pool; // where the destinations of the pooled methods come from, null if there is none
+    private final int symbolsPerBlock;
+    private final int limbCount;
+    private final int parityBits;
+    private final int width; // width of the codewords
+    private final int[] symbols; // symbols of the block being encrypted or decrypted
+    private final int[] digits; // scratch space for decrypting a block
+    private final long[] limbs; // limbs of the block being encrypted or decrypted
+    private final long[] batchLimbs; // limbs of every block of a batch, handed from one stage to the other
+
+    /**
+     * constructor for a pipeline without a pool
+     * @param encrypter, encrypter to use, which must have the byte alphabet
+     * @param encoder, code for the encrypted limbs, such as an Encoder or a BchCode
+     */
+    public BufferPipeline(Encrypter encrypter, WordCode encoder) {
+        this(encrypter, encoder, null);
+    }
+
+    /**
+     * constructor for a pipeline
+     * @param encrypter, encrypter to use, which must have the byte alphabet
+     * @param encoder, code for the encrypted limbs, such as an Encoder or a BchCode
+     * @param pool, pool that the pooled methods take their destinations from, or null if they are not used
+     */
+    public BufferPipeline(Encrypter encrypter, WordCode encoder, BufferPool pool) {
+        if(!encrypter.getAlphabet().isBytes()) {
+            throw new IllegalArgumentException("buffers can only be encrypted with the byte alphabet");
+        } else if(encrypter.getLimbWidth() + encoder.getParityBits() > encoder.getLength()) {
+            throw new IllegalArgumentException("encrypted limbs do not fit in the code's codewords");
+        }
+
+        this.encrypter = encrypter;
+        this.encoder = encoder;
+        this.pool = pool;
+        symbolsPerBlock = encrypter.getSymbolsPerBlock();
+        limbCount = encrypter.getLimbCount();
+        parityBits = encoder.getParityBits();
+        width = encrypter.getLimbWidth() + parityBits;
+        symbols = new int[symbolsPerBlock];
+        digits = new int[symbolsPerBlock];
+        limbs = new long[limbCount];
+        batchLimbs = new long[BATCH_BLOCKS * limbCount];
+    }
+
+    /**
+     * get the size of the packed encoded message that some data turns into
+     * @param dataBytes, number of bytes of data
+     * @return the number of bytes that encryptAndEncode writes for them
+     */
+    public long getEncodedSize(int dataBytes) {
+        return PackedWords.getSize(width, encrypter.getBlockCount(dataBytes) * limbCount);
+    }
+
+    /**
+     * encrypt and encode the remaining bytes of a buffer into another one as a single packed message
+     * Both buffers are moved past what was used, and neither is moved if the destination is too small
+     * @param data, buffer whose remaining bytes are sent
+     * @param out, buffer that the packed encoded message is written to, from its position on
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the message does not fit in what remains of the destination
+     */
+    public int encryptAndEncode(ByteBuffer data, ByteBuffer out) {
+        int length = data.remaining();
+        int blocks = encrypter.getBlockCount(length);
+        int count = blocks * limbCount;
+        long size = PackedWords.getSize(width, count);
+        if(size > out.remaining()) {
+            throw new IllegalArgumentException("encoded message needs " + size + " bytes, only " + out.remaining()
+                    + " remain");
+        }
+
+        int base = out.position();
+        int from = data.position();
+        PackedWords.putHeader(out, base, parityBits, width, count);
+        if(count > 0) {
+            // putWord leaves the bits it does not write alone, so the padding after the last word is cleared first
+            out.put(base + (int) size - 1, (byte) 0);
+        }
+
+        boolean timed = PipelineMetrics.isRecording();
+        long encryptNanos = 0;
+        long encodeNanos = 0;
+        for(int batch = 0; batch < blocks; batch += BATCH_BLOCKS) {
+            int end = Math.min(batch + BATCH_BLOCKS, blocks);
+            long start = timed ? System.nanoTime() : 0;
+            for(int i = batch; i < end; ++i) {
+                int blockLength = Math.min(symbolsPerBlock, length - i * symbolsPerBlock);
+                for(int j = 0; j < blockLength; ++j) {
+                    symbols[j] = data.get(from + i * symbolsPerBlock + j) & 0xFF;
+                }
+                encrypter.encryptBlock(symbols, blockLength, 0, limbs);
+                System.arraycopy(limbs, 0, batchLimbs, (i - batch) * limbCount, limbCount);
+            }
+
+            long encrypted = timed ? System.nanoTime() : 0;
+            for(int k = 0; k < (end - batch) * limbCount; ++k) {
+                PackedWords.putWord(out, base, width, batch * limbCount + k, encoder.encodeWord(batchLimbs[k]));
+            }
+            if(timed) {
+                encryptNanos += encrypted - start;
+                encodeNanos += System.nanoTime() - encrypted;
+            }
+        }
+
+        data.position(from + length);
+        out.position(base + (int) size);
+        if(timed) {
+            PipelineMetrics.recordTime(PipelineMetrics.Stage.ENCRYPT, encryptNanos, length);
+            PipelineMetrics.recordTime(PipelineMetrics.Stage.ENCODE, encodeNanos, count);
+        }
+        return (int) size;
+    }
+
+    /**
+     * decode and decrypt the packed message at the position of a buffer into another one
+     * Words that have more errors than can be corrected are passed on without any correction
+     * Both buffers are moved past what was used, and neither is moved if the destination is too small
+     * @param packed, buffer with a packed encoded message at its position (see PackedWords)
+     * @param out, buffer that the decrypted bytes are written to, from its position on
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the message was not made with this encrypter and code, or the destination
+     * does not have room for it
+     */
+    public int decodeAndDecrypt(ByteBuffer packed, ByteBuffer out) {
+        int base = packed.position();
+        if(packed.remaining() < PackedWords.HEADER_BYTES) {
+            throw new IllegalArgumentException("buffer ends in the middle of a header");
+        }
+
+        int count = PackedWords.getCount(packed, base);
+        if(PackedWords.getParityBits(packed, base) != parityBits || PackedWords.getWidth(packed, base) != width
+                || count < 0 || count % limbCount != 0) {
+            throw new IllegalArgumentException("message was not made with this encrypter and code");
+        }
+
+        long size = PackedWords.getSize(width, count);
+        if(size > packed.remaining()) {
+            throw new IllegalArgumentException("buffer ends in the middle of a message of " + size + " bytes");
+        }
+
+        int to = out.position();
+        int written = 0;
+        int blocks = count / limbCount;
+        boolean timed = PipelineMetrics.isRecording();
+        long decodeNanos = 0;
+        long decryptNanos = 0;
+        int corrected = 0;
+        int uncorrectable = 0;
+        for(int batch = 0; batch < blocks; batch += BATCH_BLOCKS) {
+            int end = Math.min(batch + BATCH_BLOCKS, blocks);
+            long start = timed ? System.nanoTime() : 0;
+            for(int k = 0; k < (end - batch) * limbCount; ++k) {
+                long codeword = PackedWords.getWord(packed, base, width, batch * limbCount + k);
+                long word = encoder.decodeWord(codeword, width);
+                if(word == -1) {
+                    ++uncorrectable;
+                    word = codeword >>> parityBits;
+                } else if(word != codeword >>> parityBits) {
+                    ++corrected;
+                }
+                batchLimbs[k] = word;
+            }
+
+            long decoded = timed ? System.nanoTime() : 0;
+            for(int i = batch; i < end; ++i) {
+                System.arraycopy(batchLimbs, (i - batch) * limbCount, limbs, 0, limbCount);
+                int blockLength = encrypter.decryptBlock(limbs, digits, symbols, 0);
+                if(written + blockLength > out.remaining()) {
+                    throw new IllegalArgumentException("decrypted message does not fit in the " + out.remaining()
+                            + " bytes that remain");
+                }
+                for(int j = 0; j < blockLength; ++j) {
+                    out.put(to + written + j, (byte) symbols[j]);
+                }
+                written += blockLength;
+            }
+            if(timed) {
+                decodeNanos += decoded - start;
+                decryptNanos += System.nanoTime() - decoded;
+            }
+        }
+
+        packed.position(base + (int) size);
+        out.position(to + written);
+        if(timed) {
+            PipelineMetrics.recordDecodeTime(decodeNanos, count, corrected, uncorrectable);
+            PipelineMetrics.recordTime(PipelineMetrics.Stage.DECRYPT, decryptNanos, written);
+        }
+        return written;
+    }
+
+    /**
+     * encrypt and encode the remaining bytes of a buffer into a buffer from the pool
+     * @param data, buffer whose remaining bytes are sent, which is moved past them
+     * @return a buffer from the pool that holds the packed encoded message from 0 up to its limit, which should be
+     * given back to the pool once it is not needed
+     * @throws IllegalStateException if the pipeline has no pool
+     * @throws IllegalArgumentException if the message does not fit in one of the pool's buffers
+     */
+    public ByteBuffer encryptAndEncode(ByteBuffer data) {
+        ByteBuffer out = acquire();
+        try {
+            encryptAndEncode(data, out);
+        } catch(RuntimeException ex) {
+            pool.release(out);
+            throw ex;
+        }
+
+        return out.flip();
+    }
+
+    /**
+     * decode and decrypt the packed message at the position of a buffer into a buffer from the pool
+     * @param packed, buffer with a packed encoded message at its position, which is moved past it
+     * @return a buffer from the pool that holds the decrypted bytes from 0 up to its limit, which should be given back
+     * to the pool once it is not needed
+     * @throws IllegalStateException if the pipeline has no pool
+     * @throws IllegalArgumentException if the message was not made with this encrypter and code, or its bytes do not
+     * fit in one of the pool's buffers
+     */
+    public ByteBuffer decodeAndDecrypt(ByteBuffer packed) {
+        ByteBuffer out = acquire();
+        try {
+            decodeAndDecrypt(packed, out);
+        } catch(RuntimeException ex) {
+            pool.release(out);
+            throw ex;
+        }
+
+        return out.flip();
+    }
+
+    /**
+     * get the pool that the pooled methods take their destinations from
+     * @return the pool, or null if there is none
+     */
+    public BufferPool getPool() {
+        return pool;
+    }
+
+    /**
+     * take a destination from the pool
+     * @return a cleared buffer
+     * @throws IllegalStateException if the pipeline has no pool
+     */
+    private ByteBuffer acquire() {
+        if(pool == null) {
+            throw new IllegalStateException("pipeline was made without a buffer pool");
+        }
+
+        return pool.acquire();
+    }
+}
@@ -0,0 +1,59 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Class that hands out direct ByteBuffers of one size and takes them back, so that buffers are reused instead of being
+ * made for every message. Direct buffers are outside the heap, so the data in them is never moved or scanned by the
+ * garbage collector. When every pooled buffer is in use a new one is made, and it is only kept if there is room for it
+ * when it comes back, so the pool never holds more than maxBuffers
+ * Pools can be shared between threads
+ */
+public class BufferPool {
+    private final int bufferBytes;
+    private final ArrayBlockingQueue<ByteBuffer> free; // buffers that are waiting to be handed out
+
+    /**
+     * constructor for a buffer pool, which starts out empty
+     * @param bufferBytes, capacity of every buffer
+     * @param maxBuffers, most buffers that are kept for reuse
+     */
+    public BufferPool(int bufferBytes, int maxBuffers) {
+        if(bufferBytes < 1 || maxBuffers < 1) {
+            throw new IllegalArgumentException("pool needs buffers of at least one byte and room for at least one, not "
+                    + maxBuffers + " buffers of " + bufferBytes + " bytes");
+        }
+
+        this.bufferBytes = bufferBytes;
+        free = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    /**
+     * get the capacity of the buffers in the pool
+     * @return the number of bytes in each buffer
+     */
+    public int getBufferBytes() {
+        return bufferBytes;
+    }
+
+    /**
+     * take a buffer from the pool, making one if none are free
+     * @return a cleared buffer, which should be given back with release once it is not needed
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    /**
+     * give a buffer back to the pool, after which it must not be used
+     * @param buffer, a buffer that came from acquire
+     */
+    public void release(ByteBuffer buffer) {
+        if(buffer.capacity() != bufferBytes || !buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer did not come from this pool");
+        }
+
+        buffer.clear();
+        free.offer(buffer);
+    }
+}
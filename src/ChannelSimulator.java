@@ -0,0 +1,260 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class that measures how well a code holds up over a noisy channel with Monte Carlo trials
+ * Every trial sends an encrypted message of random bytes through the encoder, the channel and then the decoder, and
+ * compares the decoded words with the ones that were sent. The trials are split into chunks that run on the threads of
+ * a ForkJoinPool, and every chunk gets its own SplittableRandom split off from the seed in a fixed order, so a run gives
+ * the same result for the same seed no matter how many threads it has
+ * The outcome of decoding only depends on where the errors are, not on what was sent, so each chunk encrypts and
+ * encodes a single message and sends it over the channel once for each of its trials
+ */
+public class ChannelSimulator {
+    private static final int CHUNK_TRIALS = 64; // trials run by one task
+
+    private final Encrypter encrypter;
+    private final WordCode encoder;
+    private final NoisyChannel channel;
+    private final int messageBytes;
+    private final ForkJoinPool pool;
+
+    /**
+     * constructor for a simulator that uses the common pool
+     * @param encrypter, encrypter for the messages, which must have the byte alphabet
+     * @param encoder, code whose error correction is being measured, such as an Encoder or a BchCode
+     * @param channel, channel between the encoder and the decoder
+     * @param messageBytes, number of bytes in each message
+     */
+    public ChannelSimulator(Encrypter encrypter, WordCode encoder, NoisyChannel channel, int messageBytes) {
+        this(encrypter, encoder, channel, messageBytes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * constructor for a simulator
+     * @param encrypter, encrypter for the messages, which must have the byte alphabet
+     * @param encoder, code whose error correction is being measured, such as an Encoder or a BchCode
+     * @param channel, channel between the encoder and the decoder
+     * @param messageBytes, number of bytes in each message
+     * @param pool, pool whose threads run the trials
+     */
+    public ChannelSimulator(Encrypter encrypter, WordCode encoder, NoisyChannel channel, int messageBytes,
+                            ForkJoinPool pool) {
+        if(!encrypter.getAlphabet().isBytes()) {
+            throw new IllegalArgumentException("messages can only be encrypted with the byte alphabet");
+        } else if(encrypter.getLimbWidth() + encoder.getParityBits() > encoder.getLength()) {
+            throw new IllegalArgumentException("encrypted limbs do not fit in the code's codewords");
+        } else if(messageBytes < 1) {
+            throw new IllegalArgumentException("messages must have at least one byte, not " + messageBytes);
+        }
+
+        this.encrypter = encrypter;
+        this.encoder = encoder;
+        this.channel = channel;
+        this.messageBytes = messageBytes;
+        this.pool = pool;
+    }
+
+    /**
+     * run trials and add up what happened in them
+     * @param trials, number of messages to send
+     * @param seed, seed for the randomness of the messages and the channel
+     * @return the totals of every trial
+     */
+    public Result run(int trials, long seed) {
+        if(trials < 1) {
+            throw new IllegalArgumentException("there must be at least one trial, not " + trials);
+        }
+
+        long start = System.nanoTime();
+        Result result = pool.invoke(new TrialTask(new SplittableRandom(seed), trials));
+        result.elapsedNanos = System.nanoTime() - start;
+
+        return result;
+    }
+
+    /**
+     * run trials with a single message
+     * @param random, source of randomness for the message and the channel
+     * @param trials, number of times the message is sent
+     * @return the totals of the trials
+     */
+    private Result runChunk(SplittableRandom random, int trials) {
+        byte[] data = new byte[messageBytes];
+        random.nextBytes(data);
+        byte[] sent = encoder.encode(encrypter.encryptBytes(data));
+
+        Result result = new Result();
+        int width = PackedWords.getWidth(sent);
+        int count = PackedWords.getCount(sent);
+        int parityBits = encoder.getParityBits();
+        byte[] received = new byte[sent.length];
+        for(int trial = 0; trial < trials; ++trial) {
+            System.arraycopy(sent, 0, received, 0, sent.length);
+            result.channelErrors += channel.corrupt(received, random);
+
+            // decode the same way Encoder.decode does, passing words that cannot be corrected on as they are
+            long start = System.nanoTime();
+            for(int i = 0; i < count; ++i) {
+                long codeword = PackedWords.getWord(received, i);
+                long word = encoder.decodeWord(codeword, width);
+                if(word == -1) {
+                    ++result.uncorrectableWords;
+                    word = codeword >>> parityBits;
+                }
+
+                long errors = word ^ (PackedWords.getWord(sent, i) >>> parityBits);
+                if(errors != 0) {
+                    ++result.wordErrors;
+                    result.bitErrors += Long.bitCount(errors);
+                }
+            }
+            result.decodeNanos += System.nanoTime() - start;
+        }
+
+        result.trials = trials;
+        result.words = (long) trials * count;
+        result.codewordBits = result.words * width;
+        result.dataBits = result.words * (width - parityBits);
+
+        return result;
+    }
+
+    /**
+     * Task that runs a range of trials, splitting itself in half until the range is one chunk
+     */
+    private class TrialTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final SplittableRandom random;
+        private final int trials;
+
+        TrialTask(SplittableRandom random, int trials) {
+            this.random = random;
+            this.trials = trials;
+        }
+
+        @Override
+        protected Result compute() {
+            if(trials <= CHUNK_TRIALS) {
+                return runChunk(random, trials);
+            }
+
+            // the first half always gets the split off generator, so the results do not depend on scheduling
+            int half = trials / 2;
+            TrialTask first = new TrialTask(random.split(), half);
+            TrialTask second = new TrialTask(random, trials - half);
+            first.fork();
+            Result result = second.compute();
+            result.add(first.join());
+
+            return result;
+        }
+    }
+
+    /**
+     * Class that holds the totals of a run of trials
+     */
+    public static class Result {
+        private int trials;
+        private long words; // codewords sent
+        private long codewordBits; // bits sent over the channel
+        private long dataBits; // bits of the sent words without their parity
+        private long channelErrors; // bits flipped by the channel
+        private long bitErrors; // bits of the decoded words that are still wrong
+        private long wordErrors; // decoded words that are still wrong
+        private long uncorrectableWords; // words the decoder knew it could not correct
+        private long decodeNanos; // time spent decoding, added up over every thread
+        private long elapsedNanos; // time the whole run took
+
+        /**
+         * add the totals of other trials to these
+         * @param other, totals of the other trials
+         */
+        private void add(Result other) {
+            trials += other.trials;
+            words += other.words;
+            codewordBits += other.codewordBits;
+            dataBits += other.dataBits;
+            channelErrors += other.channelErrors;
+            bitErrors += other.bitErrors;
+            wordErrors += other.wordErrors;
+            uncorrectableWords += other.uncorrectableWords;
+            decodeNanos += other.decodeNanos;
+        }
+
+        public int getTrials() {
+            return trials;
+        }
+
+        public long getWords() {
+            return words;
+        }
+
+        public long getChannelErrors() {
+            return channelErrors;
+        }
+
+        public long getBitErrors() {
+            return bitErrors;
+        }
+
+        public long getWordErrors() {
+            return wordErrors;
+        }
+
+        public long getUncorrectableWords() {
+            return uncorrectableWords;
+        }
+
+        /**
+         * get the fraction of bits that the channel flipped
+         * @return the bit error rate before decoding
+         */
+        public double getChannelBitErrorRate() {
+            return (double) channelErrors / codewordBits;
+        }
+
+        /**
+         * get the fraction of decoded bits that are wrong
+         * @return the bit error rate after decoding
+         */
+        public double getBitErrorRate() {
+            return (double) bitErrors / dataBits;
+        }
+
+        /**
+         * get the fraction of decoded words that are wrong
+         * @return the word error rate after decoding
+         */
+        public double getWordErrorRate() {
+            return (double) wordErrors / words;
+        }
+
+        /**
+         * get how fast one thread decodes, not counting the time spent making messages and sending them
+         * @return the number of codeword bits decoded per second by one thread
+         */
+        public double getDecodeThroughput() {
+            return codewordBits * 1e9 / Math.max(decodeNanos, 1);
+        }
+
+        /**
+         * get how fast the whole run went
+         * @return the number of trials per second, over every thread
+         */
+        public double getTrialRate() {
+            return trials * 1e9 / Math.max(elapsedNanos, 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d trials, %d words, %d channel bit errors%n"
+                            + "channel BER %.3e, decoded BER %.3e, WER %.3e (%d words detected as uncorrectable)%n"
+                            + "decode throughput %.1f Mbit/s per thread, %.0f trials/s overall",
+                    trials, words, channelErrors, getChannelBitErrorRate(), getBitErrorRate(), getWordErrorRate(),
+                    uncorrectableWords, getDecodeThroughput() / 1e6, getTrialRate());
+        }
+    }
+}
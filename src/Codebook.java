@@ -0,0 +1,230 @@
+import java.util.Arrays;
+
+/**
+ * Class that looks up the encrypted and encoded codeword of each symbol instead of working it out every time
+ * RSA without padding is deterministic, so when every symbol is its own block and encrypts to a single limb (as with
+ * the toy key outside of block mode) a symbol always becomes the same codeword. For a small alphabet such as the
+ * default 67 characters every codeword can then be found once, and sending a message costs one table load per symbol
+ * Receiving goes through a reverse index from codeword to symbol, which is an open addressing hash table of longs, so a
+ * codeword that arrives intact is one lookup as well. A codeword that is not in the index is corrected by the code and
+ * looked up again, and only one that is still not found is decrypted. Words that cannot be corrected are handled the
+ * way the separate stages handle them in each form, so decode gives the same result as decrypting the decoded packed
+ * message, and decodeText the same as decrypting the decoded text
+ * A codebook is built once for an encrypter and code and should be kept for as long as they are used, like them it is
+ * immutable, so one can be shared between threads
+ * Since one lookup does the work of both stages, a codebook is metered as a single stage (see PipelineMetrics), encode
+ * as ENCRYPT and decode as DECRYPT, and the ENCODE and DECODE counts (corrected words included) are left alone
+ */
+public class Codebook {
+    private static final int MAX_SYMBOLS = 1 << 16; // largest alphabet that is given a table
+    private static final long EMPTY = -1; // key of a free slot in the index, codewords are never negative
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L; // 2^64 / golden ratio, spreads out the codewords
+    private static final int TEXT_CODEWORD_BITS = 63; // length that Encoder.decode(String) decodes codewords with
+
+    private final Encrypter encrypter;
+    private final WordCode encoder;
+    private final int parityBits;
+    private final int width; // width of the codewords
+    private final long[] codewords; // codeword of each symbol
+    private final long[] indexCodewords; // codeword in each slot of the index, EMPTY if the slot is free
+    private final int[] indexSymbols; // symbol of the codeword in the same slot
+    private final int indexShift; // shift that turns a hash into a slot, 64 - log2 of the number of slots
+
+    /**
+     * constructor for a codebook, which encrypts and encodes every symbol of the encrypter's alphabet
+     * @param encrypter, encrypter that puts each symbol in a block of its own and encrypts it to one limb
+     * @param encoder, code for the encrypted limbs, such as an Encoder or a BchCode
+     */
+    public Codebook(Encrypter encrypter, WordCode encoder) {
+        if(encrypter.getSymbolsPerBlock() != 1 || encrypter.getLimbCount() != 1) {
+            throw new IllegalArgumentException("codebooks need one symbol per block and one limb per encrypted value");
+        } else if(encrypter.getAlphabet().size() > MAX_SYMBOLS) {
+            throw new IllegalArgumentException("alphabet of " + encrypter.getAlphabet().size()
+                    + " symbols is too big for a codebook");
+        } else if(encrypter.getLimbWidth() + encoder.getParityBits() > encoder.getLength()) {
+            throw new IllegalArgumentException("encrypted limbs do not fit in the code's codewords");
+        }
+
+        this.encrypter = encrypter;
+        this.encoder = encoder;
+        parityBits = encoder.getParityBits();
+        width = encrypter.getLimbWidth() + parityBits;
+
+        // the index has at least twice as many slots as symbols, so probes stay short
+        int size = encrypter.getAlphabet().size();
+        int slots = Integer.highestOneBit(size) << 2;
+        codewords = new long[size];
+        indexCodewords = new long[slots];
+        indexSymbols = new int[slots];
+        indexShift = 64 - Integer.numberOfTrailingZeros(slots);
+        Arrays.fill(indexCodewords, EMPTY);
+
+        int[] symbol = new int[1];
+        long[] limbs = new long[1];
+        for(int i = 0; i < size; ++i) {
+            symbol[0] = i;
+            encrypter.encryptBlock(symbol, 1, 0, limbs);
+            codewords[i] = encoder.encodeWord(limbs[0]);
+
+            int slot = slot(codewords[i]);
+            while(indexCodewords[slot] != EMPTY) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            indexCodewords[slot] = codewords[i];
+            indexSymbols[slot] = i;
+        }
+    }
+
+    /**
+     * get the codeword that a symbol is encrypted and encoded into
+     * @param symbol, a symbol of the encrypter's alphabet
+     * @return the codeword
+     */
+    public long getCodeword(int symbol) {
+        return codewords[symbol];
+    }
+
+    /**
+     * look a codeword up in the reverse index
+     * @param codeword, the codeword
+     * @return the symbol that encrypts and encodes into it, or -1 if there is none
+     */
+    public int getSymbol(long codeword) {
+        int mask = indexCodewords.length - 1;
+        for(int slot = slot(codeword); indexCodewords[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if(indexCodewords[slot] == codeword) {
+                return indexSymbols[slot];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * encrypt and encode a message, which gives the same packed message as encoding encryptPacked(message)
+     * @param message, string of information to be sent
+     * @return the packed encoded message (see PackedWords)
+     * @throws IllegalArgumentException if the message has a character that is not in the alphabet
+     */
+    public byte[] encode(String message) {
+        long start = PipelineMetrics.start();
+        int[] symbols = encrypter.getAlphabet().toSymbols(message);
+        byte[] packed = PackedWords.allocate(parityBits, width, symbols.length);
+        for(int i = 0; i < symbols.length; ++i) {
+            PackedWords.putWord(packed, i, codewords[symbols[i]]);
+        }
+
+        PipelineMetrics.record(PipelineMetrics.Stage.ENCRYPT, start, symbols.length);
+        return packed;
+    }
+
+    /**
+     * encrypt and encode a message into the text form, which gives the same string as encoding encrypt(message)
+     * @param message, string of information to be sent
+     * @return the encoded information string (each codeword as a binary string)
+     * @throws IllegalArgumentException if the message has a character that is not in the alphabet
+     */
+    public String encodeText(String message) {
+        long start = PipelineMetrics.start();
+        int[] symbols = encrypter.getAlphabet().toSymbols(message);
+        StringBuilder encodedMessage = new StringBuilder();
+        for(int symbol : symbols) {
+            encodedMessage.append(Long.toBinaryString(codewords[symbol])).append(' ');
+        }
+
+        PipelineMetrics.record(PipelineMetrics.Stage.ENCRYPT, start, symbols.length);
+        return encodedMessage.toString();
+    }
+
+    /**
+     * decode and decrypt a packed message that was made with this codebook's encrypter and code
+     * Words that have more errors than can be corrected are decrypted without any correction
+     * @param packed, packed encoded message (see PackedWords)
+     * @return the decrypted string of information
+     * @throws IllegalArgumentException if the message was not made with this encrypter and code, or a word does not
+     * decrypt to a symbol of the alphabet
+     */
+    public String decode(byte[] packed) {
+        long start = PipelineMetrics.start();
+        if(PackedWords.getParityBits(packed) != parityBits || PackedWords.getWidth(packed) != width) {
+            throw new IllegalArgumentException("message was not made with this encrypter and code");
+        }
+
+        int count = PackedWords.getCount(packed);
+        int[] symbols = new int[count];
+        long[] limbs = new long[1];
+        int[] digits = new int[1];
+        int length = 0;
+        for(int i = 0; i < count; ++i) {
+            length = decodeSymbol(PackedWords.getWord(packed, i), false, limbs, digits, symbols, length);
+        }
+
+        PipelineMetrics.record(PipelineMetrics.Stage.DECRYPT, start, length);
+        return encrypter.getAlphabet().fromSymbols(symbols, length);
+    }
+
+    /**
+     * decode and decrypt a message in the text form that encodeText gives
+     * Words that have more errors than can be corrected are decrypted as -1, the way Encoder.decode(String) passes
+     * them on, so they only give a symbol if decrypt would give one for them
+     * @param message, encoded information string (each codeword as a binary string)
+     * @return the decrypted string of information
+     * @throws IllegalArgumentException if a word does not decrypt to a symbol of the alphabet
+     */
+    public String decodeText(String message) {
+        long start = PipelineMetrics.start();
+        String[] splitMessage = message.isEmpty() ? new String[0] : message.split(" ", 0);
+        int[] symbols = new int[splitMessage.length];
+        long[] limbs = new long[1];
+        int[] digits = new int[1];
+        int length = 0;
+        for(String word : splitMessage) {
+            length = decodeSymbol(Long.parseLong(word, 2), true, limbs, digits, symbols, length);
+        }
+
+        PipelineMetrics.record(PipelineMetrics.Stage.DECRYPT, start, length);
+        return encrypter.getAlphabet().fromSymbols(symbols, length);
+    }
+
+    /**
+     * turn a received codeword back into its symbol, looking it up before and after it is corrected, and only
+     * decrypting it if neither is in the index
+     * @param codeword, the received codeword
+     * @param text, true to handle the codeword the way the text form is, false for the way the packed form is
+     * @param limbs, scratch space for the limb of a codeword that has to be decrypted
+     * @param digits, scratch space for decrypting
+     * @param symbols, where the symbol is written
+     * @param count, index in symbols to write the symbol to
+     * @return the index after the symbol
+     * @throws IllegalArgumentException if the codeword does not decrypt to a symbol of the alphabet
+     */
+    private int decodeSymbol(long codeword, boolean text, long[] limbs, int[] digits, int[] symbols, int count) {
+        int symbol = getSymbol(codeword);
+        if(symbol != -1) {
+            symbols[count] = symbol;
+            return count + 1;
+        }
+
+        long word = encoder.decodeWord(codeword, text ? TEXT_CODEWORD_BITS : width);
+        if(word != -1) {
+            symbol = getSymbol(encoder.encodeWord(word));
+            if(symbol != -1) {
+                symbols[count] = symbol;
+                return count + 1;
+            }
+        }
+
+        // the packed form passes an uncorrectable word on as it is, while the text form passes on -1
+        limbs[0] = word == -1 && !text ? codeword >>> parityBits : word;
+        return encrypter.decryptBlock(limbs, digits, symbols, count);
+    }
+
+    /**
+     * find the slot of the index that the search for a codeword starts at
+     * @param codeword, the codeword
+     * @return the slot
+     */
+    private int slot(long codeword) {
+        return (int) ((codeword * HASH_MULTIPLIER) >>> indexShift);
+    }
+}
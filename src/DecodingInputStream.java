@@ -0,0 +1,105 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that decodes the packed encoded messages read from another stream (such as the output of an
+ * EncodingOutputStream). Messages are read and decoded one at a time, and the bytes of each packed decoded message are
+ * handed out before the next one is read, so only one message is held in memory at a time
+ */
+public class DecodingInputStream extends FilterInputStream {
+    private final Encoder encoder;
+    private final int maxFrameBytes; // most bytes a packed message that is read can have
+    private byte[] frame = new byte[0]; // packed decoded message being handed out
+    private int position; // index of the next byte of the message to hand out
+
+    /**
+     * constructor for a decoding stream with the default limit on the size of a packed message
+     * @param in, stream that the packed encoded messages are read from
+     * @param encoder, encoder to use
+     */
+    public DecodingInputStream(InputStream in, Encoder encoder) {
+        this(in, encoder, PackedWords.DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    /**
+     * constructor for a decoding stream
+     * @param in, stream that the packed encoded messages are read from
+     * @param encoder, encoder to use
+     * @param maxFrameBytes, most bytes a packed message that is read can have, header included
+     */
+    public DecodingInputStream(InputStream in, Encoder encoder, int maxFrameBytes) {
+        super(in);
+        this.encoder = encoder;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(!fill()) {
+            return -1;
+        }
+
+        return frame[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        } else if(!fill()) {
+            return -1;
+        }
+
+        int count = Math.min(len, frame.length - position);
+        System.arraycopy(frame, position, b, off, count);
+        position += count;
+
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while(skipped < n && fill()) {
+            int count = (int) Math.min(n - skipped, frame.length - position);
+            position += count;
+            skipped += count;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return frame.length - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * make sure there are bytes to hand out, reading and decoding the next message if needed
+     * @return false if the underlying stream has no more messages
+     * @throws IOException if the underlying stream cannot be read or does not hold packed messages
+     */
+    private boolean fill() throws IOException {
+        while(position == frame.length) {
+            byte[] packed = PackedWords.read(in, maxFrameBytes);
+            if(packed == null) {
+                return false;
+            }
+
+            try {
+                frame = encoder.decode(packed);
+            } catch(IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            position = 0;
+        }
+
+        return true;
+    }
+}
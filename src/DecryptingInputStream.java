@@ -0,0 +1,116 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that decrypts the packed messages read from another stream (such as the output of an
+ * EncryptingOutputStream or a DecodingInputStream) back into raw bytes, which needs an encrypter with the byte alphabet
+ * Messages are read and decrypted one at a time, so only one message is held in memory at a time
+ */
+public class DecryptingInputStream extends FilterInputStream {
+    private final Encrypter encrypter;
+    private final int maxFrameBytes; // most bytes a packed message that is read can have
+    private int[] symbols = new int[0]; // decrypted bytes being handed out
+    private int count; // number of decrypted bytes in the buffer
+    private int position; // index of the next byte to hand out
+
+    /**
+     * constructor for a decrypting stream with the default limit on the size of a packed message
+     * @param in, stream that the packed encrypted messages are read from
+     * @param encrypter, encrypter to use, which must have the byte alphabet
+     */
+    public DecryptingInputStream(InputStream in, Encrypter encrypter) {
+        this(in, encrypter, PackedWords.DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    /**
+     * constructor for a decrypting stream
+     * @param in, stream that the packed encrypted messages are read from
+     * @param encrypter, encrypter to use, which must have the byte alphabet
+     * @param maxFrameBytes, most bytes a packed message that is read can have, header included
+     */
+    public DecryptingInputStream(InputStream in, Encrypter encrypter, int maxFrameBytes) {
+        super(in);
+        if(!encrypter.getAlphabet().isBytes()) {
+            throw new IllegalArgumentException("streams can only be decrypted with the byte alphabet");
+        }
+
+        this.encrypter = encrypter;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(!fill()) {
+            return -1;
+        }
+
+        return symbols[position++];
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        } else if(!fill()) {
+            return -1;
+        }
+
+        int taken = Math.min(len, count - position);
+        for(int i = 0; i < taken; ++i) {
+            b[off + i] = (byte) symbols[position++];
+        }
+
+        return taken;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while(skipped < n && fill()) {
+            int taken = (int) Math.min(n - skipped, count - position);
+            position += taken;
+            skipped += taken;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return count - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * make sure there are bytes to hand out, reading and decrypting the next message if needed
+     * @return false if the underlying stream has no more messages
+     * @throws IOException if the underlying stream cannot be read or does not hold packed encrypted messages
+     */
+    private boolean fill() throws IOException {
+        while(position == count) {
+            byte[] packed = PackedWords.read(in, maxFrameBytes);
+            if(packed == null) {
+                return false;
+            }
+
+            int blocks = PackedWords.getCount(packed) / encrypter.getLimbCount();
+            if(symbols.length < blocks * encrypter.getSymbolsPerBlock()) {
+                symbols = new int[blocks * encrypter.getSymbolsPerBlock()];
+            }
+
+            try {
+                count = encrypter.decryptSymbols(packed, symbols);
+            } catch(IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            position = 0;
+        }
+
+        return true;
+    }
+}
@@ -1,17 +1,75 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Class that is responsible for encoding and decoding information messages
+ * Encoders are immutable, so one can be shared between threads, and forGenerator hands out a single shared encoder for
+ * each generator. Only the small parity table is built up front, the error table (2^r entries) and the field behind it
+ * are built the first time something is decoded, so an encoder that only encodes is cheap even for large generators
+ * Above degree 20 the error table and the field would take too much memory, so instead only the syndromes of the 63
+ * locations that a codeword can have are worked out, and the syndrome of an error is searched for among them
  */
-public class Encoder {
-    private GaloisField field; // field that information messages are pulled from
-    private String generator; // generator for both the field and the cyclic Hamming code
+public class Encoder implements WordCode {
+    private static final int MAX_CODEWORD_BITS = 63; // codewords are packed into a non-negative long
+    private static final int MAX_PARITY_BITS = 30; // parity is packed into a non-negative int
+    private static final int MAX_TABLE_DEGREE = 20; // largest generator that gets a full error table, 4 MB of ints
+    private static final int LOCATION_BITS = 6; // bits that a location takes up in an entry of the syndrome list
+
+    private static final ConcurrentHashMap<String, Encoder> ENCODERS = new ConcurrentHashMap<>();
+
+    private final String generator; // generator for both the field and the cyclic Hamming code
+    private final int parityBits; // degree of the generator, which is the number of parity bits in each codeword
+    private final int parityMask; // mask that keeps only the parity bits of a codeword
+    private final int[] parityTable; // parity of every possible byte, used to encode a byte at a time
+    private volatile int[] errorTable; // location of the single bit error behind each syndrome, built on first use
+    private volatile long[] syndromeList; // syndrome << LOCATION_BITS | location, sorted, used instead above the cap
+
+    /**
+     * get the shared encoder for a generator, building it the first time it is asked for
+     * @param generator, a binary string that represents a primitive polynomial over Z2 (most significant term on left)
+     * @return the encoder
+     */
+    public static Encoder forGenerator(String generator) {
+        Encoder encoder = ENCODERS.get(generator);
+        return encoder != null ? encoder : ENCODERS.computeIfAbsent(generator, Encoder::new);
+    }
 
     /**
-     * Constructor for an encoder object
+     * Constructor for an encoder object, forGenerator should be used instead unless a private copy is wanted
+     * A generator that is not primitive is only caught the first time a word is decoded, and above degree 20 only if it
+     * gives two locations of a codeword the same syndrome
      * @param generator, a binary string that represents a primitive polynomial over Z2 (most significant term on left)
      */
     public Encoder(String generator) {
-        field = new GaloisField(generator);
+        GaloisField.checkGenerator(generator, MAX_PARITY_BITS);
         this.generator = generator;
+        parityBits = generator.length() - 1;
+        parityMask = (1 << parityBits) - 1;
+        parityTable = createParityTable();
+    }
+
+    /**
+     * get the number of parity bits that encoding adds to each word
+     * @return the degree of the generator
+     */
+    public int getParityBits() {
+        return parityBits;
+    }
+
+    /**
+     * get the number of bit errors that can be corrected in each codeword
+     * @return 1, since this is a Hamming code
+     */
+    public int getMaxErrors() {
+        return 1;
+    }
+
+    /**
+     * get the number of bits a codeword can have before two error locations give the same syndrome
+     * @return n, the length of the code, 2^r-1 or 63 if that is smaller
+     */
+    public int getLength() {
+        return (int) Math.min((1L << parityBits) - 1, MAX_CODEWORD_BITS);
     }
 
     /**
@@ -20,211 +78,278 @@ public class Encoder {
      * @return the encoded information string (each character will become a binary string)
      */
     public String encode(String message) {
-        // gather message as a string of number tokens then convert them to binary strings
-        String[] splitMessage = message.split(" ", 0);
-        for(int i = 0; i < splitMessage.length; ++i) {
-            int currNum = Integer.parseInt(splitMessage[i]);
-            splitMessage[i] = Integer.toBinaryString(currNum);
-        }
+        long start = PipelineMetrics.start();
 
-        // encode each binary string
+        // gather message as a string of number tokens then encode each one as a binary string
+        String[] splitMessage = message.split(" ", 0);
         StringBuilder encodedMessage = new StringBuilder();
-        for(String word : splitMessage) {
-            String encodedWord = encodeWord(word) + " ";
-            encodedMessage.append(encodedWord);
+        for(String token : splitMessage) {
+            long codeword = encodeWord(Long.parseLong(token));
+            encodedMessage.append(Long.toBinaryString(codeword)).append(' ');
         }
 
+        PipelineMetrics.record(PipelineMetrics.Stage.ENCODE, start, splitMessage.length);
         return encodedMessage.toString();
     }
 
     /**
-     * Encode a single word of information using a cyclic Hamming code
-     * @param word, word to be encoded
-     * @return the encoded word
-     */
-    private String encodeWord(String word) {
-        // encode each word by multiplying it with the generator
-        int[] result = new int[word.length()  + generator.length() - 1];
-        for(int i = 0; i < word.length(); ++i) {
-            if(word.charAt(i) == '1') {
-                int exp1 = word.length() - i - 1;
-                for(int j = 0; j < generator.length(); ++j) {
-                    if(generator.charAt(j) == '1') {
-                        int exp2 = generator.length() - j - 1;
-                        if (result[exp1 + exp2] == 1) {
-                            result[exp1 + exp2] = 0;
-                        } else {
-                            result[exp1 + exp2] = 1;
-                        }
-                    }
-                }
-            }
+     * Encode a packed message using a cyclic Hamming code, each word gains a parity bit for every degree of the generator
+     * @param packed, packed message whose words will be encoded (see PackedWords)
+     * @return the packed encoded message
+     */
+    public byte[] encode(byte[] packed) {
+        long start = PipelineMetrics.start();
+        int width = PackedWords.getWidth(packed);
+        int count = PackedWords.getCount(packed);
+        if(PackedWords.getParityBits(packed) != 0) {
+            throw new IllegalArgumentException("message is already encoded");
+        } else if(width + parityBits > MAX_CODEWORD_BITS) {
+            throw new IllegalArgumentException("words of width " + width + " do not fit in a "
+                    + MAX_CODEWORD_BITS + "-bit codeword");
+        }
+
+        byte[] encoded = PackedWords.allocate(parityBits, width + parityBits, count);
+        for(int i = 0; i < count; ++i) {
+            PackedWords.putWord(encoded, i, encodeWord(PackedWords.getWord(packed, i)));
+        }
+
+        PipelineMetrics.record(PipelineMetrics.Stage.ENCODE, start, count);
+        return encoded;
+    }
+
+    /**
+     * Encode a single word of information using the systematic form of the cyclic Hamming code.
+     * The word is shifted up by the degree of the generator and the remainder of dividing that by the
+     * generator is placed in the low bits, so the codeword is divisible by the generator
+     * @param word, word to be encoded, bit i is the coefficient of x^i
+     * @return the encoded word, with the message in the high bits and the parity in the low bits
+     */
+    public long encodeWord(long word) {
+        if(word < 0 || Long.numberOfLeadingZeros(word) < parityBits + 1) {
+            throw new IllegalArgumentException("word " + word + " does not fit in a " + MAX_CODEWORD_BITS
+                    + "-bit codeword");
         }
 
-        // put result of multiplication into a string
-        StringBuilder resultBuilder = new StringBuilder();
-        boolean shouldAppend = false;
-        for(int i = result.length - 1; i >= 0; --i) {
-            if(!shouldAppend && result[i] == 1) {
-                shouldAppend = true;
+        return (word << parityBits) | parity(word);
+    }
+
+    /**
+     * compute the parity of a word, which is word*x^r mod generator where r is the degree of the generator
+     * This works a byte at a time using the parity table, in the same way that a table-driven CRC does
+     * @param word, word to compute the parity of
+     * @return the parity bits of the word
+     */
+    private int parity(long word) {
+        if(word == 0) {
+            return 0;
+        }
+
+        // skip the leading zero bytes since they leave the remainder unchanged
+        int remainder = 0;
+        for(int shift = (63 - Long.numberOfLeadingZeros(word)) & ~7; shift >= 0; shift -= 8) {
+            int nextByte = (int) (word >>> shift) & 0xFF;
+            if(parityBits < 8) {
+                // remainder*x^8 + byte*x^r = (remainder*x^(8-r) + byte)*x^r, and the factor is just one byte
+                remainder = parityTable[(remainder << (8 - parityBits)) ^ nextByte];
+            } else {
+                // the top byte of the remainder combines with the incoming byte, the rest just shifts up
+                int top = (remainder >>> (parityBits - 8)) ^ nextByte;
+                remainder = parityTable[top] ^ ((remainder << 8) & parityMask);
             }
+        }
+
+        return remainder;
+    }
 
-            if(shouldAppend) {
-                resultBuilder.append(Character.forDigit(result[i], 10));
+    /**
+     * build the table of parities for every possible byte, entry i is i*x^r mod generator
+     * The entries are found by running the division one bit at a time, like a linear feedback shift register
+     * @return the parity table
+     */
+    private int[] createParityTable() {
+        int generatorBits = Integer.parseInt(generator, 2);
+        int[] table = new int[256];
+        for(int i = 0; i < table.length; ++i) {
+            // i*x^r has degree at most r+7, so reduce each of the top 8 bits in turn
+            long remainder = (long) i << parityBits;
+            for(int bit = parityBits + 7; bit >= parityBits; --bit) {
+                if((remainder & (1L << bit)) != 0) {
+                    remainder ^= (long) generatorBits << (bit - parityBits);
+                }
             }
+            table[i] = (int) remainder;
         }
 
-        return resultBuilder.toString();
+        return table;
     }
 
     /**
      * decoded a given string of information that has previously been encoded
-     * In a cyclic Hamming code, words are encoded by multiplying them with a generator polynomial
+     * In a systematic cyclic Hamming code, every codeword is a multiple of the generator polynomial
      * @param message, message to be decoded
-     * @return the decoded message
+     * @return the decoded message, words that could not be corrected are decoded as -1
      */
     public String decode(String message) {
+        long start = PipelineMetrics.start();
         String[] splitMessage = message.split(" ", 0);
         StringBuilder decodedMessage = new StringBuilder();
 
         // decode every string of binary back into their decimal representation
+        int corrected = 0;
+        int uncorrectable = 0;
         for(String word : splitMessage) {
-            String decodedWord = decodeWord(word) + " ";
-            decodedMessage.append(decodedWord);
+            long codeword = Long.parseLong(word, 2);
+            long decodedWord = decodeWord(codeword, MAX_CODEWORD_BITS);
+            if(decodedWord == -1) {
+                ++uncorrectable;
+            } else if(decodedWord != codeword >>> parityBits) {
+                ++corrected;
+            }
+            decodedMessage.append(decodedWord).append(' ');
         }
 
+        PipelineMetrics.recordDecode(start, splitMessage.length, corrected, uncorrectable);
         return decodedMessage.toString();
     }
 
     /**
-     * decode a single word of information using a cyclic Hamming code
-     * In a cyclic Hamming code, words are decoded by dividing them by the generator polynomial
-     * @param word, word to be decoded
-     * @return the decoded word
-     */
-    private String decodeWord(String word) {
-        String[] quotient = dividePolynomials(word, generator);
-
-        // If the remainder is null, then an error occurred. The error location is equal to the exponent
-        // the represents the remainder as an element of the field, so we find that exponent and then
-        // flip the bit that is in that location and redivide
-        if(quotient[1] != null) {
-            String element = ("0".repeat(generator.length() - 1 - quotient[1].length())) + quotient[1];
-            int elementExp = field.getExponent(element);
-
-            StringBuilder correctedWord = new StringBuilder();
-            for(int i = 0; i < quotient[0].length(); ++i) {
-                if(quotient[0].length() - i - 1 == elementExp) {
-                    if(quotient[0].charAt(i) == '1') {
-                        correctedWord.append('0');
-                    } else {
-                        correctedWord.append('1');
-                    }
-                } else {
-                    correctedWord.append(quotient[0].charAt(i));
-                }
+     * decode a packed message that has previously been encoded, which removes the parity bits from each word
+     * Words that have more errors than can be corrected are passed on without any correction
+     * @param packed, packed message to be decoded (see PackedWords)
+     * @return the packed decoded message
+     */
+    public byte[] decode(byte[] packed) {
+        long start = PipelineMetrics.start();
+        int width = PackedWords.getWidth(packed);
+        int count = PackedWords.getCount(packed);
+        if(PackedWords.getParityBits(packed) != parityBits) {
+            throw new IllegalArgumentException("message was encoded with " + PackedWords.getParityBits(packed)
+                    + " parity bits, expected " + parityBits);
+        }
+
+        byte[] decoded = PackedWords.allocate(0, width - parityBits, count);
+        int corrected = 0;
+        int uncorrectable = 0;
+        for(int i = 0; i < count; ++i) {
+            long codeword = PackedWords.getWord(packed, i);
+            long word = decodeWord(codeword, width);
+            if(word == -1) {
+                ++uncorrectable;
+                word = codeword >>> parityBits;
+            } else if(word != codeword >>> parityBits) {
+                ++corrected;
             }
-            
-            quotient = dividePolynomials(correctedWord.toString(), generator);
+            PackedWords.putWord(decoded, i, word);
         }
-        
-        return Integer.toString(binaryToDecimal(quotient[0]));
+
+        PipelineMetrics.recordDecode(start, count, corrected, uncorrectable);
+        return decoded;
     }
 
     /**
-     * divide two given polynomials, which are represented as binary strings with the most significant term on the left
-     * @param num, polynomial that is in the numerator
-     * @param denom, polynomial that is in the denominator
-     * @return String array, first element is the quotient and second element is the remainder (null if there is none)
+     * decode a single word of information using a cyclic Hamming code
+     * The syndrome (the remainder of dividing by the generator) is zero for a valid codeword. Otherwise it is the
+     * field element x^i, where i is the location of the error, so the error table maps it straight to the bit to flip
+     * @param codeword, word to be decoded, bit i is the coefficient of x^i
+     * @param length, number of bits in the codeword, an error located past this cannot be corrected
+     * @return the decoded word, or -1 if the codeword has more errors than can be corrected
      */
-    private static String[] dividePolynomials(String num, String denom) {
-        // if denominator is greater than numerator then it doesn't divide in
-        if(denom.length() > num.length()) {
-            return new String[]{null, num};
-        }
-
-        String[] quotientAndRemainder = new String[2];
-        String newNum = num;
-        int denomDegree = denom.length() - 1;
-        int[] quotientArr = new int[newNum.length() - denomDegree];
-
-        while(true) {
-            // if denominator is bigger than numerator, it no longer divides in
-            int numDegree = newNum.length() - 1;
-            if(numDegree < denomDegree) {
-                quotientAndRemainder[1] = newNum;
-                break;
+    public long decodeWord(long codeword, int length) {
+        int syndrome = parity(codeword >>> parityBits) ^ ((int) codeword & parityMask);
+        if(syndrome != 0) {
+            int errorLocation = parityBits <= MAX_TABLE_DEGREE ? getErrorTable()[syndrome]
+                    : findErrorLocation(syndrome);
+            if(errorLocation >= length) {
+                return -1;
             }
+            codeword ^= 1L << errorLocation;
+        }
 
-            quotientArr[numDegree - denomDegree] = 1; // current term in quotient is x^(numDegree - denomDegree)
-
-            // build the new numerator
-            StringBuilder numBuilder = new StringBuilder();
-            boolean shouldAppend = false;
-            for(char bit : binaryAdd(newNum, denom + "0".repeat(numDegree - denomDegree)).toCharArray()) {
-                if(!shouldAppend && bit == '1') {
-                    shouldAppend = true;
-                }
-
-                if(shouldAppend) {
-                    numBuilder.append(bit);
-                }
-            }
+        // the code is systematic, so the message is everything above the parity bits
+        return codeword >>> parityBits;
+    }
 
-            // if the new numerator is 0, then we have finished the division with a remainder of zero
-            newNum = numBuilder.toString();
-            if(newNum.equals("0".repeat(newNum.length()))) {
-                break;
-            }
+    /**
+     * get the error table, building it if this is the first time it is needed
+     * Two threads may both build it, but the tables are identical, so it does not matter which one is kept
+     * @return the error table
+     */
+    private int[] getErrorTable() {
+        int[] table = errorTable;
+        if(table == null) {
+            table = createErrorTable();
+            errorTable = table;
         }
 
-        // build the quotient string out of the quotientArr
-        StringBuilder quotient = new StringBuilder();
-        for(int i = quotientArr.length - 1; i >= 0; --i) {
-            quotient.append(Character.forDigit(quotientArr[i], 10));
+        return table;
+    }
+
+    /**
+     * build the table that maps every nonzero syndrome to the location of the error that causes it
+     * A single error at location i has syndrome x^i mod generator, which is the field element alpha^i
+     * @return the error table, indexed by syndrome
+     */
+    private int[] createErrorTable() {
+        GaloisField field = GaloisField.forGenerator(generator);
+        int[] table = new int[1 << parityBits];
+        table[0] = -1;
+        for(int i = 0; i < field.getOrder(); ++i) {
+            table[field.getElementBits(i)] = i;
         }
-        quotientAndRemainder[0] = quotient.toString();
 
-        return quotientAndRemainder;
+        return table;
     }
 
     /**
-     * add two binary strings of the same size together
-     * @param lhs, first added
-     * @param rhs, second addend
-     * @return sum of the two binary strings
+     * find the location of the single bit error behind a syndrome in the syndrome list, for generators above the cap
+     * @param syndrome, a nonzero syndrome
+     * @return the location of the error, or Integer.MAX_VALUE if no location that a codeword can have gives it
      */
-    private static String binaryAdd(String lhs, String rhs) {
-        if(lhs.length() != rhs.length()) {
-            return null;
+    private int findErrorLocation(int syndrome) {
+        long[] list = syndromeList;
+        if(list == null) {
+            list = createSyndromeList();
+            syndromeList = list;
         }
 
-        // 1+1=0, 1+0=1, 0+1=1, and 0+0=0
-        StringBuilder sum = new StringBuilder();
-        for(int i = 0; i < lhs.length(); ++i) {
-            if(lhs.charAt(i) == rhs.charAt(i)) {
-                sum.append('0');
-            } else {
-                sum.append('1');
-            }
+        // searching for location 0 finds the entry for the syndrome, or stops at the place it would be inserted at,
+        // which is where the entry for the syndrome is if it has some other location
+        int index = Arrays.binarySearch(list, (long) syndrome << LOCATION_BITS);
+        if(index < 0) {
+            index = -index - 1;
+        }
+        if(index < list.length && list[index] >>> LOCATION_BITS == syndrome) {
+            return (int) list[index] & ((1 << LOCATION_BITS) - 1);
         }
 
-        return sum.toString();
+        return Integer.MAX_VALUE;
     }
 
     /**
-     * convert binary string to a decimal integer
-     * @param binary, string that will be converted to integer
-     * @return decimal representation of the binary string
+     * build the sorted list of the syndromes of a single error at each location that a codeword can have
+     * The syndrome x^i mod generator is found by shifting, like the field does, without building the field itself
+     * @return the syndrome list, each entry is the syndrome shifted up past its location
+     * @throws IllegalArgumentException if two locations give the same syndrome, so the generator is not primitive
      */
-    private static int binaryToDecimal(String binary) {
-        int decimalValue = 0;
-        for(int i = 0; i < binary.length(); ++i) {
-            if(binary.charAt(i) == '1') {
-                decimalValue += (int) Math.pow(2, binary.length() - i - 1);
+    private long[] createSyndromeList() {
+        int poly = Integer.parseInt(generator, 2);
+        long[] list = new long[getLength()];
+        int syndrome = 1;
+        for(int i = 0; i < list.length; ++i) {
+            list[i] = (long) syndrome << LOCATION_BITS | i;
+            syndrome <<= 1;
+            if((syndrome & (1 << parityBits)) != 0) {
+                syndrome ^= poly;
+            }
+        }
+
+        Arrays.sort(list);
+        for(int i = 1; i < list.length; ++i) {
+            if(list[i] >>> LOCATION_BITS == list[i - 1] >>> LOCATION_BITS) {
+                throw new IllegalArgumentException("generator " + generator + " is not a primitive polynomial");
             }
         }
 
-        return decimalValue;
+        return list;
     }
 }
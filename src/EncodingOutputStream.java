@@ -0,0 +1,89 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Output stream that encodes the packed messages written to it (such as the output of an EncryptingOutputStream)
+ * Each packed message is collected until it is complete, encoded, and written out as a packed encoded message, so
+ * only one message is held in memory at a time, and a header for a message that is bigger than the limit is rejected
+ * before any room is made for it
+ */
+public class EncodingOutputStream extends FilterOutputStream {
+    private final Encoder encoder;
+    private final int maxFrameBytes; // most bytes a packed message that is written can have
+    private byte[] frame; // packed message being collected
+    private int length; // number of bytes of the message collected so far
+
+    /**
+     * constructor for an encoding stream with the default limit on the size of a packed message
+     * @param out, stream that the packed encoded messages are written to
+     * @param encoder, encoder to use
+     */
+    public EncodingOutputStream(OutputStream out, Encoder encoder) {
+        this(out, encoder, PackedWords.DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    /**
+     * constructor for an encoding stream
+     * @param out, stream that the packed encoded messages are written to
+     * @param encoder, encoder to use
+     * @param maxFrameBytes, most bytes a packed message that is written can have, header included
+     */
+    public EncodingOutputStream(OutputStream out, Encoder encoder, int maxFrameBytes) {
+        super(out);
+        this.encoder = encoder;
+        this.maxFrameBytes = maxFrameBytes;
+        frame = new byte[PackedWords.HEADER_BYTES];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        frame[length++] = (byte) b;
+        frameGrown();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while(len > 0) {
+            int taken = Math.min(len, frame.length - length);
+            System.arraycopy(b, off, frame, length, taken);
+            length += taken;
+            off += taken;
+            len -= taken;
+            frameGrown();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the partial message is dropped, so that closing again does not report it again
+        boolean truncated = length > 0;
+        length = 0;
+        super.close();
+        if(truncated) {
+            throw new IOException("stream was closed in the middle of a packed message");
+        }
+    }
+
+    /**
+     * deal with bytes that were just added to the frame, which grows it to the size of the whole message once the
+     * header is in, and encodes and writes out the message once it is complete
+     * @throws IOException if the header is not a valid one or is too big, or the message cannot be written
+     */
+    private void frameGrown() throws IOException {
+        if(length == PackedWords.HEADER_BYTES && frame.length == PackedWords.HEADER_BYTES) {
+            if(!PackedWords.isHeader(frame)) {
+                throw new IOException("stream does not hold a packed message");
+            }
+            PackedWords.checkFrameSize(frame, maxFrameBytes);
+            frame = Arrays.copyOf(frame, PackedWords.getSize(frame));
+        }
+
+        if(length == frame.length) {
+            out.write(encoder.encode(frame));
+            frame = new byte[PackedWords.HEADER_BYTES];
+            length = 0;
+        }
+    }
+}
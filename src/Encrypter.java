@@ -1,135 +1,691 @@
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
 /**
  * Class that is responsible for encrypting and decrypting information messages
- * The values for N, E, and D are toy values that I chose because they pose no risk of accidental overflow
- * To change these values, the following rules must be acknowledged
+ * By default this uses toy values for N, E, and D that I chose because they pose no risk of accidental overflow, but
+ * an Encrypter can also be created with a generated key of a real size (such as 2048, 3072 or 4096 bits).
+ * To choose other values, the following rules must be acknowledged
  * 1. N must be the product of two distinct prime numbers, let's say P and Q
  * 2. E must be such that gcd(E, (P-1)*(Q-1))=1 and 1<E<(P-1)*(Q-1) (easiest to just a pick prime)
  * 3. D must be such that E*D mod (P-1)*(Q-1)=1, can find using extended Euclidean algorithm with E and (P-1)*(Q-1)
+ * Encrypted values are split into limbs of at most 32 bits (most significant first), so that the encoder can handle
+ * them no matter how large N is. With the toy key every encrypted value is a single limb
+ * Characters are turned into symbols by a SymbolAlphabet, which is either a set of characters (by default letters,
+ * numbers, the space and {'.', ',', '?', '!'}) or the raw UTF-8 bytes of the message.
+ * In block mode, as many symbols as fit under N are packed into one number (as digits in base alphabet size + 1, where
+ * digit 0 is padding at the end of the last block) before it is encrypted, so one RSA operation covers many symbols
+ * Encrypters are immutable, so one can be shared between threads
  */
 public class Encrypter {
-    private static final int N = 478783; // N = P*Q = 683*701
-    private static final int E = 13963 ; // it must be that gcd(E, 682*700) = 1 and E < 682*700
-    private static final int D = 70227; // E*D % 682*700 = 1
-    private static final char[] CHAR_MAP = createCharMap();
+    // N = P*Q = 683*701, it must be that gcd(E, 682*700) = 1 and E < 682*700, which gives D = 70227
+    private static final RsaKey TOY_KEY = new RsaKey(BigInteger.valueOf(683), BigInteger.valueOf(701),
+            BigInteger.valueOf(13963));
+    private static final int MAX_LIMB_WIDTH = 32;
+    private static final String HYBRID_CIPHER = "AES/GCM/NoPadding";
+    private static final int HYBRID_WORD_WIDTH = 32;
+    private static final int SESSION_KEY_BYTES = 32; // AES-256
+    private static final int GCM_NONCE_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    private final RsaKey key;
+    private final int limbWidth; // number of bits in each limb of an encrypted value
+    private final int limbCount; // number of limbs in each encrypted value
+    private final SymbolAlphabet alphabet; // maps characters to the symbols that are encrypted
+    private final int radix; // base that symbols are packed into an encrypted value with
+    private final int digitOffset; // added to a symbol to get a digit, 1 in block mode so that 0 is padding
+    private final int symbolsPerBlock; // number of symbols packed into each encrypted value
+    private final int chunkDigits; // number of digits that always fit in a long
+    private final BigInteger chunkPower; // radix^chunkDigits, used to pack large blocks a long at a time
+    private final BigInteger blockLimit; // radix^symbolsPerBlock, every packed block is less than this
+    private final SecureRandom random; // source of session keys and nonces for the hybrid scheme
+
+    // when N fits in 31 bits, products of two values mod N fit in a long, so these are used instead of BigIntegers
+    private final boolean smallKey;
+    private final long n;
+    private final long e;
+    private final long p;
+    private final long q;
+    private final long dP;
+    private final long dQ;
+    private final long qInv;
+
+    /**
+     * constructor for an encrypter that uses the toy key
+     */
+    public Encrypter() {
+        this(TOY_KEY);
+    }
+
+    /**
+     * constructor for an encrypter that uses a newly generated key
+     * @param keyBits, number of bits in the modulus, such as 2048, 3072 or 4096
+     */
+    public Encrypter(int keyBits) {
+        this(RsaKey.generate(keyBits, new SecureRandom()));
+    }
+
+    /**
+     * constructor for an encrypter that uses the given key, with one character per encrypted value
+     * @param key, RSA key used for encryption and decryption
+     */
+    public Encrypter(RsaKey key) {
+        this(key, false);
+    }
+
+    /**
+     * constructor for an encrypter that uses the given key and the default alphabet
+     * @param key, RSA key used for encryption and decryption
+     * @param blockMode, true to pack as many characters as fit under N into each encrypted value
+     */
+    public Encrypter(RsaKey key, boolean blockMode) {
+        this(key, SymbolAlphabet.DEFAULT, blockMode);
+    }
+
+    /**
+     * constructor for an encrypter that uses the given key and alphabet
+     * @param key, RSA key used for encryption and decryption
+     * @param alphabet, alphabet that messages are written in, SymbolAlphabet.BYTES for the raw byte mode
+     * @param blockMode, true to pack as many symbols as fit under N into each encrypted value
+     */
+    public Encrypter(RsaKey key, SymbolAlphabet alphabet, boolean blockMode) {
+        this.key = key;
+        this.alphabet = alphabet;
+        int bits = key.getModulus().bitLength();
+        limbWidth = Math.min(bits, MAX_LIMB_WIDTH);
+        limbCount = (bits + limbWidth - 1) / limbWidth;
+
+        // values are offset by 2 (0^n=0 and 1^n=1), so radix^symbolsPerBlock + 1 must still be less than N
+        radix = blockMode ? alphabet.size() + 1 : alphabet.size();
+        digitOffset = blockMode ? 1 : 0;
+        BigInteger limit = key.getModulus().subtract(BigInteger.TWO);
+        BigInteger bigRadix = BigInteger.valueOf(radix);
+        int blockSize = 0;
+        for(BigInteger power = bigRadix; power.compareTo(limit) <= 0; power = power.multiply(bigRadix)) {
+            ++blockSize;
+        }
+        if(blockSize == 0) {
+            throw new IllegalArgumentException("N is too small to hold a single symbol");
+        }
+        symbolsPerBlock = blockMode ? blockSize : 1;
+        int digits = 0;
+        for(long power = radix; power <= Long.MAX_VALUE / radix; power *= radix) {
+            ++digits;
+        }
+        chunkDigits = digits;
+        chunkPower = bigRadix.pow(chunkDigits);
+        blockLimit = bigRadix.pow(symbolsPerBlock);
+        random = new SecureRandom();
+
+        smallKey = bits <= 31;
+        n = key.getModulus().longValue();
+        e = key.getPublicExponent().longValue();
+        p = key.getPrimeP().longValue();
+        q = key.getPrimeQ().longValue();
+        dP = key.getExponentP().longValue();
+        dQ = key.getExponentQ().longValue();
+        qInv = key.getCoefficient().longValue();
+    }
 
     /**
-     * create the character map that transforms characters to integersand vice versa
-     * map contains all uppercase and lowercase letters, numbers, the space, and the set {'.', ',', '?', '!'}
-     * @return the character map represented as an array (the indices are the associated integers)
+     * get the key that this encrypter uses
+     * @return the RSA key
      */
-    private static char[] createCharMap() {
-        char[] chars = new char[67];
+    public RsaKey getKey() {
+        return key;
+    }
+
+    /**
+     * encrypt arbitrary data with a hybrid scheme. A random session key is made for the message and only that key is
+     * encrypted with RSA, while the data itself is encrypted and authenticated with AES-GCM under the session key
+     * The result can be handed straight to the encoder. It is packed as 32 bit words (see PackedWords) holding the
+     * number of RSA limbs, the limbs of the wrapped session key, the number of AES-GCM bytes, and then those bytes
+     * (the nonce followed by the ciphertext and tag) four to a word
+     * @param data, data to be encrypted
+     * @return the packed encrypted message
+     */
+    public byte[] encryptHybrid(byte[] data) {
+        long start = PipelineMetrics.start();
+        byte[] sessionKey = new byte[SESSION_KEY_BYTES];
+        byte[] nonce = new byte[GCM_NONCE_BYTES];
+        random.nextBytes(sessionKey);
+        random.nextBytes(nonce);
+
+        byte[] sealed;
+        try {
+            Cipher cipher = Cipher.getInstance(HYBRID_CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(sessionKey, "AES"),
+                    new GCMParameterSpec(GCM_TAG_BITS, nonce));
+            sealed = new byte[GCM_NONCE_BYTES + cipher.getOutputSize(data.length)];
+            System.arraycopy(nonce, 0, sealed, 0, GCM_NONCE_BYTES);
+            cipher.doFinal(data, 0, data.length, sealed, GCM_NONCE_BYTES);
+        } catch(GeneralSecurityException ex) {
+            throw new IllegalStateException("could not encrypt with " + HYBRID_CIPHER, ex);
+        }
 
-        // add all lowercase letters in spots 0-25 and all uppercase letters in spots 26-51
+        // lay out the wrapped key followed by the sealed bytes
+        long[] wrappedKey = wrapSessionKey(sessionKey);
+        int sealedWords = (sealed.length + 3) / 4;
+        byte[] packed = PackedWords.allocate(0, HYBRID_WORD_WIDTH, 2 + wrappedKey.length + sealedWords);
         int index = 0;
-        for(char ch = 'a'; ch <+ 'z'; ++ch) {
-            chars[index] = ch;
-            chars[index + 26] = Character.toUpperCase(ch);
-            ++index;
+        PackedWords.putWord(packed, index++, wrappedKey.length);
+        for(long limb : wrappedKey) {
+            PackedWords.putWord(packed, index++, limb);
+        }
+        PackedWords.putWord(packed, index++, sealed.length);
+        for(int i = 0; i < sealed.length; i += 4) {
+            long word = 0;
+            for(int j = i; j < i + 4; ++j) {
+                word = (word << 8) | (j < sealed.length ? sealed[j] & 0xFF : 0);
+            }
+            PackedWords.putWord(packed, index++, word);
         }
 
-        // add all number characters in spots 52-61
-        index = 52;
-        for(char i = '0'; i <= '9'; ++i) {
-            chars[index] = i;
-            ++index;
+        PipelineMetrics.record(PipelineMetrics.Stage.ENCRYPT, start, data.length);
+        return packed;
+    }
+
+    /**
+     * decrypt data that was encrypted with the hybrid scheme
+     * @param packed, packed encrypted message from encryptHybrid (see PackedWords)
+     * @return the decrypted data
+     * @throws IllegalArgumentException if the message is not laid out like one from encryptHybrid or fails
+     * authentication
+     */
+    public byte[] decryptHybrid(byte[] packed) {
+        long start = PipelineMetrics.start();
+        if(PackedWords.getWidth(packed) != HYBRID_WORD_WIDTH || PackedWords.getCount(packed) < 2) {
+            throw new IllegalArgumentException("message was not encrypted with the hybrid scheme");
+        }
+
+        // both lengths come from the message, so they are checked against what it holds before anything is made
+        int count = PackedWords.getCount(packed);
+        int index = 0;
+        long wrappedCount = PackedWords.getWord(packed, index++);
+        if(wrappedCount < 1 || wrappedCount + 2 > count) {
+            throw new IllegalArgumentException("wrapped key of " + wrappedCount + " limbs does not fit in a message of "
+                    + count + " words");
+        }
+        long[] wrappedKey = new long[(int) wrappedCount];
+        for(int i = 0; i < wrappedKey.length; ++i) {
+            wrappedKey[i] = PackedWords.getWord(packed, index++);
+        }
+        long sealedLength = PackedWords.getWord(packed, index++);
+        if(sealedLength < GCM_NONCE_BYTES + GCM_TAG_BITS / 8) {
+            throw new IllegalArgumentException("sealed data of " + sealedLength + " bytes is too short to hold a nonce "
+                    + "and a tag");
+        } else if((sealedLength + 3) / 4 > count - index) {
+            throw new IllegalArgumentException("sealed data of " + sealedLength + " bytes does not fit in the "
+                    + (count - index) + " words left in the message");
+        }
+        byte[] sealed = new byte[(int) sealedLength];
+        for(int i = 0; i < sealed.length; i += 4) {
+            long word = PackedWords.getWord(packed, index++);
+            for(int j = i; j < i + 4 && j < sealed.length; ++j) {
+                sealed[j] = (byte) (word >>> (8 * (3 - (j - i))));
+            }
+        }
+
+        try {
+            Cipher cipher = Cipher.getInstance(HYBRID_CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(unwrapSessionKey(wrappedKey), "AES"),
+                    new GCMParameterSpec(GCM_TAG_BITS, sealed, 0, GCM_NONCE_BYTES));
+            byte[] data = cipher.doFinal(sealed, GCM_NONCE_BYTES, sealed.length - GCM_NONCE_BYTES);
+            PipelineMetrics.record(PipelineMetrics.Stage.DECRYPT, start, data.length);
+            return data;
+        } catch(AEADBadTagException ex) {
+            throw new IllegalArgumentException("message failed authentication", ex);
+        } catch(GeneralSecurityException ex) {
+            throw new IllegalStateException("could not decrypt with " + HYBRID_CIPHER, ex);
+        }
+    }
+
+    /**
+     * encrypt a session key with RSA. The key is cut into pieces small enough to fit under N (one piece for a key
+     * of a real size), and each piece is offset by 2 and encrypted with E
+     * @param sessionKey, the session key
+     * @return the limbs of every encrypted piece, most significant first
+     */
+    private long[] wrapSessionKey(byte[] sessionKey) {
+        int pieceBytes = (key.getModulus().bitLength() - 2) / 8; // keeps 2^(8*pieceBytes)+1 below N
+        int pieces = (sessionKey.length + pieceBytes - 1) / pieceBytes;
+        long[] wrapped = new long[pieces * limbCount];
+        long[] limbs = new long[limbCount];
+        for(int i = 0; i < pieces; ++i) {
+            int from = i * pieceBytes;
+            BigInteger piece = new BigInteger(1, Arrays.copyOfRange(sessionKey, from,
+                    Math.min(from + pieceBytes, sessionKey.length)));
+            if(smallKey) {
+                limbs[0] = rsa(piece.longValue() + 2, e, n);
+            } else {
+                splitLimbs(key.encrypt(piece.add(BigInteger.TWO)), limbs);
+            }
+            System.arraycopy(limbs, 0, wrapped, i * limbCount, limbCount);
+        }
+
+        return wrapped;
+    }
+
+    /**
+     * decrypt a session key that was encrypted with wrapSessionKey
+     * @param wrapped, limbs of every encrypted piece of the key
+     * @return the session key
+     */
+    private byte[] unwrapSessionKey(long[] wrapped) {
+        int pieceBytes = (key.getModulus().bitLength() - 2) / 8;
+        if(wrapped.length != (SESSION_KEY_BYTES + pieceBytes - 1) / pieceBytes * limbCount) {
+            throw new IllegalArgumentException("session key was not wrapped with this key");
+        }
+
+        byte[] sessionKey = new byte[SESSION_KEY_BYTES];
+        long[] limbs = new long[limbCount];
+        for(int from = 0, i = 0; from < SESSION_KEY_BYTES; from += pieceBytes, i += limbCount) {
+            System.arraycopy(wrapped, i, limbs, 0, limbCount);
+            BigInteger piece = smallKey ? BigInteger.valueOf(decryptSmall(limbs[0]))
+                    : key.decrypt(joinLimbs(limbs));
+            piece = piece.subtract(BigInteger.TWO);
+
+            // write the piece right aligned into its slot, the last piece may be shorter than the rest
+            int length = Math.min(pieceBytes, SESSION_KEY_BYTES - from);
+            for(int j = 0; j < length; ++j) {
+                sessionKey[from + length - 1 - j] = (byte) piece.shiftRight(8 * j).intValue();
+            }
+        }
+
+        return sessionKey;
+    }
+
+    /**
+     * get the number of symbols that are packed into each encrypted value
+     * @return 1 normally, or as many as fit under N in block mode
+     */
+    public int getSymbolsPerBlock() {
+        return symbolsPerBlock;
+    }
+
+    /**
+     * get the alphabet that messages are written in
+     * @return the alphabet
+     */
+    public SymbolAlphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * get the number of limbs that each encrypted value is split into
+     * @return the number of limbs
+     */
+    public int getLimbCount() {
+        return limbCount;
+    }
+
+    /**
+     * get the number of bits in each limb of an encrypted value
+     * @return the limb width
+     */
+    public int getLimbWidth() {
+        return limbWidth;
+    }
+
+    /**
+     * get the number of encrypted values that a message of the given length becomes
+     * @param symbols, number of symbols in the message
+     * @return the number of blocks
+     */
+    public int getBlockCount(int symbols) {
+        return (symbols + symbolsPerBlock - 1) / symbolsPerBlock;
+    }
+
+    /**
+     * encrypt a range of blocks of a message, which lets callers split the work of a long message up
+     * @param symbols, symbols of the whole message (see SymbolAlphabet)
+     * @param fromBlock, index of the first block to encrypt
+     * @param toBlock, index after the last block to encrypt
+     * @param limbs, where the limbs of the encrypted blocks are written, limbCount per block starting at index 0
+     */
+    public void encryptBlocks(int[] symbols, int fromBlock, int toBlock, long[] limbs) {
+        long start = PipelineMetrics.start();
+        long[] blockLimbs = new long[limbCount];
+        for(int i = fromBlock; i < toBlock; ++i) {
+            encryptBlock(symbols, symbols.length, i * symbolsPerBlock, blockLimbs);
+            System.arraycopy(blockLimbs, 0, limbs, (i - fromBlock) * limbCount, limbCount);
         }
 
-        // add the punctuation and space characters in spots 62-66
-        chars[62] = ' ';
-        chars[63] = '.';
-        chars[64] = ',';
-        chars[65] = '?';
-        chars[66] = '!';
+        int symbolCount = Math.min(toBlock * symbolsPerBlock, symbols.length) - fromBlock * symbolsPerBlock;
+        PipelineMetrics.record(PipelineMetrics.Stage.ENCRYPT, start, Math.max(symbolCount, 0));
+    }
 
-        return chars;
+    /**
+     * decrypt a range of blocks of a message, which lets callers split the work of a long message up
+     * Every block but the last one of a message is full, so block i always starts at symbol i*symbolsPerBlock
+     * @param limbs, limbs of the encrypted blocks, limbCount per block starting at index 0
+     * @param fromBlock, index of the first block to decrypt
+     * @param toBlock, index after the last block to decrypt
+     * @param symbols, symbols of the whole message, where the decrypted symbols are written
+     * @return the index after the last symbol that was written
+     * @throws IllegalArgumentException if a block does not decrypt to symbols of the alphabet
+     */
+    public int decryptBlocks(long[] limbs, int fromBlock, int toBlock, int[] symbols) {
+        long start = PipelineMetrics.start();
+        long[] blockLimbs = new long[limbCount];
+        int[] digits = new int[symbolsPerBlock];
+        int count = fromBlock * symbolsPerBlock;
+        for(int i = fromBlock; i < toBlock; ++i) {
+            System.arraycopy(limbs, (i - fromBlock) * limbCount, blockLimbs, 0, limbCount);
+            count = decryptBlock(blockLimbs, digits, symbols, count);
+        }
+
+        PipelineMetrics.record(PipelineMetrics.Stage.DECRYPT, start, count - fromBlock * symbolsPerBlock);
+        return count;
     }
 
     /**
      * encrypt the given string of information using the RSA scheme
      * @param message, string of information to be encrypted
-     * @return the encrypted string of information (each character will be represented as an integer)
+     * @return the encrypted string of information (each block of symbols will be represented as integer limbs)
+     * @throws IllegalArgumentException if the message has a character that is not in the alphabet
      */
     public String encrypt(String message) {
+        long start = PipelineMetrics.start();
+        int[] symbols = alphabet.toSymbols(message);
         StringBuilder encryptedMessage = new StringBuilder();
+        long[] limbs = new long[limbCount];
 
-        // encrypt every character in the message; each will be represented by a character
-        for(int i = 0; i < message.length(); ++i) {
-            String currEncryptedChar = rsa(charToInt(message.charAt(i)), E) + " "; // E for encryption
-            encryptedMessage.append(currEncryptedChar);
+        // encrypt every block of symbols in the message; each will be represented by its limbs
+        for(int i = 0; i < symbols.length; i += symbolsPerBlock) {
+            encryptBlock(symbols, symbols.length, i, limbs);
+            for(long limb : limbs) {
+                encryptedMessage.append(limb).append(' ');
+            }
         }
 
+        PipelineMetrics.record(PipelineMetrics.Stage.ENCRYPT, start, symbols.length);
         return encryptedMessage.toString();
     }
 
+    /**
+     * encrypt the given string of information using the RSA scheme
+     * @param message, string of information to be encrypted
+     * @return the packed encrypted message, with the limbs of each block of symbols as words (see PackedWords)
+     * @throws IllegalArgumentException if the message has a character that is not in the alphabet
+     */
+    public byte[] encryptPacked(String message) {
+        return encryptSymbols(alphabet.toSymbols(message));
+    }
+
+    /**
+     * encrypt raw data using the RSA scheme, which needs the byte alphabet
+     * @param data, bytes to be encrypted
+     * @return the packed encrypted message, with the limbs of each block of bytes as words (see PackedWords)
+     */
+    public byte[] encryptBytes(byte[] data) {
+        if(!alphabet.isBytes()) {
+            throw new IllegalStateException("raw data can only be encrypted with the byte alphabet");
+        }
+
+        return encryptSymbols(SymbolAlphabet.toSymbols(data));
+    }
+
+    /**
+     * encrypt symbols into a packed message
+     * @param symbols, symbols to be encrypted
+     * @return the packed encrypted message
+     */
+    private byte[] encryptSymbols(int[] symbols) {
+        return encryptSymbols(symbols, symbols.length);
+    }
+
+    /**
+     * encrypt the first symbols of an array into a packed message
+     * @param symbols, symbols to be encrypted (see SymbolAlphabet)
+     * @param length, number of symbols at the start of the array to encrypt
+     * @return the packed encrypted message
+     */
+    public byte[] encryptSymbols(int[] symbols, int length) {
+        long start = PipelineMetrics.start();
+        int blocks = getBlockCount(length);
+        byte[] packed = PackedWords.allocate(0, limbWidth, blocks * limbCount);
+        long[] limbs = new long[limbCount];
+        for(int i = 0; i < blocks; ++i) {
+            encryptBlock(symbols, length, i * symbolsPerBlock, limbs);
+            for(int j = 0; j < limbCount; ++j) {
+                PackedWords.putWord(packed, i * limbCount + j, limbs[j]);
+            }
+        }
+
+        PipelineMetrics.record(PipelineMetrics.Stage.ENCRYPT, start, length);
+        return packed;
+    }
+
     /**
      * decrypt the previously encrypted string of information using the RSA scheme
      * @param message, previously encrypted string of information
      * @return the decrypted string of information
+     * @throws IllegalArgumentException if a block does not decrypt to symbols of the alphabet
      */
     public String decrypt(String message) {
+        long start = PipelineMetrics.start();
         String[] splitMessage = message.split(" ", 0);
-        StringBuilder decryptedMessage = new StringBuilder();
+        int blocks = splitMessage.length / limbCount;
+        int[] symbols = new int[blocks * symbolsPerBlock];
+        int[] digits = new int[symbolsPerBlock];
+        long[] limbs = new long[limbCount];
 
-        // decrypt every number back into its corresponding character
-        for(String num : splitMessage) {
-            decryptedMessage.append(intToChar(rsa(Integer.parseInt(num), D))); // D for decryption
+        // decrypt every group of limbs back into its corresponding block of symbols
+        int count = 0;
+        for(int i = 0; i < blocks; ++i) {
+            for(int j = 0; j < limbCount; ++j) {
+                limbs[j] = Long.parseLong(splitMessage[i * limbCount + j]);
+            }
+            count = decryptBlock(limbs, digits, symbols, count);
         }
 
-        return decryptedMessage.toString();
+        PipelineMetrics.record(PipelineMetrics.Stage.DECRYPT, start, count);
+        return alphabet.fromSymbols(symbols, count);
     }
 
     /**
-     * RSA scheme, which is essentially raising a number to a large exponent, then modding by a large number.
-     * This can be accomplished efficiently using a square and multiply algorithm
-     * @param num, number to be encrypted or decrypted
-     * @param exp, power that num will be raised to, will be E for encryption and D for decryption
-     * @return the encrypted/decrypted number
+     * decrypt a previously encrypted packed message using the RSA scheme
+     * @param packed, packed encrypted message (see PackedWords)
+     * @return the decrypted string of information
+     * @throws IllegalArgumentException if a block does not decrypt to symbols of the alphabet
      */
-    private int rsa(int num, int exp) {
-        String binary = Integer.toBinaryString(exp);
-        long result = 1; // result is a long to keep overflow from happening mid computation
+    public String decrypt(byte[] packed) {
+        int[] symbols = new int[PackedWords.getCount(packed) / limbCount * symbolsPerBlock];
+        return alphabet.fromSymbols(symbols, decryptSymbols(packed, symbols));
+    }
+
+    /**
+     * decrypt a previously encrypted packed message back into raw data, which needs the byte alphabet
+     * @param packed, packed encrypted message (see PackedWords)
+     * @return the decrypted bytes
+     * @throws IllegalArgumentException if a block does not decrypt to bytes
+     */
+    public byte[] decryptBytes(byte[] packed) {
+        if(!alphabet.isBytes()) {
+            throw new IllegalStateException("raw data can only be decrypted with the byte alphabet");
+        }
 
-        // square result every iteration, multiply it by the original number for every 1 in the
-        // in the binary representation of the exponent
-        for(int i = 0; i < binary.length() - 1; ++i) {
-            if(binary.charAt(i) == '1') {
-                result = (result * num) % N;
+        int[] symbols = new int[PackedWords.getCount(packed) / limbCount * symbolsPerBlock];
+        return SymbolAlphabet.toBytes(symbols, decryptSymbols(packed, symbols));
+    }
+
+    /**
+     * decrypt a packed message into symbols
+     * @param packed, packed encrypted message
+     * @param symbols, where the symbols are written, must have room for symbolsPerBlock symbols per block
+     * @return the number of symbols written
+     * @throws IllegalArgumentException if a block does not decrypt to symbols of the alphabet
+     */
+    public int decryptSymbols(byte[] packed, int[] symbols) {
+        long start = PipelineMetrics.start();
+        int blocks = PackedWords.getCount(packed) / limbCount;
+        int[] digits = new int[symbolsPerBlock];
+        long[] limbs = new long[limbCount];
+
+        // decrypt every group of words back into its corresponding block of symbols
+        int count = 0;
+        for(int i = 0; i < blocks; ++i) {
+            for(int j = 0; j < limbCount; ++j) {
+                limbs[j] = PackedWords.getWord(packed, i * limbCount + j);
+            }
+            count = decryptBlock(limbs, digits, symbols, count);
+        }
+
+        PipelineMetrics.record(PipelineMetrics.Stage.DECRYPT, start, count);
+        return count;
+    }
+
+    /**
+     * pack a block of symbols into a single number, encrypt it with E and split the result into limbs
+     * The first symbol is the most significant digit, and a short final block is padded with zero digits
+     * @param symbols, symbols of the message that the block is taken from
+     * @param length, number of symbols in the message
+     * @param start, index of the first symbol in the block
+     * @param limbs, where the limbs of the encrypted block are written, most significant first
+     */
+    void encryptBlock(int[] symbols, int length, int start, long[] limbs) {
+        int end = Math.min(start + symbolsPerBlock, length);
+        if(smallKey) {
+            long value = 0;
+            for(int i = start; i < start + symbolsPerBlock; ++i) {
+                value = value * radix + (i < end ? symbols[i] + digitOffset : 0);
             }
-            result = (result * result) % N;
+            limbs[0] = rsa(value + 2, e, n); // E for encryption
+            return;
         }
 
-        // if the exponent is odd, multiply the result by the original number one final time
-        if(exp % 2 == 1) {
-            result = (result * num) % N;
+        // build the block a long at a time, then shift it into the big number as a group of digits
+        BigInteger value = BigInteger.ZERO;
+        for(int i = start; i < start + symbolsPerBlock; i += chunkDigits) {
+            int digits = Math.min(chunkDigits, start + symbolsPerBlock - i);
+            long chunk = 0;
+            for(int j = i; j < i + digits; ++j) {
+                chunk = chunk * radix + (j < end ? symbols[j] + digitOffset : 0);
+            }
+            BigInteger scale = digits == chunkDigits ? chunkPower : BigInteger.valueOf(radix).pow(digits);
+            value = value.multiply(scale).add(BigInteger.valueOf(chunk));
         }
 
-        return (int) result;
+        splitLimbs(key.encrypt(value.add(BigInteger.TWO)), limbs); // E for encryption
     }
 
     /**
-     * convert a character into its associated integer using the character map
-     * Add 2 because 0 and 1 do not work in the RSA scheme (0^n=0 and 1^n=1), so we want to start at 2
-     * @param ch, character that will be mapped to integer
-     * @return the associated integer
+     * put the limbs of an encrypted block back together, decrypt it with D and unpack its symbols
+     * The Chinese remainder theorem is used, so the work is done mod P and mod Q and then combined
+     * @param limbs, limbs of the encrypted block, most significant first
+     * @param digits, scratch space for the digits of the block
+     * @param symbols, where the symbols of the block are written (padding is left out)
+     * @param count, index in symbols to write the first symbol of the block to
+     * @return the index after the last symbol that was written
+     * @throws IllegalArgumentException if the block does not decrypt to symbols of the alphabet
      */
-    private static int charToInt(char ch) {
-        for(int i = 0; i < CHAR_MAP.length; ++i) {
-            if(ch == CHAR_MAP[i]) {
-                return i + 2;
+    int decryptBlock(long[] limbs, int[] digits, int[] symbols, int count) {
+        if(smallKey) {
+            long value = decryptSmall(limbs[0]) - 2; // D for decryption
+            if(value < 0 || value >= blockLimit.longValue()) {
+                throw new IllegalArgumentException("encrypted value " + limbs[0] + " is not a block of symbols");
+            }
+            for(int i = symbolsPerBlock - 1; i >= 0; --i) {
+                digits[i] = (int) (value % radix);
+                value /= radix;
+            }
+        } else {
+            BigInteger value = key.decrypt(joinLimbs(limbs)).subtract(BigInteger.TWO); // D for decryption
+            if(value.signum() < 0 || value.compareTo(blockLimit) >= 0) {
+                throw new IllegalArgumentException("encrypted value is not a block of symbols");
+            }
+
+            // take the digits off the bottom of the block a long at a time
+            for(int i = symbolsPerBlock; i > 0; i -= chunkDigits) {
+                int digitCount = Math.min(chunkDigits, i);
+                BigInteger[] quotientAndRemainder = value.divideAndRemainder(
+                        digitCount == chunkDigits ? chunkPower : BigInteger.valueOf(radix).pow(digitCount));
+                long chunk = quotientAndRemainder[1].longValue();
+                for(int j = i - 1; j >= i - digitCount; --j) {
+                    digits[j] = (int) (chunk % radix);
+                    chunk /= radix;
+                }
+                value = quotientAndRemainder[0];
             }
         }
 
-        return -1;
+        for(int digit : digits) {
+            if(digit >= digitOffset) {
+                symbols[count++] = digit - digitOffset;
+            }
+        }
+
+        return count;
     }
 
     /**
-     * convert an integer into its associated character using the character map
-     * Subtract two to counteract the added two seen in charToInt
-     * @param num, integer that will be mapped to character
-     * @return the associated character
+     * decrypt a number with D when N is small enough to use longs
+     * The Chinese remainder theorem is used, so the work is done mod P and mod Q and then combined
+     * @param encrypted, the encrypted number
+     * @return the decrypted number
      */
-    private static char intToChar(int num) {
-        return CHAR_MAP[num - 2];
+    private long decryptSmall(long encrypted) {
+        long mP = rsa(encrypted % p, dP, p);
+        long mQ = rsa(encrypted % q, dQ, q);
+        long h = (((mP - mQ) % p + p) % p) * qInv % p;
+        return mQ + h * q;
+    }
+
+    /**
+     * split an encrypted number into limbs
+     * @param encrypted, the encrypted number, less than N
+     * @param limbs, where the limbs are written, most significant first
+     */
+    private void splitLimbs(BigInteger encrypted, long[] limbs) {
+        long limbMask = (1L << limbWidth) - 1;
+        for(int i = 0; i < limbCount; ++i) {
+            limbs[limbCount - 1 - i] = encrypted.shiftRight(i * limbWidth).longValue() & limbMask;
+        }
+    }
+
+    /**
+     * put the limbs of an encrypted number back together
+     * @param limbs, limbs of the encrypted number, most significant first
+     * @return the encrypted number
+     */
+    private BigInteger joinLimbs(long[] limbs) {
+        BigInteger encrypted = BigInteger.ZERO;
+        for(long limb : limbs) {
+            encrypted = encrypted.shiftLeft(limbWidth).or(BigInteger.valueOf(limb));
+        }
+
+        return encrypted;
+    }
+
+    /**
+     * RSA scheme, which is essentially raising a number to a large exponent, then modding by a large number.
+     * This can be accomplished efficiently using a square and multiply algorithm
+     * @param num, number to be encrypted or decrypted
+     * @param exp, power that num will be raised to
+     * @param mod, number to mod by, must be less than 2^31 so that products do not overflow
+     * @return the encrypted/decrypted number
+     */
+    private static long rsa(long num, long exp, long mod) {
+        long result = 1 % mod;
+        long square = num % mod;
+
+        // read the exponent from its least significant bit, squaring every iteration and multiplying
+        // the result by the current square for every 1 in the binary representation of the exponent
+        while(exp > 0) {
+            if((exp & 1) == 1) {
+                result = (result * square) % mod;
+            }
+            square = (square * square) % mod;
+            exp >>>= 1;
+        }
+
+        return result;
     }
 }
@@ -0,0 +1,70 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that encrypts the raw bytes written to it, which needs an encrypter with the byte alphabet
+ * Bytes are collected in a buffer of bounded size, and every time it fills (or the stream is flushed) its contents are
+ * encrypted and written as one packed message (see PackedWords). The result is a sequence of packed messages, which
+ * an EncodingOutputStream or a DecryptingInputStream can take one at a time
+ */
+public class EncryptingOutputStream extends FilterOutputStream {
+    private static final int FRAME_SYMBOLS = 1 << 16; // about how many bytes go into each packed message
+
+    private final Encrypter encrypter;
+    private final int[] symbols; // bytes waiting to be encrypted
+    private int count; // number of bytes in the buffer
+
+    /**
+     * constructor for an encrypting stream
+     * @param out, stream that the packed encrypted messages are written to
+     * @param encrypter, encrypter to use, which must have the byte alphabet
+     */
+    public EncryptingOutputStream(OutputStream out, Encrypter encrypter) {
+        super(out);
+        if(!encrypter.getAlphabet().isBytes()) {
+            throw new IllegalArgumentException("streams can only be encrypted with the byte alphabet");
+        }
+
+        this.encrypter = encrypter;
+
+        // a whole number of blocks fits in the buffer, so only a flush can leave a block short
+        int blocks = Math.max(FRAME_SYMBOLS / encrypter.getSymbolsPerBlock(), 1);
+        symbols = new int[blocks * encrypter.getSymbolsPerBlock()];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        symbols[count++] = b & 0xFF;
+        if(count == symbols.length) {
+            writeFrame();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for(int i = off; i < off + len; ++i) {
+            symbols[count++] = b[i] & 0xFF;
+            if(count == symbols.length) {
+                writeFrame();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeFrame();
+        out.flush();
+    }
+
+    /**
+     * encrypt the buffered bytes and write them out as one packed message
+     * @throws IOException if the underlying stream cannot be written to
+     */
+    private void writeFrame() throws IOException {
+        if(count > 0) {
+            out.write(encrypter.encryptSymbols(symbols, count));
+            count = 0;
+        }
+    }
+}
@@ -1,52 +1,111 @@
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Class that represents a Galois Field of size 2^n (also called a finite field)
+ * Elements are stored as packed integers, where bit i is the coefficient of x^i, and every element other than zero
+ * is also identified by its exponent (the power of the primitive element alpha=x that produces it)
+ * Fields are immutable once they are built, so one can be shared between threads, and forGenerator hands out a single
+ * shared field for each generator so that the tables are only ever built once. The tables hold every element, so
+ * generators are limited to degree 20
+ * The bulk operations on byte arrays use the Vector API when the JVM is started with --add-modules
+ * jdk.incubator.vector, and plain loops otherwise
  */
 public class GaloisField {
-    private String[] field; // array of binary strings ordered such that they're a field
+    // the module is only in the boot layer when it was asked for, and GaloisVectors is never loaded without it
+    private static final boolean VECTORS = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && GaloisVectors.isSupported();
+    private static final int MAX_DEGREE = 20; // the tables take 12 MB at degree 20, twice that for every degree above
+
+    private static final ConcurrentHashMap<String, GaloisField> FIELDS = new ConcurrentHashMap<>();
+
+    private final int degree; // degree n of the generator, the field has 2^n elements
+    private final int order; // number of nonzero elements in the field, 2^n-1
+    private final int[] antilog; // antilog[exp] is alpha^exp, doubled in length so that sums of exponents need no mod
+    private final int[] log; // log[element] is the exponent of that element, log[0] is -1 since zero has no exponent
+
+    /**
+     * get the shared field for a generator, building it the first time it is asked for
+     * @param generator, primitive polynomial of degree n will generate a Galois Field of size 2^n
+     * @return the field
+     */
+    public static GaloisField forGenerator(String generator) {
+        GaloisField field = FIELDS.get(generator);
+        return field != null ? field : FIELDS.computeIfAbsent(generator, GaloisField::new);
+    }
 
     /**
-     * constructor for a Galois Field
+     * constructor for a Galois Field, forGenerator should be used instead unless a private copy is wanted
      * @param generator, primitive polynomial of degree n will generate a Galois Field of size 2^n
      */
     public GaloisField(String generator) {
-        field = new String[(int) Math.pow(2, generator.length() - 1)];
-
-        field[0] = "0".repeat(generator.length() - 1);
-        field[1] = "0".repeat(generator.length() - 2) + "1";
-
-        // build each element by shifting one to the left, and flipping the two least significant bits
-        // every time a one is shifted from being the most significant bit
-        String prevElement = field[1];
-        for (int i = 2; i < (int) Math.pow(2, generator.length() - 1); ++i) {
-            StringBuilder element = new StringBuilder();
-            for (int j = 1; j < prevElement.length(); ++j) {
-                if (j < prevElement.length() - 1 || prevElement.charAt(0) == '0') {
-                    element.append(prevElement.charAt(j));
-                } else {
-                    if (prevElement.charAt(prevElement.length() - 1) == '1') {
-                        element.append('0');
-                    } else {
-                        element.append('1');
-                    }
-                }
+        checkGenerator(generator, MAX_DEGREE);
+        degree = generator.length() - 1;
+        order = (1 << degree) - 1;
+        antilog = new int[2 * order];
+        log = new int[order + 1];
+
+        // build each element by shifting the previous one to the left (multiplying by x), and reducing by the
+        // generator every time a one is shifted out of the most significant bit
+        int poly = Integer.parseInt(generator, 2);
+        int element = 1;
+        log[0] = -1;
+        for (int i = 0; i < order; ++i) {
+            // alpha only goes through every nonzero element before coming back to one if the generator is primitive
+            if (i > 0 && element == 1) {
+                throw new IllegalArgumentException("generator " + generator + " is not a primitive polynomial");
             }
 
-            if (prevElement.charAt(0) == '1') {
-                element.append('1');
-            } else {
-                element.append('0');
+            antilog[i] = element;
+            antilog[i + order] = element;
+            log[element] = i;
+
+            element <<= 1;
+            if ((element & (1 << degree)) != 0) {
+                element ^= poly;
             }
+        }
+    }
 
-            field[i] = element.toString();
-            prevElement = field[i];
+    /**
+     * check that a generator is written the right way, whether it is primitive is only found when the field is built
+     * @param generator, the generator to check
+     * @param maxDegree, the largest degree allowed
+     * @throws IllegalArgumentException if it is not a binary string with a leading one, or its degree is too big
+     */
+    static void checkGenerator(String generator, int maxDegree) {
+        if (generator.length() < 2 || generator.length() > maxDegree + 1 || generator.charAt(0) != '1'
+                || !generator.chars().allMatch(ch -> ch == '0' || ch == '1')) {
+            throw new IllegalArgumentException("generator must be a binary string of degree 1 to " + maxDegree
+                    + " with a leading one, not \"" + generator + "\"");
         }
     }
 
+    /**
+     * get the degree of the field's generator
+     * @return n, where the field has size 2^n
+     */
+    public int getDegree() {
+        return degree;
+    }
+
+    /**
+     * get the number of nonzero elements in the field, which is also the period of the primitive element
+     * @return 2^n-1
+     */
+    public int getOrder() {
+        return order;
+    }
+
     /**
      * get the field property
-     * @return the string array representing the field
+     * @return the string array representing the field, zero first and then alpha^0, alpha^1, ...
      */
     public String[] getField() {
+        String[] field = new String[order + 1];
+        for (int i = 0; i < field.length; ++i) {
+            field[i] = getElement(i - 1);
+        }
+
         return field;
     }
 
@@ -56,7 +115,17 @@ public class GaloisField {
      * @return the field element
      */
     public String getElement(int exp) {
-        return field[exp + 1];
+        String binary = Integer.toBinaryString(getElementBits(exp));
+        return "0".repeat(degree - binary.length()) + binary;
+    }
+
+    /**
+     * get a specific element from the field as a packed integer
+     * @param exp, exponent representing the desired field element, -1 for zero
+     * @return the field element, bit i is the coefficient of x^i
+     */
+    public int getElementBits(int exp) {
+        return exp == -1 ? 0 : antilog[exp];
     }
 
     /**
@@ -65,13 +134,24 @@ public class GaloisField {
      * @return the exponent that represents the given field element
      */
     public int getExponent(String element) {
-        for (int i = 0; i < field.length; ++i) {
-            if (field[i].equals(element)) {
-                return i - 1;
-            }
+        if (element.length() != degree) {
+            return -1;
+        }
+
+        return getExponent(Integer.parseInt(element, 2));
+    }
+
+    /**
+     * get the exponent that represents the given packed field element
+     * @param element, field element with bit i as the coefficient of x^i
+     * @return the exponent that represents the given field element, -1 for zero or anything outside the field
+     */
+    public int getExponent(int element) {
+        if (element < 0 || element > order) {
+            return -1;
         }
 
-        return -1;
+        return log[element];
     }
 
     /**
@@ -88,20 +168,8 @@ public class GaloisField {
             return exp1;
         }
 
-        String element1 = getElement(exp1);
-        String element2 = getElement(exp2);
-        StringBuilder sum = new StringBuilder();
-
-        // 1+1=0, 1+0=1, 0+1=1, and 0+0=0
-        for (int i = 0; i < element1.length(); ++i) {
-            if (element1.charAt(i) == element2.charAt(i)) {
-                sum.append('0');
-            } else {
-                sum.append('1');
-            }
-        }
-
-        return getExponent(sum.toString());
+        // addition in characteristic 2 is the bitwise xor of the coefficients
+        return log[antilog[exp1] ^ antilog[exp2]];
     }
 
     /**
@@ -116,8 +184,39 @@ public class GaloisField {
             return -1;
         }
 
-        // These fields are cyclic, so modding by field.length-1 keeps the exponent in the right bounds
-        return (exp1 + exp2) % (field.length - 1);
+        // These fields are cyclic, so modding by the order keeps the exponent in the right bounds
+        return (exp1 + exp2) % order;
+    }
+
+    /**
+     * multiply two packed field elements together
+     * @param element1, the first field element
+     * @param element2, the second field element
+     * @return the product of the two field elements
+     */
+    public int multiplyElements(int element1, int element2) {
+        if (element1 == 0 || element2 == 0) {
+            return 0;
+        }
+
+        // the antilog table is doubled, so the sum of two exponents never needs to be reduced
+        return antilog[log[element1] + log[element2]];
+    }
+
+    /**
+     * divide one packed field element by another
+     * @param element1, the dividend
+     * @param element2, the divisor, must not be zero
+     * @return the quotient of the two field elements
+     */
+    public int divideElements(int element1, int element2) {
+        if (element2 == 0) {
+            throw new ArithmeticException("division by zero in GF(2^" + degree + ")");
+        } else if (element1 == 0) {
+            return 0;
+        }
+
+        return antilog[log[element1] - log[element2] + order];
     }
 
     /**
@@ -134,11 +233,192 @@ public class GaloisField {
             return 0;
         }
 
-        int product = exp;
-        for (int i = 0; i < pow - 1; ++i) {
-            product = multiply(product, exp);
+        // (alpha^exp)^pow = alpha^(exp*pow), and the exponents cycle with period equal to the order
+        return (int) (((long) exp * pow) % order);
+    }
+
+    /**
+     * add two arrays of field elements
+     * @param a, the first elements
+     * @param b, the second elements
+     * @param result, where the sums are written, may be the same array as a or b
+     * @param length, number of elements
+     */
+    public void addElements(byte[] a, byte[] b, byte[] result, int length) {
+        checkByteElements();
+
+        // a plain xor loop is vectorized by the JIT without any help
+        for (int i = 0; i < length; ++i) {
+            result[i] = (byte) (a[i] ^ b[i]);
+        }
+    }
+
+    /**
+     * add two arrays of field elements
+     * @param a, the first elements
+     * @param b, the second elements
+     * @param result, where the sums are written, may be the same array as a or b
+     * @param length, number of elements
+     */
+    public void addElements(int[] a, int[] b, int[] result, int length) {
+        for (int i = 0; i < length; ++i) {
+            result[i] = a[i] ^ b[i];
+        }
+    }
+
+    /**
+     * multiply an array of field elements by a scalar
+     * @param scalar, the field element to multiply by
+     * @param a, the elements
+     * @param result, where the products are written, may be the same array as a
+     * @param length, number of elements
+     */
+    public void scaleElements(int scalar, byte[] a, byte[] result, int length) {
+        checkByteElements();
+        byte[] low = nibbleTable(scalar, 0);
+        byte[] high = nibbleTable(scalar, 4);
+        int done = VECTORS ? GaloisVectors.scale(low, high, a, result, length) : 0;
+        for (int i = done; i < length; ++i) {
+            result[i] = (byte) (low[a[i] & 0x0F] ^ high[(a[i] & 0xFF) >>> 4]);
         }
+    }
+
+    /**
+     * multiply an array of field elements by a scalar
+     * @param scalar, the field element to multiply by
+     * @param a, the elements
+     * @param result, where the products are written, may be the same array as a
+     * @param length, number of elements
+     */
+    public void scaleElements(int scalar, int[] a, int[] result, int length) {
+        int scalarLog = log[scalar];
+        for (int i = 0; i < length; ++i) {
+            result[i] = scalar == 0 || a[i] == 0 ? 0 : antilog[log[a[i]] + scalarLog];
+        }
+    }
+
+    /**
+     * multiply an array of field elements by a scalar and add the products to an accumulator, acc[i] += scalar*a[i]
+     * @param scalar, the field element to multiply by
+     * @param a, the elements
+     * @param accumulator, the elements that the products are added to
+     * @param length, number of elements
+     */
+    public void multiplyAccumulate(int scalar, byte[] a, byte[] accumulator, int length) {
+        checkByteElements();
+        byte[] low = nibbleTable(scalar, 0);
+        byte[] high = nibbleTable(scalar, 4);
+        int done = VECTORS ? GaloisVectors.multiplyAccumulate(low, high, a, accumulator, length) : 0;
+        for (int i = done; i < length; ++i) {
+            accumulator[i] ^= (byte) (low[a[i] & 0x0F] ^ high[(a[i] & 0xFF) >>> 4]);
+        }
+    }
+
+    /**
+     * multiply an array of field elements by a scalar and add the products to an accumulator, acc[i] += scalar*a[i]
+     * @param scalar, the field element to multiply by
+     * @param a, the elements
+     * @param accumulator, the elements that the products are added to
+     * @param length, number of elements
+     */
+    public void multiplyAccumulate(int scalar, int[] a, int[] accumulator, int length) {
+        if (scalar == 0) {
+            return;
+        }
+
+        int scalarLog = log[scalar];
+        for (int i = 0; i < length; ++i) {
+            if (a[i] != 0) {
+                accumulator[i] ^= antilog[log[a[i]] + scalarLog];
+            }
+        }
+    }
 
-        return product;
+    /**
+     * evaluate a polynomial with coefficients in the field at a point, using Horner's method
+     * With vectors the coefficients are split into 16 interleaved polynomials in x^16 that are evaluated side by side,
+     * which breaks the chain of dependent multiplications that makes plain Horner's method slow
+     * @param poly, array holding the coefficients, highest degree first
+     * @param offset, index of the first (highest degree) coefficient
+     * @param length, number of coefficients
+     * @param x, the point to evaluate at
+     * @return the value of the polynomial at x
+     */
+    public int evaluate(byte[] poly, int offset, int length, int x) {
+        checkByteElements();
+
+        // the leading coefficients that do not fill a whole vector are done one at a time
+        int head = VECTORS ? length % GaloisVectors.LANES : length;
+        int value = 0;
+        for (int i = offset; i < offset + head; ++i) {
+            value = multiplyElements(value, x) ^ (poly[i] & 0xFF);
+        }
+        if (head == length) {
+            return value;
+        }
+
+        // p(x) = head(x)*x^rest + the sum of lane l times x^(15-l)
+        int rest = length - head;
+        int step = power(x, GaloisVectors.LANES);
+        byte[] lanes = GaloisVectors.evaluateLanes(nibbleTable(step, 0), nibbleTable(step, 4), poly, offset + head, rest);
+        value = multiplyElements(value, power(x, rest));
+        int lanePower = 1;
+        for (int l = GaloisVectors.LANES - 1; l >= 0; --l) {
+            value ^= multiplyElements(lanes[l] & 0xFF, lanePower);
+            lanePower = multiplyElements(lanePower, x);
+        }
+
+        return value;
+    }
+
+    /**
+     * evaluate a polynomial with coefficients in the field at a point, using Horner's method
+     * @param poly, array holding the coefficients, highest degree first
+     * @param offset, index of the first (highest degree) coefficient
+     * @param length, number of coefficients
+     * @param x, the point to evaluate at
+     * @return the value of the polynomial at x
+     */
+    public int evaluate(int[] poly, int offset, int length, int x) {
+        int value = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            value = multiplyElements(value, x) ^ poly[i];
+        }
+
+        return value;
+    }
+
+    /**
+     * raise a packed field element to the given power
+     * @param element, the field element
+     * @param pow, the power, at least 1
+     * @return the field element raised to the given power
+     */
+    private int power(int element, int pow) {
+        return getElementBits(exponentiate(log[element], pow));
+    }
+
+    /**
+     * build the table of products of a scalar with every value of one nibble of a byte
+     * @param scalar, the field element the table is for
+     * @param shift, 0 for the low nibble or 4 for the high nibble
+     * @return the 16 products, values that are not in a field smaller than 2^8 are left as zero
+     */
+    private byte[] nibbleTable(int scalar, int shift) {
+        byte[] table = new byte[16];
+        for (int i = 1; i < table.length && (i << shift) <= order; ++i) {
+            table[i] = (byte) multiplyElements(scalar, i << shift);
+        }
+
+        return table;
+    }
+
+    /**
+     * make sure that the elements of the field fit in a byte, which the bulk byte operations need
+     */
+    private void checkByteElements() {
+        if (degree > 8) {
+            throw new IllegalStateException("elements of GF(2^" + degree + ") do not fit in a byte");
+        }
     }
 }
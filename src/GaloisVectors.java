@@ -0,0 +1,101 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Class that runs GaloisField's bulk byte operations with the Vector API
+ * A product c*a is split by the nibbles of a, c*a = c*(a & 0xF) + c*(a & 0xF0), and each half is a lookup in a 16 entry
+ * table, so a whole vector of bytes is multiplied by c with two byte shuffles. Vectors are fixed at 128 bits, since a
+ * 16 entry table fills one exactly and a shuffle of that size is a single instruction on common hardware
+ * This class is only loaded when the jdk.incubator.vector module is present (see GaloisField)
+ */
+class GaloisVectors {
+    static final int LANES = 16;
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_128;
+
+    /**
+     * check whether the hardware has vectors of at least 128 bits, without them the Vector API falls back on plain
+     * Java, which is much slower than the scalar code
+     * @return true if the vector versions should be used
+     */
+    static boolean isSupported() {
+        return ByteVector.SPECIES_PREFERRED.vectorBitSize() >= SPECIES.vectorBitSize();
+    }
+
+    /**
+     * multiply bytes by the scalar that the tables were made for
+     * @param lowTable, the scalar times every value of the low nibble
+     * @param highTable, the scalar times every value of the high nibble
+     * @param a, the bytes to multiply
+     * @param result, where the products are written, may be the same array as a
+     * @param length, number of bytes
+     * @return the number of bytes done, the rest (fewer than LANES) are left for the caller
+     */
+    static int scale(byte[] lowTable, byte[] highTable, byte[] a, byte[] result, int length) {
+        ByteVector low = ByteVector.fromArray(SPECIES, lowTable, 0);
+        ByteVector high = ByteVector.fromArray(SPECIES, highTable, 0);
+        int bound = SPECIES.loopBound(length);
+        for(int i = 0; i < bound; i += LANES) {
+            multiply(ByteVector.fromArray(SPECIES, a, i), low, high).intoArray(result, i);
+        }
+
+        return bound;
+    }
+
+    /**
+     * multiply bytes by the scalar that the tables were made for, and add the products to an accumulator
+     * @param lowTable, the scalar times every value of the low nibble
+     * @param highTable, the scalar times every value of the high nibble
+     * @param a, the bytes to multiply
+     * @param accumulator, the bytes that the products are added to
+     * @param length, number of bytes
+     * @return the number of bytes done, the rest (fewer than LANES) are left for the caller
+     */
+    static int multiplyAccumulate(byte[] lowTable, byte[] highTable, byte[] a, byte[] accumulator, int length) {
+        ByteVector low = ByteVector.fromArray(SPECIES, lowTable, 0);
+        ByteVector high = ByteVector.fromArray(SPECIES, highTable, 0);
+        int bound = SPECIES.loopBound(length);
+        for(int i = 0; i < bound; i += LANES) {
+            ByteVector product = multiply(ByteVector.fromArray(SPECIES, a, i), low, high);
+            product.lanewise(VectorOperators.XOR, ByteVector.fromArray(SPECIES, accumulator, i))
+                    .intoArray(accumulator, i);
+        }
+
+        return bound;
+    }
+
+    /**
+     * run Horner's method on LANES interleaved polynomials at once, lane l takes every LANES-th coefficient starting
+     * from l, so each step multiplies by x^LANES (the scalar the tables were made for) and adds the next LANES
+     * coefficients
+     * @param lowTable, x^LANES times every value of the low nibble
+     * @param highTable, x^LANES times every value of the high nibble
+     * @param poly, array holding the coefficients, highest degree first
+     * @param offset, index of the first coefficient
+     * @param length, number of coefficients, a multiple of LANES
+     * @return the value of each interleaved polynomial, lane l needs multiplying by x^(LANES-1-l) before they are added
+     */
+    static byte[] evaluateLanes(byte[] lowTable, byte[] highTable, byte[] poly, int offset, int length) {
+        ByteVector low = ByteVector.fromArray(SPECIES, lowTable, 0);
+        ByteVector high = ByteVector.fromArray(SPECIES, highTable, 0);
+        ByteVector value = ByteVector.zero(SPECIES);
+        for(int i = offset; i < offset + length; i += LANES) {
+            value = multiply(value, low, high).lanewise(VectorOperators.XOR, ByteVector.fromArray(SPECIES, poly, i));
+        }
+
+        return value.toArray();
+    }
+
+    /**
+     * multiply every lane of a vector by a scalar with its nibble tables
+     * @param a, the vector
+     * @param low, the scalar times every value of the low nibble
+     * @param high, the scalar times every value of the high nibble
+     * @return the products
+     */
+    private static ByteVector multiply(ByteVector a, ByteVector low, ByteVector high) {
+        ByteVector lowNibbles = a.and((byte) 0x0F);
+        ByteVector highNibbles = a.lanewise(VectorOperators.LSHR, 4);
+        return lowNibbles.selectFrom(low).lanewise(VectorOperators.XOR, highNibbles.selectFrom(high));
+    }
+}
@@ -1,9 +1,33 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 public class Main {
+    private static final String USAGE = "Usage: java Main [--codebook]\n"
+            + "       java Main send|receive <input file> <output file>\n"
+            + "       java Main --serve [port] [adaptive]\n"
+            + "       java Main --simulate flips <bit error rate> [trials]\n"
+            + "       java Main --simulate bursts <good to bad> <bad to good> <bad state error rate> [trials]";
+    private static final int DEFAULT_PORT = 7878;
+    private static final int DEFAULT_TRIALS = 10000;
+    private static final int SIMULATED_MESSAGE_BYTES = 1024;
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--serve")) {
+            runServer(args);
+            return;
+        } else if (args.length > 0 && args[0].equals("--simulate")) {
+            runSimulation(args);
+            return;
+        } else if (args.length > 0 && !(args.length == 1 && args[0].equals("--codebook"))) {
+            runBatch(args);
+            return;
+        }
+
         Encrypter encrypter = new Encrypter();
-        Encoder encoder = new Encoder("10000011");
+        Encoder encoder = Encoder.forGenerator("10000011");
+        Codebook codebook = args.length == 1 ? new Codebook(encrypter, encoder) : null;
         Scanner scnr = new Scanner(System.in);
 
         introduction();
@@ -11,8 +35,28 @@ public class Main {
         do {
             String message = getUserMessage(scnr);
 
-            // encrypt the message
-            message = encrypter.encrypt(message);
+            // with the codebook every character is looked up, so the message goes straight to its codewords and back
+            if (codebook != null) {
+                try {
+                    message = codebook.encodeText(message);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("\nThat message cannot be sent, the " + e.getMessage());
+                    continue;
+                }
+                System.out.println("\nThis is the encrypted and encoded message...\n" + message);
+
+                message = codebook.decodeText(message);
+                System.out.println("\nThis is the decrypted and decoded message...\n" + message);
+                continue;
+            }
+
+            // encrypt the message, which fails if it has a character that cannot be sent
+            try {
+                message = encrypter.encrypt(message);
+            } catch (IllegalArgumentException e) {
+                System.out.println("\nThat message cannot be sent, the " + e.getMessage());
+                continue;
+            }
             System.out.println("\nThis is the encrypted message...\n" + message);
 
             // encode the message
@@ -29,6 +73,92 @@ public class Main {
         } while (getShouldContinue(scnr));
     }
 
+    private static void runBatch(String[] args) {
+        if (args.length != 3 || !(args[0].equals("send") || args[0].equals("receive"))) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        // files are sent as raw bytes with the toy key, packing as many bytes as fit into each block
+        BatchProcessor processor = new BatchProcessor(
+                new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true), Encoder.forGenerator("10000011"));
+        try {
+            long written;
+            if (args[0].equals("send")) {
+                written = processor.encryptAndEncode(Path.of(args[1]), Path.of(args[2]));
+            } else {
+                written = processor.decodeAndDecrypt(Path.of(args[1]), Path.of(args[2]));
+            }
+            System.out.println("Wrote " + written + " bytes to " + args[2]);
+        } catch (IOException e) {
+            System.err.println("Could not process " + args[1] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void runServer(String[] args) {
+        int port = DEFAULT_PORT;
+        boolean adaptive = args.length > 1 && args[args.length - 1].equals("adaptive");
+        int portArgs = args.length - (adaptive ? 1 : 0);
+        try {
+            if (portArgs > 2) {
+                throw new NumberFormatException();
+            } else if (portArgs == 2) {
+                port = Integer.parseInt(args[1]);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        // requests are raw bytes with the toy key, the same as batch mode, and the server runs until the JVM is stopped
+        try {
+            Encrypter encrypter = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true);
+            MessageServer server = adaptive
+                    ? new MessageServer(encrypter, AdaptiveEncoder.createDefault(encrypter.getLimbWidth()), port)
+                    : new MessageServer(encrypter, Encoder.forGenerator("10000011"), port);
+            server.start();
+            PipelineMetrics.registerMBean();
+            System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                    + server.getPort());
+        } catch (IOException e) {
+            System.err.println("Could not listen on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void runSimulation(String[] args) {
+        NoisyChannel channel = null;
+        int trials = DEFAULT_TRIALS;
+        try {
+            if (args.length >= 3 && args.length <= 4 && args[1].equals("flips")) {
+                channel = NoisyChannel.independent(Double.parseDouble(args[2]));
+                trials = args.length == 4 ? Integer.parseInt(args[3]) : trials;
+            } else if (args.length >= 5 && args.length <= 6 && args[1].equals("bursts")) {
+                channel = NoisyChannel.gilbertElliott(Double.parseDouble(args[2]), Double.parseDouble(args[3]), 0,
+                        Double.parseDouble(args[4]));
+                trials = args.length == 6 ? Integer.parseInt(args[5]) : trials;
+            }
+            if (trials < 1) {
+                throw new IllegalArgumentException("there must be at least one trial, not " + trials);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            channel = null;
+        }
+        if (channel == null) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        // messages are raw bytes with the toy key and the usual generator, the same as batch mode
+        ChannelSimulator simulator = new ChannelSimulator(new Encrypter(new Encrypter().getKey(),
+                SymbolAlphabet.BYTES, true), Encoder.forGenerator("10000011"), channel, SIMULATED_MESSAGE_BYTES);
+        System.out.println("Sending " + trials + " messages of " + SIMULATED_MESSAGE_BYTES + " bytes over "
+                + channel + "...");
+        System.out.println(simulator.run(trials, 1));
+    }
+
     private static void introduction() {
         System.out.println("Welcome to the Secure Message \"Sender\"");
         System.out.println("You will enter a message and it will be encoded and encrypted");
@@ -0,0 +1,369 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class that serves the pipeline over a loopback socket, so that other processes can use it without the prompt
+ * Every request is a frame of an operation byte (SEND or RECEIVE), a 4 byte length and that many bytes of payload. SEND
+ * encrypts and encodes raw data into a packed message, and RECEIVE decodes and decrypts a packed message back into raw
+ * data. Every response is a frame of the same shape with a status byte (OK or ERROR) in place of the operation, holding
+ * the result or a UTF-8 error message. Requests can be pipelined, and responses always come back in request order
+ * Each connection has a reader and a writer thread, which are virtual threads when the JDK has them and platform
+ * threads otherwise, so before JDK 21 every connection costs two threads. The stages run on one worker per core, which
+ * take requests off a shared queue one at a time, and responses are only flushed once a connection has nothing else
+ * ready
+ * A connection can only have MAX_PENDING requests waiting for a response, after which its socket is not read until
+ * responses have been written, and the shared queue is bounded too, so a slow or flooding client is pushed back on
+ * through TCP flow control instead of filling the heap
+ * A server can also be given an AdaptiveEncoder, which then learns the noise of the link from the RECEIVE requests and
+ * picks the code for the SEND requests
+ */
+public class MessageServer implements Closeable {
+    public static final int SEND = 1;
+    public static final int RECEIVE = 2;
+    public static final int OK = 0;
+    public static final int ERROR = 1;
+    public static final int MAX_PAYLOAD_BYTES = 1 << 24;
+
+    static final int MAX_PENDING = 64; // requests of one connection that can wait for a response
+    private static final int QUEUE_CAPACITY = 4096; // requests of every connection that can wait for a worker
+    private static final int ACCEPT_BACKLOG = 4096;
+
+    private final Encrypter encrypter;
+    private final Encoder encoder; // null when the code adapts
+    private final AdaptiveEncoder adaptiveEncoder; // null when the code is fixed
+    private final ServerSocket serverSocket;
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final ExecutorService connectionExecutor = newConnectionExecutor();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * constructor for a server, which listens on the loopback address straight away but only answers once started
+     * @param encrypter, encrypter for the data, which must have the byte alphabet
+     * @param encoder, encoder for the encrypted data
+     * @param port, port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be listened on
+     */
+    public MessageServer(Encrypter encrypter, Encoder encoder, int port) throws IOException {
+        this(encrypter, encoder, null, port);
+    }
+
+    /**
+     * constructor for a server whose code adapts to the noise seen in RECEIVE requests
+     * @param encrypter, encrypter for the data, which must have the byte alphabet
+     * @param adaptiveEncoder, adaptive encoder for the encrypted data, whose word width is the encrypter's limb width
+     * @param port, port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be listened on
+     */
+    public MessageServer(Encrypter encrypter, AdaptiveEncoder adaptiveEncoder, int port) throws IOException {
+        this(encrypter, null, adaptiveEncoder, port);
+    }
+
+    private MessageServer(Encrypter encrypter, Encoder encoder, AdaptiveEncoder adaptiveEncoder, int port)
+            throws IOException {
+        if(!encrypter.getAlphabet().isBytes()) {
+            throw new IllegalArgumentException("requests can only be encrypted with the byte alphabet");
+        } else if(encoder != null && encrypter.getLimbWidth() + encoder.getParityBits() > PackedWords.MAX_WIDTH) {
+            throw new IllegalArgumentException("encrypted limbs do not fit in the encoder's codewords");
+        } else if(adaptiveEncoder != null && adaptiveEncoder.getWordWidth() != encrypter.getLimbWidth()) {
+            throw new IllegalArgumentException("adaptive encoder is for words of width "
+                    + adaptiveEncoder.getWordWidth() + ", not the limb width " + encrypter.getLimbWidth());
+        }
+
+        this.encrypter = encrypter;
+        this.encoder = encoder;
+        this.adaptiveEncoder = adaptiveEncoder;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), ACCEPT_BACKLOG);
+    }
+
+    /**
+     * get the port that the server listens on
+     * @return the port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * start the workers and begin accepting connections, the threads keep the JVM running until the server is closed
+     */
+    public synchronized void start() {
+        if(!threads.isEmpty() || closed) {
+            throw new IllegalStateException("server has already been started");
+        }
+
+        for(int i = 0; i < Runtime.getRuntime().availableProcessors(); ++i) {
+            threads.add(new Thread(this::work, "message-server-worker-" + i));
+        }
+        threads.add(new Thread(this::accept, "message-server-acceptor"));
+        threads.forEach(Thread::start);
+    }
+
+    /**
+     * stop accepting connections, drop the open ones and stop the workers
+     * @throws IOException if the listening socket cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(closed) {
+            return;
+        }
+
+        closed = true;
+        serverSocket.close();
+        for(Socket socket : connections) {
+            closeQuietly(socket);
+        }
+        connectionExecutor.shutdownNow();
+        threads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * accept connections until the server is closed, giving each one a reader and a writer
+     */
+    private void accept() {
+        while(!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                continue; // the server socket was closed, or one connection failed while it was set up
+            }
+
+            connections.add(socket);
+            BlockingQueue<Request> pending = new ArrayBlockingQueue<>(MAX_PENDING);
+            try {
+                connectionExecutor.execute(() -> readRequests(socket, pending));
+                connectionExecutor.execute(() -> writeResponses(socket, pending));
+            } catch (RuntimeException e) {
+                // the executor rejects connections once the server is closed
+                connections.remove(socket);
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    /**
+     * read the requests of a connection and hand them to the workers, ending with Request.END
+     * A request that cannot be read is answered with an error, and nothing after it is read since the framing is lost
+     * @param socket, the connection
+     * @param pending, requests that are waiting for their response to be written, in order
+     */
+    private void readRequests(Socket socket, BlockingQueue<Request> pending) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while(true) {
+                int operation = in.read();
+                if(operation == -1) {
+                    break;
+                }
+
+                int length = in.readInt();
+                if((operation != SEND && operation != RECEIVE) || length < 0 || length > MAX_PAYLOAD_BYTES) {
+                    pending.put(Request.failed("request has operation " + operation + " and length " + length
+                            + ", expected operation " + SEND + " or " + RECEIVE + " and at most " + MAX_PAYLOAD_BYTES
+                            + " bytes"));
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                // the response slot is taken first, so a connection that is too far ahead stops here
+                Request request = new Request(operation, payload);
+                pending.put(request);
+                queue.put(request);
+            }
+        } catch (EOFException e) {
+            // the client went away in the middle of a request, so there is nobody to answer
+        } catch (IOException e) {
+            // the connection was dropped or the server is closing
+        } catch (InterruptedException e) {
+            // the server is closing, keep the flag so that the put below gives up instead of waiting on the writer
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                pending.put(Request.END);
+            } catch (InterruptedException e) {
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    /**
+     * write the responses of a connection in the order its requests came in, then close it
+     * @param socket, the connection
+     * @param pending, requests that are waiting for their response to be written, in order
+     */
+    private void writeResponses(Socket socket, BlockingQueue<Request> pending) {
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Request request;
+            while((request = pending.take()) != Request.END) {
+                int status = OK;
+                byte[] body;
+                try {
+                    body = request.response.get();
+                } catch (ExecutionException e) {
+                    status = ERROR;
+                    body = String.valueOf(e.getCause().getMessage()).getBytes(StandardCharsets.UTF_8);
+                }
+
+                out.write(status);
+                out.writeInt(body.length);
+                out.write(body);
+
+                // only flush when nothing else is ready, so that pipelined responses share a write
+                Request next = pending.peek();
+                if(next == null || !next.response.isDone()) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException | InterruptedException e) {
+            // the connection was dropped or the server is closing
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * take requests off the shared queue and run them through the stages until the server is closed
+     * @throws Error if running a request threw one, after that request has been answered and a new worker has been
+     * started in place of this one
+     */
+    private void work() {
+        while(!closed) {
+            Request request;
+            try {
+                request = queue.take();
+            } catch (InterruptedException e) {
+                continue; // close interrupts the workers so that they see it
+            }
+
+            try {
+                request.response.complete(process(request.operation, request.payload));
+            } catch (Throwable e) {
+                // the request gets a response even after an Error, which is only passed on after that
+                request.response.completeExceptionally(e);
+                if(e instanceof Error) {
+                    replaceWorker();
+                    throw (Error) e;
+                }
+            }
+        }
+    }
+
+    /**
+     * start a worker in place of the current one, which is about to die, so the server keeps its number of workers
+     */
+    private synchronized void replaceWorker() {
+        threads.remove(Thread.currentThread());
+        if(!closed) {
+            Thread worker = new Thread(this::work, Thread.currentThread().getName());
+            threads.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * run one request through the stages
+     * @param operation, SEND or RECEIVE
+     * @param payload, raw data for SEND, a packed encrypted and encoded message for RECEIVE
+     * @return the packed encrypted and encoded data for SEND, the raw data for RECEIVE
+     * @throws IllegalArgumentException if a RECEIVE payload is not a message that this server could have sent
+     */
+    private byte[] process(int operation, byte[] payload) {
+        if(operation == SEND) {
+            byte[] encrypted = encrypter.encryptBytes(payload);
+            return adaptiveEncoder != null ? adaptiveEncoder.encode(encrypted) : encoder.encode(encrypted);
+        }
+
+        if(payload.length < PackedWords.HEADER_BYTES || !PackedWords.isHeader(payload)
+                || PackedWords.getSize(payload) != payload.length) {
+            throw new IllegalArgumentException("payload is not a packed message");
+        } else if(adaptiveEncoder != null) {
+            return encrypter.decryptBytes(adaptiveEncoder.decode(payload));
+        } else if(PackedWords.getWidth(payload) != encrypter.getLimbWidth() + encoder.getParityBits()) {
+            throw new IllegalArgumentException("message was not made by this server's encrypter and encoder");
+        }
+
+        return encrypter.decryptBytes(encoder.decode(payload));
+    }
+
+    /**
+     * make the executor that runs the readers and writers of connections
+     * Virtual threads are looked up by name, since they only came with JDK 21, so older JDKs get a cached pool instead
+     * @return the executor
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * close a connection, ignoring a failure since there is nothing left to do with it
+     * @param socket, the connection
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // the socket is unusable either way
+        }
+    }
+
+    /**
+     * Class that holds one request and, once a worker has run it, its response
+     */
+    private static class Request {
+        static final Request END = new Request(0, null); // marks the end of a connection's requests
+
+        final int operation;
+        final byte[] payload;
+        final CompletableFuture<byte[]> response = new CompletableFuture<>();
+
+        Request(int operation, byte[] payload) {
+            this.operation = operation;
+            this.payload = payload;
+        }
+
+        /**
+         * make a request that is answered with an error without going to a worker
+         * @param message, the error message
+         * @return the request
+         */
+        static Request failed(String message) {
+            Request request = new Request(0, null);
+            request.response.completeExceptionally(new IllegalArgumentException(message));
+            return request;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Class that stands in for the link between the encode and decode stages by flipping bits of packed messages
+ * Errors are placed by drawing the gap to the next one from a geometric distribution instead of rolling for every bit,
+ * so a low error rate costs almost nothing per bit. The header of a packed message is never touched, since a real link
+ * would frame messages itself
+ * Channels hold no state between messages and take their randomness from the caller, so one can be shared between
+ * threads that each have their own SplittableRandom
+ */
+public abstract class NoisyChannel {
+    private static final long NEVER = Long.MAX_VALUE / 4; // gap that is longer than any message
+
+    /**
+     * make a channel where every bit is flipped independently
+     * @param bitErrorRate, chance that each bit is flipped, from 0 to 1
+     * @return the channel
+     */
+    public static NoisyChannel independent(double bitErrorRate) {
+        checkProbability(bitErrorRate, "bit error rate");
+        return new Independent(bitErrorRate);
+    }
+
+    /**
+     * make a channel with Gilbert-Elliott bursts, which moves between a good and a bad state with its own error rate
+     * each, so errors come in clumps. Every message starts in a state drawn from how often the channel is in each
+     * @param goodToBad, chance of moving from the good state to the bad state after each bit
+     * @param badToGood, chance of moving from the bad state to the good state after each bit, 1 / mean burst length
+     * @param goodErrorRate, chance that a bit is flipped in the good state
+     * @param badErrorRate, chance that a bit is flipped in the bad state
+     * @return the channel
+     */
+    public static NoisyChannel gilbertElliott(double goodToBad, double badToGood, double goodErrorRate,
+                                              double badErrorRate) {
+        checkProbability(goodToBad, "good to bad transition probability");
+        checkProbability(badToGood, "bad to good transition probability");
+        checkProbability(goodErrorRate, "good state error rate");
+        checkProbability(badErrorRate, "bad state error rate");
+        if(goodToBad + badToGood == 0) {
+            throw new IllegalArgumentException("channel must be able to change state in at least one direction");
+        }
+
+        return new GilbertElliott(goodToBad, badToGood, goodErrorRate, badErrorRate);
+    }
+
+    /**
+     * get the long run fraction of bits that the channel flips
+     * @return the bit error rate
+     */
+    public abstract double getBitErrorRate();
+
+    /**
+     * flip bits of a run of bits in place
+     * @param data, array holding the bits, most significant bit of each byte first
+     * @param offset, index of the byte where the run starts
+     * @param bits, number of bits in the run
+     * @param random, source of randomness
+     * @return the number of bits that were flipped
+     */
+    public abstract long corrupt(byte[] data, int offset, long bits, SplittableRandom random);
+
+    /**
+     * flip bits of the words of a packed message in place, leaving the header and the padding after the last word alone
+     * @param packed, the packed message (see PackedWords)
+     * @param random, source of randomness
+     * @return the number of bits that were flipped
+     */
+    public long corrupt(byte[] packed, SplittableRandom random) {
+        return corrupt(packed, PackedWords.HEADER_BYTES,
+                (long) PackedWords.getCount(packed) * PackedWords.getWidth(packed), random);
+    }
+
+    /**
+     * send a packed message over the channel
+     * @param packed, the packed message, which is left as it is
+     * @param random, source of randomness
+     * @return a copy of the message with bits of its words flipped
+     */
+    public byte[] transmit(byte[] packed, SplittableRandom random) {
+        byte[] received = Arrays.copyOf(packed, packed.length);
+        corrupt(received, random);
+        return received;
+    }
+
+    /**
+     * flip every error of a run of bits that has a single error rate
+     * @param data, array holding the bits
+     * @param offset, index of the byte where the bits start
+     * @param from, index of the first bit of the run, counted from offset
+     * @param to, index after the last bit of the run
+     * @param errorRate, chance that each bit is flipped
+     * @param random, source of randomness
+     * @return the number of bits that were flipped
+     */
+    private static long flipBits(byte[] data, int offset, long from, long to, double errorRate,
+                                 SplittableRandom random) {
+        long flipped = 0;
+        for(long bit = from + gap(errorRate, random); bit < to; bit += 1 + gap(errorRate, random)) {
+            data[offset + (int) (bit >>> 3)] ^= (byte) (0x80 >>> (bit & 7));
+            ++flipped;
+        }
+
+        return flipped;
+    }
+
+    /**
+     * draw the number of trials before the first success, where each succeeds with the given chance
+     * @param probability, chance that each trial succeeds
+     * @param random, source of randomness
+     * @return the number of failed trials, capped at NEVER so that adding it to a bit index cannot overflow
+     */
+    private static long gap(double probability, SplittableRandom random) {
+        if(probability >= 1) {
+            return 0;
+        } else if(probability <= 0) {
+            return NEVER;
+        }
+
+        // 1 - nextDouble is never 0, so the logarithm is finite
+        double gap = Math.floor(Math.log(1 - random.nextDouble()) / Math.log1p(-probability));
+        return gap >= NEVER ? NEVER : (long) gap;
+    }
+
+    /**
+     * check that a number is a probability
+     * @param probability, the number
+     * @param name, what the number is, for the error message
+     */
+    private static void checkProbability(double probability, String name) {
+        if(!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException(name + " must be from 0 to 1, not " + probability);
+        }
+    }
+
+    /**
+     * Channel that flips every bit independently with the same chance
+     */
+    private static class Independent extends NoisyChannel {
+        private final double bitErrorRate;
+
+        Independent(double bitErrorRate) {
+            this.bitErrorRate = bitErrorRate;
+        }
+
+        @Override
+        public double getBitErrorRate() {
+            return bitErrorRate;
+        }
+
+        @Override
+        public long corrupt(byte[] data, int offset, long bits, SplittableRandom random) {
+            return flipBits(data, offset, 0, bits, bitErrorRate, random);
+        }
+
+        @Override
+        public String toString() {
+            return "independent bit flips (rate " + bitErrorRate + ")";
+        }
+    }
+
+    /**
+     * Channel with a good and a bad state, the time spent in a state before leaving it is drawn all at once
+     */
+    private static class GilbertElliott extends NoisyChannel {
+        private final double goodToBad;
+        private final double badToGood;
+        private final double goodErrorRate;
+        private final double badErrorRate;
+        private final double badFraction; // long run fraction of bits sent in the bad state
+
+        GilbertElliott(double goodToBad, double badToGood, double goodErrorRate, double badErrorRate) {
+            this.goodToBad = goodToBad;
+            this.badToGood = badToGood;
+            this.goodErrorRate = goodErrorRate;
+            this.badErrorRate = badErrorRate;
+            badFraction = goodToBad / (goodToBad + badToGood);
+        }
+
+        @Override
+        public double getBitErrorRate() {
+            return (1 - badFraction) * goodErrorRate + badFraction * badErrorRate;
+        }
+
+        @Override
+        public long corrupt(byte[] data, int offset, long bits, SplittableRandom random) {
+            boolean bad = random.nextDouble() < badFraction;
+            long flipped = 0;
+            long bit = 0;
+            while(bit < bits) {
+                // the state lasts for at least one bit, then it is left after each bit with the transition chance
+                long end = Math.min(bits, bit + 1 + gap(bad ? badToGood : goodToBad, random));
+                flipped += flipBits(data, offset, bit, end, bad ? badErrorRate : goodErrorRate, random);
+                bit = end;
+                bad = !bad;
+            }
+
+            return flipped;
+        }
+
+        @Override
+        public String toString() {
+            return "Gilbert-Elliott bursts (good to bad " + goodToBad + ", bad to good " + badToGood
+                    + ", error rates " + goodErrorRate + " and " + badErrorRate + ")";
+        }
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Class that defines the compact binary format that messages are passed around in between stages
+ * A packed message is a 6 byte header followed by fixed width words packed together with no padding between them
+ * (most significant bit first). The header holds the number of parity bits in each word (the degree of the generator,
+ * or 0 for words that are not codewords), the width of each word in bits, and the number of words
+ * Packed messages can also be kept in a ByteBuffer (such as a direct or memory mapped one), starting at any index
+ */
+public class PackedWords {
+    public static final int HEADER_BYTES = 6;
+    public static final int MAX_WIDTH = 63; // words are handled as non-negative longs
+    public static final int DEFAULT_MAX_FRAME_BYTES = 1 << 24; // biggest message a stream takes unless told otherwise
+
+    /**
+     * create an empty packed message with room for the given number of words, every word starts as zero
+     * @param parityBits, number of parity bits in each word, 0 if the words are not codewords
+     * @param width, number of bits in each word
+     * @param count, number of words
+     * @return the packed message
+     */
+    public static byte[] allocate(int parityBits, int width, int count) {
+        if(width < 1 || width > MAX_WIDTH || parityBits < 0 || parityBits >= width || count < 0) {
+            throw new IllegalArgumentException("cannot pack " + count + " words of width " + width
+                    + " with " + parityBits + " parity bits");
+        }
+
+        long bodyBytes = ((long) count * width + 7) / 8;
+        if(bodyBytes > Integer.MAX_VALUE - HEADER_BYTES) {
+            throw new IllegalArgumentException(count + " words of width " + width + " do not fit in one array");
+        }
+
+        byte[] packed = new byte[HEADER_BYTES + (int) bodyBytes];
+        packed[0] = (byte) parityBits;
+        packed[1] = (byte) width;
+        packed[2] = (byte) (count >>> 24);
+        packed[3] = (byte) (count >>> 16);
+        packed[4] = (byte) (count >>> 8);
+        packed[5] = (byte) count;
+
+        return packed;
+    }
+
+    /**
+     * get the number of parity bits in each word of a packed message
+     * @param packed, the packed message
+     * @return the number of parity bits, 0 if the words are not codewords
+     */
+    public static int getParityBits(byte[] packed) {
+        return packed[0];
+    }
+
+    /**
+     * get the width of each word of a packed message
+     * @param packed, the packed message
+     * @return the number of bits in each word
+     */
+    public static int getWidth(byte[] packed) {
+        return packed[1];
+    }
+
+    /**
+     * get the number of words in a packed message
+     * @param packed, the packed message
+     * @return the number of words
+     */
+    public static int getCount(byte[] packed) {
+        return ((packed[2] & 0xFF) << 24) | ((packed[3] & 0xFF) << 16) | ((packed[4] & 0xFF) << 8) | (packed[5] & 0xFF);
+    }
+
+    /**
+     * check whether bytes could be the header of a packed message
+     * @param header, the bytes to check, at least HEADER_BYTES of them
+     * @return true if the width and parity bits are possible and the whole message fits in one array
+     */
+    public static boolean isHeader(byte[] header) {
+        int width = getWidth(header);
+        int parityBits = getParityBits(header);
+        return width >= 1 && width <= MAX_WIDTH && parityBits >= 0 && parityBits < width
+                && getCount(header) >= 0 && ((long) getCount(header) * width + 7) / 8 <= Integer.MAX_VALUE - HEADER_BYTES;
+    }
+
+    /**
+     * get the total size of a packed message from its header
+     * @param header, the packed message, or just its first HEADER_BYTES bytes
+     * @return the number of bytes in the whole packed message, header included
+     */
+    public static int getSize(byte[] header) {
+        return HEADER_BYTES + (int) (((long) getCount(header) * getWidth(header) + 7) / 8);
+    }
+
+    /**
+     * read one whole packed message of at most DEFAULT_MAX_FRAME_BYTES from a stream, which is how packed messages are
+     * framed when they are streamed
+     * @param in, stream to read from
+     * @return the packed message, or null if the stream ended before a new message started
+     * @throws IOException if the stream ends in the middle of a message, the message is too big, or it cannot be read
+     */
+    public static byte[] read(InputStream in) throws IOException {
+        return read(in, DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    /**
+     * read one whole packed message from a stream, which is how packed messages are framed when they are streamed
+     * The size in the header is checked before the message is allocated, so a bad header cannot make a huge array
+     * @param in, stream to read from
+     * @param maxFrameBytes, most bytes the whole message can have, header included
+     * @return the packed message, or null if the stream ended before a new message started
+     * @throws IOException if the stream ends in the middle of a message, the message is too big, or it cannot be read
+     */
+    public static byte[] read(InputStream in, int maxFrameBytes) throws IOException {
+        byte[] header = in.readNBytes(HEADER_BYTES);
+        if(header.length == 0) {
+            return null;
+        } else if(header.length < HEADER_BYTES) {
+            throw new EOFException("stream ended in the middle of a packed message header");
+        }
+
+        if(!isHeader(header)) {
+            throw new IOException("stream does not hold a packed message");
+        }
+
+        checkFrameSize(header, maxFrameBytes);
+
+        byte[] packed = Arrays.copyOf(header, getSize(header));
+        if(in.readNBytes(packed, HEADER_BYTES, packed.length - HEADER_BYTES) < packed.length - HEADER_BYTES) {
+            throw new EOFException("stream ended in the middle of a packed message");
+        }
+
+        return packed;
+    }
+
+    /**
+     * check that the message a header starts is not bigger than a stream allows
+     * @param header, a valid header (see isHeader)
+     * @param maxFrameBytes, most bytes the whole message can have, header included
+     * @throws IOException if the message is too big
+     */
+    static void checkFrameSize(byte[] header, int maxFrameBytes) throws IOException {
+        if(getSize(header) > maxFrameBytes) {
+            throw new IOException("packed message of " + getSize(header) + " bytes is over the limit of "
+                    + maxFrameBytes + " bytes");
+        }
+    }
+
+    /**
+     * read a single word out of a packed message
+     * @param packed, the packed message
+     * @param index, index of the word
+     * @return the word
+     */
+    public static long getWord(byte[] packed, int index) {
+        int width = getWidth(packed);
+        long bitPosition = (long) index * width;
+        int byteIndex = HEADER_BYTES + (int) (bitPosition >>> 3);
+        int available = 8 - (int) (bitPosition & 7); // bits of the current byte that belong to this word
+
+        // take whole bytes (or the rest of the first byte) while the word needs them, then the top of the last byte
+        long word = 0;
+        int remaining = width;
+        int currByte = packed[byteIndex] & (0xFF >>> (8 - available));
+        while(remaining > available) {
+            word = (word << available) | currByte;
+            remaining -= available;
+            currByte = packed[++byteIndex] & 0xFF;
+            available = 8;
+        }
+
+        return (word << remaining) | (currByte >>> (available - remaining));
+    }
+
+    /**
+     * write a single word into a packed message, the bits being written to must still be zero
+     * @param packed, the packed message
+     * @param index, index of the word
+     * @param word, the word, which must fit in the width of the packed message
+     */
+    public static void putWord(byte[] packed, int index, long word) {
+        int width = getWidth(packed);
+        long bitPosition = (long) index * width;
+        int byteIndex = HEADER_BYTES + (int) (bitPosition >>> 3);
+        int available = 8 - (int) (bitPosition & 7);
+
+        // fill the rest of the current byte with the top bits of the word, then move on to the next byte
+        int remaining = width;
+        while(remaining > available) {
+            remaining -= available;
+            packed[byteIndex++] |= (byte) ((word >>> remaining) & (0xFF >>> (8 - available)));
+            available = 8;
+        }
+        packed[byteIndex] |= (byte) ((word & ((1L << remaining) - 1)) << (available - remaining));
+    }
+
+    /**
+     * write the header of a packed message into a buffer
+     * @param buffer, buffer that the message is in
+     * @param base, index in the buffer where the message starts
+     * @param parityBits, number of parity bits in each word, 0 if the words are not codewords
+     * @param width, number of bits in each word
+     * @param count, number of words
+     */
+    public static void putHeader(ByteBuffer buffer, int base, int parityBits, int width, int count) {
+        if(width < 1 || width > MAX_WIDTH || parityBits < 0 || parityBits >= width || count < 0) {
+            throw new IllegalArgumentException("cannot pack " + count + " words of width " + width
+                    + " with " + parityBits + " parity bits");
+        }
+
+        buffer.put(base, (byte) parityBits);
+        buffer.put(base + 1, (byte) width);
+        buffer.putInt(base + 2, count);
+    }
+
+    /**
+     * get the number of parity bits in each word of a packed message in a buffer
+     * @param buffer, buffer that the message is in
+     * @param base, index in the buffer where the message starts
+     * @return the number of parity bits, 0 if the words are not codewords
+     */
+    public static int getParityBits(ByteBuffer buffer, int base) {
+        return buffer.get(base);
+    }
+
+    /**
+     * get the width of each word of a packed message in a buffer
+     * @param buffer, buffer that the message is in
+     * @param base, index in the buffer where the message starts
+     * @return the number of bits in each word
+     */
+    public static int getWidth(ByteBuffer buffer, int base) {
+        return buffer.get(base + 1);
+    }
+
+    /**
+     * get the number of words in a packed message in a buffer
+     * @param buffer, buffer that the message is in
+     * @param base, index in the buffer where the message starts
+     * @return the number of words
+     */
+    public static int getCount(ByteBuffer buffer, int base) {
+        return buffer.getInt(base + 2);
+    }
+
+    /**
+     * get the total size of a packed message
+     * @param width, number of bits in each word
+     * @param count, number of words
+     * @return the number of bytes in the whole packed message, header included
+     */
+    public static long getSize(int width, int count) {
+        return HEADER_BYTES + ((long) count * width + 7) / 8;
+    }
+
+    /**
+     * read a single word out of a packed message in a buffer
+     * @param buffer, buffer that the message is in
+     * @param base, index in the buffer where the message starts
+     * @param width, number of bits in each word
+     * @param index, index of the word
+     * @return the word
+     */
+    public static long getWord(ByteBuffer buffer, int base, int width, int index) {
+        long bitPosition = (long) index * width;
+        int byteIndex = base + HEADER_BYTES + (int) (bitPosition >>> 3);
+        int available = 8 - (int) (bitPosition & 7);
+
+        long word = 0;
+        int remaining = width;
+        int currByte = buffer.get(byteIndex) & (0xFF >>> (8 - available));
+        while(remaining > available) {
+            word = (word << available) | currByte;
+            remaining -= available;
+            currByte = buffer.get(++byteIndex) & 0xFF;
+            available = 8;
+        }
+
+        return (word << remaining) | (currByte >>> (available - remaining));
+    }
+
+    /**
+     * write a single word into a packed message in a buffer, replacing whatever bits were there, so a reused buffer
+     * does not need clearing first
+     * @param buffer, buffer that the message is in
+     * @param base, index in the buffer where the message starts
+     * @param width, number of bits in each word
+     * @param index, index of the word
+     * @param word, the word, which must fit in the width
+     */
+    public static void putWord(ByteBuffer buffer, int base, int width, int index, long word) {
+        long bitPosition = (long) index * width;
+        int byteIndex = base + HEADER_BYTES + (int) (bitPosition >>> 3);
+        int available = 8 - (int) (bitPosition & 7);
+
+        // the first and last bytes can be shared with other words, so only the bits of this word are replaced in them
+        int remaining = width;
+        while(remaining > available) {
+            remaining -= available;
+            int mask = 0xFF >>> (8 - available);
+            int bits = (int) (word >>> remaining) & mask;
+            buffer.put(byteIndex, (byte) ((buffer.get(byteIndex) & ~mask) | bits));
+            ++byteIndex;
+            available = 8;
+        }
+        int shift = available - remaining;
+        int mask = ((1 << remaining) - 1) << shift;
+        int bits = ((int) word << shift) & mask;
+        buffer.put(byteIndex, (byte) ((buffer.get(byteIndex) & ~mask) | bits));
+    }
+}
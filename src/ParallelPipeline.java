@@ -0,0 +1,233 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class that runs the encrypt and encode stages (or the decode and decrypt stages) over a large message in parallel
+ * Every block of a message is independent, so the blocks are split into chunks that are handled by the threads of a
+ * ForkJoinPool. Each chunk writes straight into its own part of the output, which keeps everything in order
+ * This is meant to be used as a library (the benchmarks use it), none of the modes of Main go through it
+ */
+public class ParallelPipeline {
+    // blocks handled by one task, a multiple of 8 so that no two chunks ever write to the same byte of packed output
+    private static final int CHUNK_BLOCKS = 2048;
+
+    private final Encrypter encrypter;
+    private final Encoder encoder;
+    private final ForkJoinPool pool;
+
+    /**
+     * constructor for a pipeline that uses the common pool
+     * @param encrypter, encrypter for the messages
+     * @param encoder, encoder for the encrypted messages
+     */
+    public ParallelPipeline(Encrypter encrypter, Encoder encoder) {
+        this(encrypter, encoder, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * constructor for a pipeline
+     * @param encrypter, encrypter for the messages
+     * @param encoder, encoder for the encrypted messages
+     * @param pool, pool whose threads do the work
+     */
+    public ParallelPipeline(Encrypter encrypter, Encoder encoder, ForkJoinPool pool) {
+        if(encrypter.getLimbWidth() + encoder.getParityBits() > PackedWords.MAX_WIDTH) {
+            throw new IllegalArgumentException("encrypted limbs do not fit in the encoder's codewords");
+        }
+
+        this.encrypter = encrypter;
+        this.encoder = encoder;
+        this.pool = pool;
+    }
+
+    /**
+     * encrypt and then encode a message
+     * @param message, message to be sent
+     * @return the packed encrypted and encoded message, the same as encoding the result of encryptPacked
+     * @throws IllegalArgumentException if the message has a character that is not in the encrypter's alphabet
+     */
+    public byte[] encryptAndEncode(String message) {
+        return encryptAndEncode(encrypter.getAlphabet().toSymbols(message));
+    }
+
+    /**
+     * encrypt and then encode raw data, which needs an encrypter with the byte alphabet
+     * @param data, data to be sent
+     * @return the packed encrypted and encoded data
+     */
+    public byte[] encryptAndEncode(byte[] data) {
+        if(!encrypter.getAlphabet().isBytes()) {
+            throw new IllegalStateException("raw data can only be encrypted with the byte alphabet");
+        }
+
+        return encryptAndEncode(SymbolAlphabet.toSymbols(data));
+    }
+
+    /**
+     * decode and then decrypt a message
+     * @param packed, packed encrypted and encoded message
+     * @return the message
+     */
+    public String decodeAndDecrypt(byte[] packed) {
+        int[] symbols = newSymbolArray(packed);
+        return encrypter.getAlphabet().fromSymbols(symbols, decodeAndDecrypt(packed, symbols));
+    }
+
+    /**
+     * decode and then decrypt raw data, which needs an encrypter with the byte alphabet
+     * @param packed, packed encrypted and encoded data
+     * @return the data
+     */
+    public byte[] decodeAndDecryptBytes(byte[] packed) {
+        if(!encrypter.getAlphabet().isBytes()) {
+            throw new IllegalStateException("raw data can only be decrypted with the byte alphabet");
+        }
+
+        int[] symbols = newSymbolArray(packed);
+        return SymbolAlphabet.toBytes(symbols, decodeAndDecrypt(packed, symbols));
+    }
+
+    /**
+     * encrypt and encode the symbols of a message
+     * @param symbols, symbols of the message
+     * @return the packed encrypted and encoded message
+     */
+    private byte[] encryptAndEncode(int[] symbols) {
+        int blocks = encrypter.getBlockCount(symbols.length);
+        byte[] packed = PackedWords.allocate(encoder.getParityBits(),
+                encrypter.getLimbWidth() + encoder.getParityBits(), blocks * encrypter.getLimbCount());
+        pool.invoke(new EncodeTask(symbols, packed, 0, blocks));
+
+        return packed;
+    }
+
+    /**
+     * decode and decrypt a message into symbols
+     * @param packed, packed encrypted and encoded message
+     * @param symbols, where the symbols are written
+     * @return the number of symbols written
+     */
+    private int decodeAndDecrypt(byte[] packed, int[] symbols) {
+        if(PackedWords.getParityBits(packed) != encoder.getParityBits()
+                || PackedWords.getWidth(packed) != encrypter.getLimbWidth() + encoder.getParityBits()) {
+            throw new IllegalArgumentException("message was not made by this pipeline's encrypter and encoder");
+        }
+
+        int blocks = PackedWords.getCount(packed) / encrypter.getLimbCount();
+        return pool.invoke(new DecodeTask(packed, symbols, 0, blocks));
+    }
+
+    /**
+     * make an array big enough for every symbol of a packed message
+     * @param packed, packed encrypted and encoded message
+     * @return the array
+     */
+    private int[] newSymbolArray(byte[] packed) {
+        int blocks = PackedWords.getCount(packed) / encrypter.getLimbCount();
+        return new int[blocks * encrypter.getSymbolsPerBlock()];
+    }
+
+    /**
+     * find where to split a range of blocks that is bigger than one chunk
+     * @param fromBlock, first block of the range, always on a chunk boundary
+     * @param toBlock, block after the end of the range
+     * @return the chunk boundary closest to the middle of the range, but never the start of it
+     */
+    private static int splitPoint(int fromBlock, int toBlock) {
+        int chunks = Math.max((toBlock - fromBlock) / 2 / CHUNK_BLOCKS, 1);
+        return fromBlock + chunks * CHUNK_BLOCKS;
+    }
+
+    /**
+     * Task that encrypts and encodes a range of blocks, splitting itself in half until the range is one chunk
+     */
+    private class EncodeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] symbols;
+        private final byte[] packed;
+        private final int fromBlock;
+        private final int toBlock;
+
+        EncodeTask(int[] symbols, byte[] packed, int fromBlock, int toBlock) {
+            this.symbols = symbols;
+            this.packed = packed;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected void compute() {
+            if(toBlock - fromBlock > CHUNK_BLOCKS) {
+                // split on a chunk boundary so that the halves never share a byte of output
+                int middle = splitPoint(fromBlock, toBlock);
+                invokeAll(new EncodeTask(symbols, packed, fromBlock, middle),
+                        new EncodeTask(symbols, packed, middle, toBlock));
+                return;
+            }
+
+            int limbCount = encrypter.getLimbCount();
+            long[] limbs = new long[(toBlock - fromBlock) * limbCount];
+            encrypter.encryptBlocks(symbols, fromBlock, toBlock, limbs);
+            long start = PipelineMetrics.start();
+            for(int i = 0; i < limbs.length; ++i) {
+                PackedWords.putWord(packed, fromBlock * limbCount + i, encoder.encodeWord(limbs[i]));
+            }
+            PipelineMetrics.record(PipelineMetrics.Stage.ENCODE, start, limbs.length);
+        }
+    }
+
+    /**
+     * Task that decodes and decrypts a range of blocks, splitting itself in half until the range is one chunk
+     * The result is the index after the last symbol written, which is the symbol count for the task with the last block
+     */
+    private class DecodeTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] packed;
+        private final int[] symbols;
+        private final int fromBlock;
+        private final int toBlock;
+
+        DecodeTask(byte[] packed, int[] symbols, int fromBlock, int toBlock) {
+            this.packed = packed;
+            this.symbols = symbols;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected Integer compute() {
+            if(toBlock - fromBlock > CHUNK_BLOCKS) {
+                int middle = splitPoint(fromBlock, toBlock);
+                DecodeTask first = new DecodeTask(packed, symbols, fromBlock, middle);
+                DecodeTask second = new DecodeTask(packed, symbols, middle, toBlock);
+                invokeAll(first, second);
+                return second.join();
+            }
+
+            // words that cannot be corrected are passed on as they are, like Encoder.decode does
+            int limbCount = encrypter.getLimbCount();
+            int width = PackedWords.getWidth(packed);
+            long[] limbs = new long[(toBlock - fromBlock) * limbCount];
+            long start = PipelineMetrics.start();
+            int corrected = 0;
+            int uncorrectable = 0;
+            for(int i = 0; i < limbs.length; ++i) {
+                long codeword = PackedWords.getWord(packed, fromBlock * limbCount + i);
+                long word = encoder.decodeWord(codeword, width);
+                if(word == -1) {
+                    ++uncorrectable;
+                    word = codeword >>> encoder.getParityBits();
+                } else if(word != codeword >>> encoder.getParityBits()) {
+                    ++corrected;
+                }
+                limbs[i] = word;
+            }
+            PipelineMetrics.recordDecode(start, limbs.length, corrected, uncorrectable);
+
+            return encrypter.decryptBlocks(limbs, fromBlock, toBlock, symbols);
+        }
+    }
+}
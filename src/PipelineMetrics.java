@@ -0,0 +1,331 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that keeps count of what the stages of the pipeline do and how long they take
+ * Encrypter and Encoder record every call of their bulk methods (not single words), and every call is counted in
+ * LongAdders, so threads never wait on each other to record. Latencies go into a histogram per stage with a bucket for
+ * each power of two nanoseconds, and every call is also a JDK Flight Recorder event when a recording asks for them
+ * Everything can be read over JMX once registerMBean has been called. Events are only made while a recording has them
+ * turned on, so recording a call allocates nothing otherwise. Recording can be turned off at runtime with
+ * setEnabled (or the Enabled attribute over JMX), or from the start with -Dsecuremessage.metrics=false, after which
+ * each call only costs a read of a volatile flag
+ */
+public class PipelineMetrics implements PipelineMetricsMBean {
+    public static final String OBJECT_NAME = "SecureMessageSender:type=PipelineMetrics";
+
+    private static final long NOT_TIMED = Long.MIN_VALUE; // start time handed out while recording is off
+    private static final int BUCKETS = 64; // bucket i holds calls that took from 2^(i-1) up to 2^i nanoseconds
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+    private static final EventType STAGE_EVENT = EventType.getEventType(StageEvent.class);
+
+    private static volatile boolean enabled = !"false".equals(System.getProperty("securemessage.metrics"));
+
+    /**
+     * Enum of the stages that are measured, in the order a message goes through them
+     */
+    public enum Stage {
+        ENCRYPT, ENCODE, DECODE, DECRYPT
+    }
+
+    private final LongAdder symbolsEncrypted = new LongAdder();
+    private final LongAdder symbolsDecrypted = new LongAdder();
+    private final LongAdder wordsEncoded = new LongAdder();
+    private final LongAdder wordsDecoded = new LongAdder();
+    private final LongAdder wordsCorrected = new LongAdder();
+    private final LongAdder wordsUncorrectable = new LongAdder();
+    private final LongAdder[] calls = new LongAdder[Stage.values().length];
+    private final LongAdder[] totalNanos = new LongAdder[Stage.values().length];
+    private final LongAdder[][] latency = new LongAdder[Stage.values().length][BUCKETS];
+
+    private PipelineMetrics() {
+        for(int i = 0; i < calls.length; ++i) {
+            calls[i] = new LongAdder();
+            totalNanos[i] = new LongAdder();
+            for(int j = 0; j < BUCKETS; ++j) {
+                latency[i][j] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * get the metrics that every stage records into
+     * @return the metrics
+     */
+    public static PipelineMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * register the metrics with the platform MBean server under OBJECT_NAME, doing nothing if that was already done
+     * @throws IllegalStateException if the MBean server will not take them
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch(JMException ex) {
+            throw new IllegalStateException("could not register " + OBJECT_NAME, ex);
+        }
+    }
+
+    /**
+     * get the start time of a call that is about to be recorded
+     * @return the current time in nanoseconds, or a marker that makes the record methods skip the call
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * check whether calls are being recorded, for callers that time their stages themselves
+     * @return true if recordTime and recordDecodeTime should be called
+     */
+    static boolean isRecording() {
+        return enabled;
+    }
+
+    /**
+     * record a call of the encrypt, encode or decrypt stage
+     * @param stage, the stage
+     * @param start, what start returned before the call
+     * @param count, number of symbols (encrypt and decrypt) or words (encode) that the call handled
+     */
+    static void record(Stage stage, long start, long count) {
+        if(start != NOT_TIMED) {
+            recordTime(stage, System.nanoTime() - start, count);
+        }
+    }
+
+    /**
+     * record a call of the encrypt, encode or decrypt stage that was timed by the caller
+     * @param stage, the stage
+     * @param elapsed, nanoseconds that the call took
+     * @param count, number of symbols (encrypt and decrypt) or words (encode) that the call handled
+     */
+    static void recordTime(Stage stage, long elapsed, long count) {
+        if(stage == Stage.ENCRYPT) {
+            INSTANCE.symbolsEncrypted.add(count);
+        } else if(stage == Stage.ENCODE) {
+            INSTANCE.wordsEncoded.add(count);
+        } else if(stage == Stage.DECRYPT) {
+            INSTANCE.symbolsDecrypted.add(count);
+        } else {
+            INSTANCE.wordsDecoded.add(count);
+        }
+        INSTANCE.recordLatency(stage, elapsed);
+
+        if(STAGE_EVENT.isEnabled()) {
+            StageEvent event = new StageEvent();
+            if(event.shouldCommit()) {
+                event.stage = stage.name();
+                event.count = count;
+                event.time = elapsed;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * record a call of the decode stage
+     * @param start, what start returned before the call
+     * @param words, number of words that were decoded
+     * @param corrected, number of those words that had an error corrected
+     * @param uncorrectable, number of those words that had more errors than could be corrected
+     */
+    static void recordDecode(long start, long words, long corrected, long uncorrectable) {
+        if(start != NOT_TIMED) {
+            recordDecodeTime(System.nanoTime() - start, words, corrected, uncorrectable);
+        }
+    }
+
+    /**
+     * record a call of the decode stage that was timed by the caller
+     * @param elapsed, nanoseconds that the call took
+     * @param words, number of words that were decoded
+     * @param corrected, number of those words that had an error corrected
+     * @param uncorrectable, number of those words that had more errors than could be corrected
+     */
+    static void recordDecodeTime(long elapsed, long words, long corrected, long uncorrectable) {
+        INSTANCE.wordsDecoded.add(words);
+        INSTANCE.wordsCorrected.add(corrected);
+        INSTANCE.wordsUncorrectable.add(uncorrectable);
+        INSTANCE.recordLatency(Stage.DECODE, elapsed);
+
+        if(STAGE_EVENT.isEnabled()) {
+            StageEvent event = new StageEvent();
+            if(event.shouldCommit()) {
+                event.stage = Stage.DECODE.name();
+                event.count = words;
+                event.corrected = corrected;
+                event.uncorrectable = uncorrectable;
+                event.time = elapsed;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * add a call to the call count and latency histogram of a stage
+     * @param stage, the stage
+     * @param elapsed, nanoseconds that the call took
+     */
+    private void recordLatency(Stage stage, long elapsed) {
+        int index = stage.ordinal();
+        calls[index].increment();
+        totalNanos[index].add(elapsed);
+        latency[index][Math.min(64 - Long.numberOfLeadingZeros(Math.max(elapsed, 0)), BUCKETS - 1)].increment();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        PipelineMetrics.enabled = enabled;
+    }
+
+    @Override
+    public long getSymbolsEncrypted() {
+        return symbolsEncrypted.sum();
+    }
+
+    @Override
+    public long getWordsEncoded() {
+        return wordsEncoded.sum();
+    }
+
+    @Override
+    public long getWordsDecoded() {
+        return wordsDecoded.sum();
+    }
+
+    @Override
+    public long getWordsCorrected() {
+        return wordsCorrected.sum();
+    }
+
+    @Override
+    public long getWordsUncorrectable() {
+        return wordsUncorrectable.sum();
+    }
+
+    @Override
+    public long getSymbolsDecrypted() {
+        return symbolsDecrypted.sum();
+    }
+
+    /**
+     * get the number of recorded calls of a stage
+     * @param stage, name of the stage
+     * @return the number of calls
+     */
+    @Override
+    public long getCalls(String stage) {
+        return calls[Stage.valueOf(stage).ordinal()].sum();
+    }
+
+    /**
+     * get the total time spent in a stage
+     * @param stage, name of the stage
+     * @return the sum of the latencies of every recorded call, in nanoseconds
+     */
+    @Override
+    public long getTotalNanos(String stage) {
+        return totalNanos[Stage.valueOf(stage).ordinal()].sum();
+    }
+
+    /**
+     * get a percentile of the latency of a stage, which is only as exact as the power of two buckets it is kept in
+     * @param stage, name of the stage
+     * @param percentile, the percentile, from 0 to 100
+     * @return the upper end of the bucket that the percentile falls in, in nanoseconds, or 0 if nothing was recorded
+     */
+    @Override
+    public long getLatencyPercentile(String stage, double percentile) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be from 0 to 100, not " + percentile);
+        }
+
+        LongAdder[] buckets = latency[Stage.valueOf(stage).ordinal()];
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for(int i = 0; i < BUCKETS; ++i) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+
+        long rank = Math.max((long) Math.ceil(total * percentile / 100), 1);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if(seen >= rank) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * set every count and histogram back to zero, calls that are being recorded at the same time may be partly kept
+     */
+    @Override
+    public void reset() {
+        symbolsEncrypted.reset();
+        symbolsDecrypted.reset();
+        wordsEncoded.reset();
+        wordsDecoded.reset();
+        wordsCorrected.reset();
+        wordsUncorrectable.reset();
+        for(int i = 0; i < calls.length; ++i) {
+            calls[i].reset();
+            totalNanos[i].reset();
+            for(LongAdder bucket : latency[i]) {
+                bucket.reset();
+            }
+        }
+    }
+
+    /**
+     * Flight Recorder event for one call of a stage
+     */
+    @Name("SecureMessageSender.Stage")
+    @Label("Pipeline Stage")
+    @Category("Secure Message Sender")
+    @Description("One call of an encrypt, encode, decode or decrypt stage")
+    static class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+
+        @Label("Count")
+        @Description("Symbols for encrypt and decrypt, words for encode and decode")
+        long count;
+
+        @Label("Corrected Words")
+        long corrected;
+
+        @Label("Uncorrectable Words")
+        long uncorrectable;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Interface that PipelineMetrics is exposed through over JMX, stages are named as in PipelineMetrics.Stage
+ */
+public interface PipelineMetricsMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSymbolsEncrypted();
+
+    long getWordsEncoded();
+
+    long getWordsDecoded();
+
+    long getWordsCorrected();
+
+    long getWordsUncorrectable();
+
+    long getSymbolsDecrypted();
+
+    long getCalls(String stage);
+
+    long getTotalNanos(String stage);
+
+    long getLatencyPercentile(String stage, double percentile);
+
+    void reset();
+}
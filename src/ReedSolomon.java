@@ -0,0 +1,454 @@
+import java.util.Arrays;
+
+/**
+ * Class that encodes and decodes bytes with a Reed-Solomon code over GF(2^8), where every symbol is a whole byte
+ * A block is up to 255 bytes, the data followed by 2t parity bytes, and up to t bytes with errors can be corrected in
+ * each block no matter how many of their bits are wrong, which is what makes the code good against bursts. Bytes that
+ * are known to be bad (erasures) cost half as much, so any mix of e errors and f erasures with 2e+f <= 2t is corrected.
+ * Data is split into full blocks of 255 bytes, and the last block is shortened to fit what is left
+ * Codes are immutable, so one can be shared between threads
+ */
+public class ReedSolomon {
+    private static final int BLOCK_BYTES = 255; // the field has 255 nonzero elements, so a block has at most 255 bytes
+
+    private final GaloisField field;
+    private final int paritySymbols; // number of parity bytes in each block, 2t
+    private final byte[] multiplyTable; // product of every pair of bytes, entry (a << 8) | b is a*b
+    private final int registerWords; // number of longs that hold the 2t bytes of the shift register
+    private final long[] feedbackTable; // row f is f times the generator, highest degree first, 8 bytes to a long
+
+    /**
+     * constructor for a Reed-Solomon code
+     * @param generator, a binary string that represents a primitive polynomial of degree 8 over Z2 (most significant
+     * term on left), such as "100011101", which generates the field
+     * @param paritySymbols, number of parity bytes in each block, 32 gives the common RS(255,223)
+     */
+    public ReedSolomon(String generator, int paritySymbols) {
+        field = GaloisField.forGenerator(generator);
+        if(field.getDegree() != 8) {
+            throw new IllegalArgumentException("symbols are bytes, so the generator must have degree 8");
+        } else if(paritySymbols < 1 || paritySymbols >= BLOCK_BYTES) {
+            throw new IllegalArgumentException("a block must have from 1 to " + (BLOCK_BYTES - 1)
+                    + " parity bytes, not " + paritySymbols);
+        }
+
+        this.paritySymbols = paritySymbols;
+        registerWords = (paritySymbols + 7) / 8;
+        multiplyTable = createMultiplyTable();
+        feedbackTable = createFeedbackTable(createGenerator());
+    }
+
+    /**
+     * get the number of parity bytes in each block
+     * @return 2t, twice the number of byte errors that can be corrected in a block
+     */
+    public int getParitySymbols() {
+        return paritySymbols;
+    }
+
+    /**
+     * get the number of data bytes in a full block
+     * @return k, 255 minus the number of parity bytes
+     */
+    public int getDataSymbols() {
+        return BLOCK_BYTES - paritySymbols;
+    }
+
+    /**
+     * get the number of bytes that encoding some data produces
+     * @param dataLength, number of data bytes
+     * @return the number of encoded bytes, the data plus the parity bytes of every block
+     */
+    public int getEncodedLength(int dataLength) {
+        int blocks = (dataLength + getDataSymbols() - 1) / getDataSymbols();
+        return dataLength + blocks * paritySymbols;
+    }
+
+    /**
+     * encode data, each block of data bytes is followed by its parity bytes
+     * @param data, data to be encoded
+     * @return the encoded data
+     */
+    public byte[] encode(byte[] data) {
+        byte[] encoded = new byte[getEncodedLength(data.length)];
+        int dataSymbols = getDataSymbols();
+        for(int from = 0, to = 0; from < data.length; from += dataSymbols, to += BLOCK_BYTES) {
+            int dataLength = Math.min(dataSymbols, data.length - from);
+            System.arraycopy(data, from, encoded, to, dataLength);
+            encodeBlock(encoded, to, dataLength);
+        }
+
+        return encoded;
+    }
+
+    /**
+     * encode a single block in place, the parity bytes are written straight after the data
+     * @param block, array holding the block, with room for the parity bytes after the data
+     * @param offset, index of the first data byte
+     * @param dataLength, number of data bytes, at most getDataSymbols()
+     */
+    public void encodeBlock(byte[] block, int offset, int dataLength) {
+        if(dataLength < 0 || dataLength > getDataSymbols()) {
+            throw new IllegalArgumentException("a block can hold from 0 to " + getDataSymbols()
+                    + " data bytes, not " + dataLength);
+        }
+
+        computeParity(block, offset, dataLength, block, offset + dataLength);
+    }
+
+    /**
+     * compute the parity bytes of some data, the remainder of dividing data*x^2t by the generator
+     * The division runs through a shift register, and each step adds the row of the feedback table for the byte that
+     * is shifted out. The register is packed 8 bytes to a long (highest degree in the top byte of the first long), so
+     * a step shifts and adds a long at a time instead of a byte at a time
+     * @param data, array holding the data
+     * @param offset, index of the first data byte
+     * @param dataLength, number of data bytes
+     * @param parity, array that the parity bytes are written to
+     * @param parityOffset, index the parity bytes are written at
+     */
+    private void computeParity(byte[] data, int offset, int dataLength, byte[] parity, int parityOffset) {
+        long[] register = new long[registerWords];
+        int lastWord = registerWords - 1;
+        for(int i = offset; i < offset + dataLength; ++i) {
+            int row = ((data[i] ^ (int) (register[0] >>> 56)) & 0xFF) * registerWords;
+            for(int k = 0; k < lastWord; ++k) {
+                register[k] = ((register[k] << 8) | (register[k + 1] >>> 56)) ^ feedbackTable[row + k];
+            }
+            register[lastWord] = (register[lastWord] << 8) ^ feedbackTable[row + lastWord];
+        }
+
+        for(int j = 0; j < paritySymbols; ++j) {
+            parity[parityOffset + j] = (byte) (register[j >>> 3] >>> (56 - 8 * (j & 7)));
+        }
+    }
+
+    /**
+     * decode data that has previously been encoded, correcting every block that can be corrected
+     * Blocks that have more errors than can be corrected are passed on without any correction
+     * @param encoded, encoded data
+     * @return the data
+     */
+    public byte[] decode(byte[] encoded) {
+        return decode(encoded, new int[0]);
+    }
+
+    /**
+     * decode data that has previously been encoded, with some bytes already known to be bad
+     * Blocks that have more errors than can be corrected are passed on without any correction
+     * @param encoded, encoded data
+     * @param erasures, indices in the encoded data of bytes that are known to be bad, in any order
+     * @return the data
+     */
+    public byte[] decode(byte[] encoded, int[] erasures) {
+        int lastBlock = encoded.length % BLOCK_BYTES;
+        if(lastBlock != 0 && lastBlock <= paritySymbols) {
+            throw new IllegalArgumentException(encoded.length + " bytes cannot be a whole number of blocks");
+        }
+
+        int blocks = (encoded.length + BLOCK_BYTES - 1) / BLOCK_BYTES;
+        byte[] corrected = encoded.clone();
+        byte[] data = new byte[encoded.length - blocks * paritySymbols];
+        int[] sorted = erasures.clone();
+        Arrays.sort(sorted);
+
+        // erasures are sorted, so the ones for each block follow on from those of the block before
+        int[] blockErasures = new int[paritySymbols + 1];
+        int nextErasure = 0;
+        for(int from = 0, to = 0; from < encoded.length; from += BLOCK_BYTES, to += getDataSymbols()) {
+            int length = Math.min(BLOCK_BYTES, encoded.length - from);
+            int erasureCount = 0;
+            for(; nextErasure < sorted.length && sorted[nextErasure] < from + length; ++nextErasure) {
+                if(erasureCount < blockErasures.length) {
+                    blockErasures[erasureCount++] = sorted[nextErasure] - from;
+                }
+            }
+
+            if(decodeBlock(corrected, from, length, blockErasures, erasureCount) == -1) {
+                System.arraycopy(encoded, from, corrected, from, length);
+            }
+            System.arraycopy(corrected, from, data, to, length - paritySymbols);
+        }
+
+        return data;
+    }
+
+    /**
+     * decode a single block in place, correcting its errors and erasures
+     * The syndromes (the block evaluated at the roots of the generator) are zero for a valid block. Otherwise
+     * Berlekamp-Massey, started from the erasure locator, finds the locator of every bad byte, a Chien search finds the
+     * bad bytes, and Forney's formula gives the value to add to each of them
+     * @param block, array holding the block
+     * @param offset, index of the first byte of the block
+     * @param length, number of bytes in the block, data and parity
+     * @param erasures, indices in the block of bytes that are known to be bad
+     * @param erasureCount, number of erasures at the start of the array to use
+     * @return the number of bytes that were corrected, or -1 if the block has more errors than can be corrected, in
+     * which case the block may have been partly changed
+     */
+    public int decodeBlock(byte[] block, int offset, int length, int[] erasures, int erasureCount) {
+        if(length <= paritySymbols || length > BLOCK_BYTES) {
+            throw new IllegalArgumentException("a block must have from " + (paritySymbols + 1) + " to " + BLOCK_BYTES
+                    + " bytes, not " + length);
+        } else if(erasureCount > paritySymbols) {
+            return -1;
+        }
+
+        // a block is clean if its parity bytes are the ones its data would be encoded with, which is much cheaper to
+        // check than the syndromes
+        byte[] parity = new byte[paritySymbols];
+        int dataLength = length - paritySymbols;
+        computeParity(block, offset, dataLength, parity, 0);
+        if(Arrays.equals(parity, 0, paritySymbols, block, offset + dataLength, offset + length)) {
+            return 0;
+        }
+
+        int[] syndromes = syndromes(block, offset, length);
+
+        // byte i of the block is the coefficient of x^(length-1-i), so its locator is alpha^(length-1-i)
+        int[] locator = new int[paritySymbols + 1];
+        locator[0] = 1;
+        for(int i = 0; i < erasureCount; ++i) {
+            if(erasures[i] < 0 || erasures[i] >= length) {
+                throw new IllegalArgumentException("erasure " + erasures[i] + " is not in the block");
+            }
+            multiplyByRoot(locator, field.getElementBits(length - 1 - erasures[i]));
+        }
+
+        int degree = findErrataLocator(syndromes, locator, erasureCount);
+        if(degree == -1) {
+            return -1;
+        }
+
+        int[] positions = findPositions(locator, degree, length);
+        if(positions == null) {
+            return -1;
+        }
+
+        // Omega(x) = S(x)*Lambda(x) mod x^2t, the error evaluator
+        int[] evaluator = new int[paritySymbols];
+        for(int i = 0; i < paritySymbols; ++i) {
+            for(int j = 0; j <= Math.min(i, degree); ++j) {
+                evaluator[i] ^= multiply(locator[j], syndromes[i - j + 1]);
+            }
+        }
+
+        // Forney's formula, e = Omega(X^-1) / Lambda'(X^-1), and in characteristic 2 the derivative keeps odd terms
+        for(int position : positions) {
+            int inverse = field.getElementBits((field.getOrder() - (length - 1 - position)) % field.getOrder());
+            int numerator = evaluate(evaluator, evaluator.length - 1, inverse);
+            int denominator = 0;
+            int inverseSquared = multiply(inverse, inverse);
+            int power = 1;
+            for(int k = 1; k <= degree; k += 2) {
+                denominator ^= multiply(locator[k], power);
+                power = multiply(power, inverseSquared);
+            }
+
+            if(denominator == 0) {
+                return -1;
+            }
+            block[offset + position] ^= (byte) field.divideElements(numerator, denominator);
+        }
+
+        return positions.length;
+    }
+
+    /**
+     * compute the syndromes S_1 ... S_2t of a block, each one is the block evaluated at a root of the generator
+     * @param block, array holding the block
+     * @param offset, index of the first byte of the block
+     * @param length, number of bytes in the block
+     * @return the syndromes, S_j at index j and index 0 unused
+     */
+    private int[] syndromes(byte[] block, int offset, int length) {
+        int[] syndromes = new int[paritySymbols + 1];
+        for(int j = 1; j <= paritySymbols; ++j) {
+            syndromes[j] = field.evaluate(block, offset, length, field.getElementBits(j));
+        }
+
+        return syndromes;
+    }
+
+    /**
+     * find the errata locator (errors and erasures together) with the Berlekamp-Massey algorithm
+     * Starting from the erasure locator with the length already set to the number of erasures means the algorithm
+     * only has to find the errors, using the syndromes that the erasures have not used up
+     * @param syndromes, the syndromes S_1 ... S_2t at indices 1 ... 2t
+     * @param locator, the erasure locator, which is replaced by the errata locator
+     * @param erasureCount, number of erasures, which is the degree of the erasure locator
+     * @return the degree of the errata locator, or -1 if there are too many errors to correct
+     */
+    private int findErrataLocator(int[] syndromes, int[] locator, int erasureCount) {
+        int[] previous = locator.clone(); // connection polynomial before the last length change, B
+        int degree = erasureCount; // length of the current LFSR, L
+        int shift = 1; // steps since the last length change, m
+        int previousDiscrepancy = 1; // discrepancy at the last length change, b
+
+        for(int n = erasureCount; n < paritySymbols; ++n) {
+            // discrepancy between the next syndrome and what the current LFSR predicts
+            int discrepancy = 0;
+            for(int i = 0; i <= Math.min(degree, n); ++i) {
+                discrepancy ^= multiply(locator[i], syndromes[n + 1 - i]);
+            }
+
+            if(discrepancy == 0) {
+                ++shift;
+                continue;
+            }
+
+            // Lambda(x) -= (d/b) x^m B(x), and the LFSR gets longer if it was too short to explain the syndromes
+            int scale = field.divideElements(discrepancy, previousDiscrepancy);
+            int[] old = 2 * degree <= n + erasureCount ? locator.clone() : null;
+            for(int i = 0; i + shift < locator.length; ++i) {
+                locator[i + shift] ^= multiply(scale, previous[i]);
+            }
+
+            if(old != null) {
+                degree = n + 1 + erasureCount - degree;
+                previous = old;
+                previousDiscrepancy = discrepancy;
+                shift = 1;
+            } else {
+                ++shift;
+            }
+        }
+
+        // every error uses up two syndromes and every erasure one
+        if(2 * (degree - erasureCount) + erasureCount > paritySymbols) {
+            return -1;
+        }
+
+        return degree;
+    }
+
+    /**
+     * find the bad bytes with a Chien search, which tries every byte by evaluating the errata locator at the inverse
+     * of its locator. Each term lambda_k*X^-k is kept as an exponent, so moving to the next byte is an addition
+     * @param locator, the errata locator
+     * @param degree, degree of the errata locator
+     * @param length, number of bytes in the block
+     * @return the indices in the block of the bad bytes, or null if the locator does not have as many roots inside the
+     * block as its degree
+     */
+    private int[] findPositions(int[] locator, int degree, int length) {
+        int order = field.getOrder();
+        int[] exponents = new int[degree + 1];
+        for(int k = 1; k <= degree; ++k) {
+            exponents[k] = field.getExponent(locator[k]);
+        }
+
+        // the exponent of a byte's locator is length-1-i, so the search runs from the last byte to the first
+        int[] positions = new int[degree];
+        int found = 0;
+        for(int e = 0; e < length && found < degree; ++e) {
+            int value = locator[0];
+            for(int k = 1; k <= degree; ++k) {
+                if(exponents[k] != -1) {
+                    value ^= field.getElementBits(exponents[k]);
+
+                    // multiply the term by alpha^-k for the next byte
+                    exponents[k] -= k;
+                    if(exponents[k] < 0) {
+                        exponents[k] += order;
+                    }
+                }
+            }
+
+            if(value == 0) {
+                positions[found++] = length - 1 - e;
+            }
+        }
+
+        return found == degree ? positions : null;
+    }
+
+    /**
+     * multiply a polynomial in place by (1 + root*x)
+     * @param poly, the polynomial, coefficient of x^i at index i, with room for the extra term
+     * @param root, the root to multiply by
+     */
+    private void multiplyByRoot(int[] poly, int root) {
+        for(int i = poly.length - 1; i > 0; --i) {
+            poly[i] ^= multiply(root, poly[i - 1]);
+        }
+    }
+
+    /**
+     * evaluate a polynomial with Horner's rule
+     * @param poly, the polynomial, coefficient of x^i at index i
+     * @param degree, degree of the polynomial
+     * @param x, the point to evaluate at
+     * @return the value of the polynomial at x
+     */
+    private int evaluate(int[] poly, int degree, int x) {
+        int value = 0;
+        for(int i = degree; i >= 0; --i) {
+            value = multiply(value, x) ^ poly[i];
+        }
+
+        return value;
+    }
+
+    /**
+     * multiply two bytes as field elements
+     * @param a, the first element
+     * @param b, the second element
+     * @return the product
+     */
+    private int multiply(int a, int b) {
+        return multiplyTable[(a << 8) | b] & 0xFF;
+    }
+
+    /**
+     * build the table of products of every pair of bytes
+     * @return the multiply table, entry (a << 8) | b is a*b
+     */
+    private byte[] createMultiplyTable() {
+        byte[] table = new byte[256 * 256];
+        for(int a = 1; a < 256; ++a) {
+            for(int b = 1; b < 256; ++b) {
+                table[(a << 8) | b] = (byte) field.multiplyElements(a, b);
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * build the table of multiples of the generator used by the shift register
+     * @param generator, the generator without its leading one, coefficient of x^i at index i
+     * @return the feedback table, byte j of row f is f times the coefficient of x^(2t-1-j), and the bytes past 2t in
+     * the last long of a row are zero
+     */
+    private long[] createFeedbackTable(int[] generator) {
+        long[] table = new long[256 * registerWords];
+        for(int f = 0; f < 256; ++f) {
+            for(int j = 0; j < paritySymbols; ++j) {
+                long product = multiply(f, generator[paritySymbols - 1 - j]);
+                table[f * registerWords + (j >>> 3)] |= product << (56 - 8 * (j & 7));
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * build the generator polynomial, the product of (x + alpha^j) for j from 1 to 2t
+     * @return the generator without its leading one, coefficient of x^i at index i
+     */
+    private int[] createGenerator() {
+        int[] poly = new int[paritySymbols + 1];
+        poly[0] = 1;
+        for(int j = 1; j <= paritySymbols; ++j) {
+            // multiply by (x + alpha^j), shifting up for the x and adding alpha^j times the old coefficients
+            int root = field.getElementBits(j);
+            for(int i = j; i > 0; --i) {
+                poly[i] = poly[i - 1] ^ multiply(poly[i], root);
+            }
+            poly[0] = multiply(poly[0], root);
+        }
+
+        return Arrays.copyOf(poly, paritySymbols);
+    }
+}
@@ -0,0 +1,158 @@
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * Class that holds an RSA key pair, along with the values needed to decrypt using the Chinese remainder theorem
+ * The key follows the same rules that are described in Encrypter
+ * 1. N=P*Q where P and Q are distinct primes
+ * 2. gcd(E, (P-1)*(Q-1))=1 and 1<E<(P-1)*(Q-1)
+ * 3. E*D mod (P-1)*(Q-1)=1
+ */
+public class RsaKey {
+    private static final BigInteger DEFAULT_E = BigInteger.valueOf(65537);
+
+    private final BigInteger n; // modulus N = P*Q
+    private final BigInteger e; // public (encryption) exponent
+    private final BigInteger d; // private (decryption) exponent
+    private final BigInteger p; // first prime factor of N
+    private final BigInteger q; // second prime factor of N
+    private final BigInteger dP; // D mod (P-1), the decryption exponent for the residue mod P
+    private final BigInteger dQ; // D mod (Q-1), the decryption exponent for the residue mod Q
+    private final BigInteger qInv; // Q^-1 mod P, used to put the two residues back together
+
+    /**
+     * constructor for an RSA key, the remaining values are derived from the two primes and the public exponent
+     * @param p, first prime factor of the modulus
+     * @param q, second prime factor of the modulus, must be different from p
+     * @param e, public exponent, must be relatively prime to (p-1)*(q-1)
+     */
+    public RsaKey(BigInteger p, BigInteger q, BigInteger e) {
+        BigInteger phi = p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE));
+        if(p.equals(q)) {
+            throw new IllegalArgumentException("P and Q must be distinct primes");
+        } else if(e.compareTo(BigInteger.ONE) <= 0 || e.compareTo(phi) >= 0 || !e.gcd(phi).equals(BigInteger.ONE)) {
+            throw new IllegalArgumentException("E must be relatively prime to and less than (P-1)*(Q-1)");
+        }
+
+        this.p = p;
+        this.q = q;
+        this.e = e;
+        n = p.multiply(q);
+        d = e.modInverse(phi);
+        dP = d.mod(p.subtract(BigInteger.ONE));
+        dQ = d.mod(q.subtract(BigInteger.ONE));
+        qInv = q.modInverse(p);
+    }
+
+    /**
+     * generate a new random key whose modulus has exactly the given number of bits
+     * @param bits, size of the modulus, such as 2048, 3072 or 4096
+     * @param random, source of randomness for the primes
+     * @return the generated key, using 65537 as the public exponent
+     */
+    public static RsaKey generate(int bits, SecureRandom random) {
+        if(bits < 32) {
+            throw new IllegalArgumentException("RSA modulus must have at least 32 bits");
+        }
+
+        // keep picking primes until they are distinct, E is usable with them, and the product has the right size
+        while(true) {
+            BigInteger p = BigInteger.probablePrime(bits - bits / 2, random);
+            BigInteger q = BigInteger.probablePrime(bits / 2, random);
+            BigInteger phi = p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE));
+            if(!p.equals(q) && p.multiply(q).bitLength() == bits && DEFAULT_E.gcd(phi).equals(BigInteger.ONE)
+                    && DEFAULT_E.compareTo(phi) < 0) {
+                return new RsaKey(p, q, DEFAULT_E);
+            }
+        }
+    }
+
+    /**
+     * get the modulus of the key
+     * @return N
+     */
+    public BigInteger getModulus() {
+        return n;
+    }
+
+    /**
+     * get the public exponent of the key
+     * @return E
+     */
+    public BigInteger getPublicExponent() {
+        return e;
+    }
+
+    /**
+     * get the private exponent of the key
+     * @return D
+     */
+    public BigInteger getPrivateExponent() {
+        return d;
+    }
+
+    /**
+     * get the first prime factor of the modulus
+     * @return P
+     */
+    public BigInteger getPrimeP() {
+        return p;
+    }
+
+    /**
+     * get the second prime factor of the modulus
+     * @return Q
+     */
+    public BigInteger getPrimeQ() {
+        return q;
+    }
+
+    /**
+     * get the decryption exponent for residues mod P
+     * @return D mod (P-1)
+     */
+    public BigInteger getExponentP() {
+        return dP;
+    }
+
+    /**
+     * get the decryption exponent for residues mod Q
+     * @return D mod (Q-1)
+     */
+    public BigInteger getExponentQ() {
+        return dQ;
+    }
+
+    /**
+     * get the coefficient used to combine the residues mod P and mod Q
+     * @return Q^-1 mod P
+     */
+    public BigInteger getCoefficient() {
+        return qInv;
+    }
+
+    /**
+     * encrypt a number with the public exponent
+     * @param num, number to be encrypted, must be less than N
+     * @return num^E mod N
+     */
+    public BigInteger encrypt(BigInteger num) {
+        return num.modPow(e, n);
+    }
+
+    /**
+     * decrypt a number with the private exponent using the Chinese remainder theorem
+     * Instead of one exponentiation mod N, do two with half sized numbers mod P and mod Q, then combine them.
+     * Since the cost of an exponentiation grows with the cube of the size, this is about four times faster
+     * @param num, number to be decrypted, must be less than N
+     * @return num^D mod N
+     */
+    public BigInteger decrypt(BigInteger num) {
+        BigInteger mP = num.mod(p).modPow(dP, p);
+        BigInteger mQ = num.mod(q).modPow(dQ, q);
+
+        // Garner's formula, the result is mQ + Q*h where h = (mP-mQ)*Q^-1 mod P
+        BigInteger h = mP.subtract(mQ).multiply(qInv).mod(p);
+        return mQ.add(h.multiply(q));
+    }
+}
@@ -0,0 +1,202 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Class that maps the characters of a message to symbols (small integers) that can be encrypted, and back again
+ * Characters are looked up in a table indexed directly by the character, so mapping costs a single array load.
+ * The byte alphabet instead works on the UTF-8 bytes of a message, so any text (or binary data) can be sent
+ */
+public class SymbolAlphabet {
+    /**
+     * the original alphabet of all lowercase and uppercase letters, numbers, the space, and the set {'.', ',', '?', '!'}
+     */
+    public static final SymbolAlphabet DEFAULT = new SymbolAlphabet(createDefaultSymbols());
+
+    /**
+     * the alphabet of all 256 byte values, messages are converted to and from UTF-8
+     */
+    public static final SymbolAlphabet BYTES = new SymbolAlphabet();
+
+    private final char[] symbols; // character for each symbol, null for the byte alphabet
+    private final int[] indices; // symbol for each character (indexed by the character itself), -1 if it has none
+
+    /**
+     * constructor for an alphabet of characters
+     * @param symbols, the characters of the alphabet, each character's index is its symbol
+     */
+    public SymbolAlphabet(char[] symbols) {
+        if(symbols.length == 0) {
+            throw new IllegalArgumentException("alphabet must have at least one character");
+        }
+
+        char max = 0;
+        for(char ch : symbols) {
+            max = (char) Math.max(max, ch);
+        }
+
+        this.symbols = symbols.clone();
+        indices = new int[max + 1];
+        Arrays.fill(indices, -1);
+        for(int i = 0; i < symbols.length; ++i) {
+            if(indices[symbols[i]] != -1) {
+                throw new IllegalArgumentException("alphabet has '" + symbols[i] + "' more than once");
+            }
+            indices[symbols[i]] = i;
+        }
+    }
+
+    /**
+     * constructor for the byte alphabet
+     */
+    private SymbolAlphabet() {
+        symbols = null;
+        indices = null;
+    }
+
+    /**
+     * create the characters of the default alphabet
+     * @return the characters, the indices are the associated symbols
+     */
+    private static char[] createDefaultSymbols() {
+        char[] chars = new char[67];
+
+        // add all lowercase letters in spots 0-25 and all uppercase letters in spots 26-51
+        int index = 0;
+        for(char ch = 'a'; ch <= 'z'; ++ch) {
+            chars[index] = ch;
+            chars[index + 26] = Character.toUpperCase(ch);
+            ++index;
+        }
+
+        // add all number characters in spots 52-61
+        index = 52;
+        for(char i = '0'; i <= '9'; ++i) {
+            chars[index] = i;
+            ++index;
+        }
+
+        // add the punctuation and space characters in spots 62-66
+        chars[62] = ' ';
+        chars[63] = '.';
+        chars[64] = ',';
+        chars[65] = '?';
+        chars[66] = '!';
+
+        return chars;
+    }
+
+    /**
+     * get the number of symbols in the alphabet
+     * @return the number of symbols, symbols range from 0 to size-1
+     */
+    public int size() {
+        return symbols == null ? 256 : symbols.length;
+    }
+
+    /**
+     * check whether this is the byte alphabet
+     * @return true if symbols are the UTF-8 bytes of a message
+     */
+    public boolean isBytes() {
+        return symbols == null;
+    }
+
+    /**
+     * get the symbol for a character
+     * @param ch, character to look up
+     * @return the symbol for the character, or -1 if it is not in the alphabet
+     * @throws IllegalStateException if this is the byte alphabet, whose symbols are bytes instead of characters
+     */
+    public int indexOf(char ch) {
+        if(isBytes()) {
+            throw new IllegalStateException("the byte alphabet has no characters, messages go through toSymbols");
+        }
+
+        return ch < indices.length ? indices[ch] : -1;
+    }
+
+    /**
+     * get the character for a symbol
+     * @param symbol, symbol to look up
+     * @return the character for the symbol
+     * @throws IllegalStateException if this is the byte alphabet, whose symbols are bytes instead of characters
+     */
+    public char charAt(int symbol) {
+        if(isBytes()) {
+            throw new IllegalStateException("the byte alphabet has no characters, symbols go through fromSymbols");
+        }
+
+        return symbols[symbol];
+    }
+
+    /**
+     * convert a message into symbols
+     * @param message, message to convert
+     * @return the symbols of the message
+     * @throws IllegalArgumentException if the message has a character that is not in the alphabet
+     */
+    public int[] toSymbols(String message) {
+        if(isBytes()) {
+            return toSymbols(message.getBytes(StandardCharsets.UTF_8));
+        }
+
+        int[] result = new int[message.length()];
+        for(int i = 0; i < result.length; ++i) {
+            result[i] = indexOf(message.charAt(i));
+            if(result[i] == -1) {
+                throw new IllegalArgumentException("character '" + message.charAt(i) + "' at position " + i
+                        + " is not in the alphabet");
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * convert raw bytes into symbols of the byte alphabet
+     * @param data, bytes to convert
+     * @return the symbols, each is the unsigned value of a byte
+     */
+    public static int[] toSymbols(byte[] data) {
+        int[] result = new int[data.length];
+        for(int i = 0; i < data.length; ++i) {
+            result[i] = data[i] & 0xFF;
+        }
+
+        return result;
+    }
+
+    /**
+     * convert symbols back into a message
+     * @param symbolArray, the symbols, which must all be less than size()
+     * @param count, number of symbols at the start of the array to convert
+     * @return the message
+     */
+    public String fromSymbols(int[] symbolArray, int count) {
+        if(isBytes()) {
+            return new String(toBytes(symbolArray, count), StandardCharsets.UTF_8);
+        }
+
+        char[] chars = new char[count];
+        for(int i = 0; i < count; ++i) {
+            chars[i] = symbols[symbolArray[i]];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * convert symbols of the byte alphabet back into raw bytes
+     * @param symbolArray, the symbols, which must all be less than 256
+     * @param count, number of symbols at the start of the array to convert
+     * @return the bytes
+     */
+    public static byte[] toBytes(int[] symbolArray, int count) {
+        byte[] result = new byte[count];
+        for(int i = 0; i < count; ++i) {
+            result[i] = (byte) symbolArray[i];
+        }
+
+        return result;
+    }
+}
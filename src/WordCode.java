@@ -0,0 +1,19 @@
+/**
+ * Interface for codes that add parity bits to words of a fixed width, so that one code can be swapped for another
+ * The header of a packed message that a code has encoded holds the code's number of parity bits (see PackedWords)
+ */
+public interface WordCode {
+    int getParityBits();
+
+    int getMaxErrors();
+
+    int getLength();
+
+    byte[] encode(byte[] packed);
+
+    long encodeWord(long word);
+
+    byte[] decode(byte[] packed);
+
+    long decodeWord(long codeword, int length);
+}
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the adaptive encoder moves along its ladder of codes with the observed error rate, and decodes each
+ * message with the code its header names
+ */
+class AdaptiveEncoderTest {
+    private static final int WORD_WIDTH = 19;
+    private static final long WINDOW_BITS = 100_000_000;
+    private static final double TARGET = 1e-6;
+
+    // with 25 bit codewords the Hamming code's word error rate is about 300*BER^2, which is under the target but not
+    // under a tenth of it here, so the Hamming code is kept once it is used but not moved back down to
+    private static final long BETWEEN_ERRORS = 3500;
+
+    private final Encoder hamming = Encoder.forGenerator("1000011");
+    private final BchCode bch5 = new BchCode("1000011", 5);
+    private final BchCode bch7 = new BchCode("1000011", 7);
+    private AdaptiveEncoder encoder;
+
+    @BeforeEach
+    void makeEncoder() {
+        encoder = new AdaptiveEncoder(new WordCode[] {bch7, hamming, bch5}, WORD_WIDTH, WINDOW_BITS, TARGET);
+    }
+
+    @Test
+    void theStrongestCodeIsUsedUntilTheWindowFills() {
+        assertSame(bch7, encoder.getCode());
+        encoder.observe(WINDOW_BITS / 2, 0);
+        assertSame(bch7, encoder.getCode());
+        encoder.observe(WINDOW_BITS / 2, 0);
+        assertSame(hamming, encoder.getCode());
+    }
+
+    @Test
+    void theLadderStepsUpAndDownWithTheErrorRate() {
+        encoder.observe(WINDOW_BITS, 0);
+        assertSame(hamming, encoder.getCode());
+
+        // each window replaces the one before, so the estimate is just the latest rate
+        encoder.observe(WINDOW_BITS, 100_000);
+        assertSame(bch7, encoder.getCode());
+        encoder.observe(WINDOW_BITS, 5_000);
+        assertSame(bch5, encoder.getCode());
+        assertEquals(5e-5, encoder.getBitErrorRate(), 1e-12);
+        encoder.observe(WINDOW_BITS, 0);
+        assertSame(hamming, encoder.getCode());
+    }
+
+    @Test
+    void weakerCodesNeedAMarginBeforeTheyAreUsed() {
+        encoder.observe(WINDOW_BITS, 0);
+        encoder.observe(WINDOW_BITS, BETWEEN_ERRORS);
+        assertSame(hamming, encoder.getCode(), "the Hamming code is still good enough, so it is kept");
+
+        encoder.observe(WINDOW_BITS, 100_000);
+        encoder.observe(WINDOW_BITS, BETWEEN_ERRORS);
+        assertSame(bch5, encoder.getCode(), "the same rate is not far enough under the target to step down to it");
+    }
+
+    @Test
+    void decodeUsesTheCodeNamedByTheHeader() {
+        byte[] packed = new Encrypter().encryptPacked("Hello, World! How are you today?");
+        SplittableRandom random = new SplittableRandom(1);
+        for(WordCode code : new WordCode[] {hamming, bch5, bch7}) {
+            byte[] encoded = code.encode(packed);
+            TestMessages.corruptWords(encoded, code.getMaxErrors(), random);
+            assertArrayEquals(packed, encoder.decode(encoded));
+        }
+
+        assertSame(bch5, encoder.getCode(12));
+        assertEquals(null, encoder.getCode(7));
+        byte[] unknown = Encoder.forGenerator("10000011").encode(packed);
+        assertThrows(IllegalArgumentException.class, () -> encoder.decode(unknown));
+    }
+
+    @Test
+    void decodeIsRecordedInTheMetrics() {
+        PipelineMetrics metrics = PipelineMetrics.get();
+        byte[] packed = new Encrypter().encryptPacked("Hello");
+        byte[] encoded = bch5.encode(packed);
+        TestMessages.flip(encoded, 0, 1L << 20);
+        TestMessages.flip(encoded, 1, 1L << 20 | 1L << 25);
+
+        long calls = metrics.getCalls("DECODE");
+        long words = metrics.getWordsDecoded();
+        long corrected = metrics.getWordsCorrected();
+        assertArrayEquals(packed, encoder.decode(encoded));
+        assertEquals(calls + 1, metrics.getCalls("DECODE"));
+        assertEquals(words + 5, metrics.getWordsDecoded());
+        assertEquals(corrected + 2, metrics.getWordsCorrected());
+    }
+}
@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that files go through the batch processor and back, and that files it did not make are refused
+ */
+class BatchProcessorTest {
+    private final Encrypter encrypter = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true);
+    private final Encoder encoder = Encoder.forGenerator("10000011");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void filesBiggerThanAChunkComeBack() throws IOException {
+        // a few chunks of a megabyte, with a short block at the end
+        byte[] data = TestMessages.randomBytes(3 * (1 << 20) + 12345, new SplittableRandom(1));
+        assertArrayEquals(data, roundTrip(new BatchProcessor(encrypter, encoder), data));
+    }
+
+    @Test
+    void otherCodesCanBeUsed() throws IOException {
+        byte[] data = TestMessages.randomBytes(10000, new SplittableRandom(2));
+        assertArrayEquals(data, roundTrip(new BatchProcessor(encrypter, new BchCode("1000011", 5)), data));
+    }
+
+    @Test
+    void emptyFilesStayEmpty() throws IOException {
+        assertArrayEquals(new byte[0], roundTrip(new BatchProcessor(encrypter, encoder), new byte[0]));
+    }
+
+    @Test
+    void encodedFilesMatchTheSeparateStages() throws IOException {
+        byte[] data = TestMessages.randomBytes(5000, new SplittableRandom(3));
+        Path input = write("data", data);
+        Path encoded = directory.resolve("encoded");
+        long written = new BatchProcessor(encrypter, encoder).encryptAndEncode(input, encoded);
+
+        byte[] expected = encoder.encode(encrypter.encryptBytes(data));
+        assertEquals(expected.length, written);
+        assertArrayEquals(expected, Files.readAllBytes(encoded));
+    }
+
+    @Test
+    void truncatedFilesAreRefused() throws IOException {
+        BatchProcessor processor = new BatchProcessor(encrypter, encoder);
+        byte[] data = TestMessages.randomBytes(1000, new SplittableRandom(4));
+        byte[] encoded = encoder.encode(encrypter.encryptBytes(data));
+        for(int length : new int[] {3, PackedWords.HEADER_BYTES + 1, encoded.length - 1}) {
+            Path input = write("truncated", Arrays.copyOf(encoded, length));
+            assertThrows(IOException.class, () -> processor.decodeAndDecrypt(input, directory.resolve("out")));
+        }
+    }
+
+    @Test
+    void filesWithTheWrongHeaderAreRefused() throws IOException {
+        BatchProcessor processor = new BatchProcessor(encrypter, encoder);
+        byte[] data = TestMessages.randomBytes(1000, new SplittableRandom(5));
+
+        // made with another code, so the words are a different width
+        Path other = write("other", Encoder.forGenerator("1000011").encode(encrypter.encryptBytes(data)));
+        assertThrows(IOException.class, () -> processor.decodeAndDecrypt(other, directory.resolve("out")));
+
+        // headers that no packed message has, including a huge count that must not be reserved
+        byte[] encoded = encoder.encode(encrypter.encryptBytes(data));
+        byte[][] headers = {{0, 0, 0, 0, 0, 1}, {30, 20, 0, 0, 0, 1}, {7, 64, 0, 0, 0, 1},
+                {encoded[0], encoded[1], (byte) 0x80, 0, 0, 0}, {encoded[0], encoded[1], 0x7F, 0, 0, 0}};
+        for(byte[] header : headers) {
+            byte[] bad = encoded.clone();
+            System.arraycopy(header, 0, bad, 0, header.length);
+            Path input = write("bad", bad);
+            assertThrows(IOException.class, () -> processor.decodeAndDecrypt(input, directory.resolve("out")),
+                    Arrays.toString(header));
+        }
+    }
+
+    /**
+     * send data through a processor and receive it again, both through files
+     * @param processor, the processor
+     * @param data, the data
+     * @return the received data
+     * @throws IOException if a file cannot be used
+     */
+    private byte[] roundTrip(BatchProcessor processor, byte[] data) throws IOException {
+        Path encoded = directory.resolve("encoded");
+        Path decoded = directory.resolve("decoded");
+        processor.encryptAndEncode(write("data", data), encoded);
+        assertEquals(data.length, processor.decodeAndDecrypt(encoded, decoded));
+        return Files.readAllBytes(decoded);
+    }
+
+    /**
+     * write a file in the temporary directory
+     * @param name, name of the file
+     * @param bytes, contents of the file
+     * @return the path of the file
+     * @throws IOException if the file cannot be written
+     */
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(directory.resolve(name), bytes);
+    }
+}
@@ -0,0 +1,54 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Tests of the BCH code, round trips and up to t bit errors in each word, for full and shortened codewords
+ */
+class BchCodeTest {
+    private static final int TRIALS = 2000;
+
+    @ParameterizedTest
+    @CsvSource({"10011, 5", "1000011, 5", "1000011, 7", "1000011, 11", "10001001, 9"})
+    void correctsUpToMaxErrors(String generator, int designedDistance) {
+        BchCode code = new BchCode(generator, designedDistance);
+        int length = code.getLength();
+        int dataBits = length - code.getParityBits();
+        SplittableRandom random = new SplittableRandom(designedDistance);
+        for(int i = 0; i < TRIALS; ++i) {
+            long word = random.nextLong() & ((1L << dataBits) - 1);
+            long codeword = code.encodeWord(word);
+            assertEquals(0, codeword & ~((1L << length) - 1));
+            for(int errors = 0; errors <= code.getMaxErrors(); ++errors) {
+                long received = codeword ^ TestMessages.pattern(errors, length, random);
+                assertEquals(word, code.decodeWord(received, length), errors + " errors in " + received);
+            }
+        }
+    }
+
+    @Test
+    void shortenedCodewordsAreCorrected() {
+        // 19 bit limbs and 18 parity bits of the code with d=7 make a 37 bit codeword out of a 63 bit code
+        BchCode code = new BchCode("1000011", 7);
+        byte[] packed = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true)
+                .encryptBytes("a message long enough to fill a few blocks".getBytes(StandardCharsets.UTF_8));
+        byte[] encoded = code.encode(packed);
+        assertEquals(PackedWords.getWidth(packed) + code.getParityBits(), PackedWords.getWidth(encoded));
+
+        TestMessages.corruptWords(encoded, code.getMaxErrors(), new SplittableRandom(4));
+        assertArrayEquals(packed, code.decode(encoded));
+    }
+
+    @Test
+    void badDesignedDistancesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BchCode("1000011", 2));
+        assertThrows(IllegalArgumentException.class, () -> new BchCode("1000011", 64));
+        assertThrows(IllegalArgumentException.class, () -> new BchCode("1011", 8));
+    }
+}
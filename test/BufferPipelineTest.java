@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Tests that the buffer pipeline gives the same bytes as the separate stages, in both directions and with errors
+ */
+class BufferPipelineTest {
+    static Stream<Arguments> pipelines() {
+        Encrypter toy = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true);
+        Encrypter real = new Encrypter(RsaKey.generate(1024, new SecureRandom()), SymbolAlphabet.BYTES, true);
+        return Stream.of(Arguments.of(toy, Encoder.forGenerator("10000011")),
+                Arguments.of(toy, new BchCode("1000011", 7)),
+                Arguments.of(real, Encoder.forGenerator("10000011")),
+                Arguments.of(real, new BchCode("1000011", 5)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("pipelines")
+    void encodesLikeTheSeparateStages(Encrypter encrypter, WordCode encoder) {
+        BufferPipeline pipeline = new BufferPipeline(encrypter, encoder);
+        SplittableRandom random = new SplittableRandom(12);
+        for(int length : new int[] {0, 1, 2, 3, 100, 10000}) {
+            byte[] data = TestMessages.randomBytes(length, random);
+            byte[] expected = encoder.encode(encrypter.encryptBytes(data));
+
+            // a direct destination with something in front of the message, which has to be left alone
+            ByteBuffer out = ByteBuffer.allocateDirect(expected.length + 10);
+            out.position(3);
+            ByteBuffer source = ByteBuffer.wrap(data);
+            assertEquals(expected.length, pipeline.encryptAndEncode(source, out));
+            assertEquals(0, source.remaining());
+            assertEquals(expected.length + 3, out.position());
+            assertEquals(expected.length, pipeline.getEncodedSize(length));
+            byte[] written = new byte[expected.length];
+            out.get(3, written);
+            assertArrayEquals(expected, written);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("pipelines")
+    void decodesLikeTheSeparateStages(Encrypter encrypter, WordCode encoder) {
+        BufferPipeline pipeline = new BufferPipeline(encrypter, encoder);
+        SplittableRandom random = new SplittableRandom(13);
+        byte[] data = TestMessages.randomBytes(5000, random);
+        byte[] encoded = encoder.encode(encrypter.encryptBytes(data));
+        TestMessages.corruptWords(encoded, encoder.getMaxErrors(), random);
+        assertArrayEquals(data, encrypter.decryptBytes(encoder.decode(encoded)));
+
+        ByteBuffer out = ByteBuffer.allocate(data.length);
+        assertEquals(data.length, pipeline.decodeAndDecrypt(ByteBuffer.wrap(encoded), out));
+        assertArrayEquals(data, out.array());
+    }
+
+    @Test
+    void uncorrectableWordsArePassedOnLikeTheSeparateStages() {
+        Encrypter encrypter = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, false);
+        Encoder encoder = Encoder.forGenerator("10000011");
+        BufferPipeline pipeline = new BufferPipeline(encrypter, encoder);
+        SplittableRandom random = new SplittableRandom(14);
+        for(int trial = 0; trial < 200; ++trial) {
+            byte[] encoded = encoder.encode(encrypter.encryptBytes(TestMessages.randomBytes(20, random)));
+            TestMessages.corruptWords(encoded, 3, random);
+
+            byte[] expected;
+            try {
+                expected = encrypter.decryptBytes(encoder.decode(encoded));
+            } catch(IllegalArgumentException ex) {
+                expected = null;
+            }
+            ByteBuffer out = ByteBuffer.allocate(20);
+            if(expected == null) {
+                assertThrows(IllegalArgumentException.class, () -> pipeline.decodeAndDecrypt(ByteBuffer.wrap(encoded),
+                        out));
+            } else {
+                pipeline.decodeAndDecrypt(ByteBuffer.wrap(encoded), out);
+                assertArrayEquals(expected, Arrays.copyOf(out.array(), out.position()));
+            }
+        }
+    }
+
+    @Test
+    void pooledBuffersRoundTrip() {
+        Encrypter encrypter = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true);
+        BufferPool pool = new BufferPool(1 << 16, 2);
+        BufferPipeline pipeline = new BufferPipeline(encrypter, Encoder.forGenerator("10000011"), pool);
+        byte[] data = TestMessages.randomBytes(4000, new SplittableRandom(15));
+
+        ByteBuffer encoded = pipeline.encryptAndEncode(ByteBuffer.wrap(data));
+        ByteBuffer decoded = pipeline.decodeAndDecrypt(encoded);
+        byte[] received = new byte[decoded.remaining()];
+        decoded.get(received);
+        assertArrayEquals(data, received);
+        pool.release(encoded);
+        pool.release(decoded);
+
+        assertThrows(IllegalStateException.class, () -> new BufferPipeline(encrypter, Encoder.forGenerator("10000011"))
+                .encryptAndEncode(ByteBuffer.wrap(data)));
+    }
+}
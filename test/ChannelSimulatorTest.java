@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Tests that simulations are repeatable whatever the number of threads, and that their totals add up
+ */
+class ChannelSimulatorTest {
+    private static final int TRIALS = 1000;
+    private static final int MESSAGE_BYTES = 100;
+
+    private final Encrypter encrypter = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true);
+
+    static Stream<NoisyChannel> channels() {
+        return Stream.of(NoisyChannel.independent(0.005), NoisyChannel.gilbertElliott(0.001, 0.1, 0, 0.5));
+    }
+
+    @ParameterizedTest
+    @MethodSource("channels")
+    void theSameSeedGivesTheSameResultOnAnyNumberOfThreads(NoisyChannel channel) {
+        ChannelSimulator.Result one = simulate(channel, new ForkJoinPool(1), 5);
+        ChannelSimulator.Result many = simulate(channel, new ForkJoinPool(4), 5);
+        ChannelSimulator.Result other = simulate(channel, new ForkJoinPool(4), 6);
+
+        assertEquals(counts(one), counts(many));
+        assertTrue(one.getChannelErrors() != other.getChannelErrors() || one.getBitErrors() != other.getBitErrors(),
+                "another seed gives other errors");
+    }
+
+    @ParameterizedTest
+    @MethodSource("channels")
+    void channelErrorsMatchTheChannel(NoisyChannel channel) {
+        ChannelSimulator.Result result = simulate(channel, new ForkJoinPool(4), 7);
+        assertEquals(TRIALS, result.getTrials());
+        assertEquals(channel.getBitErrorRate(), result.getChannelBitErrorRate(), 0.1 * channel.getBitErrorRate());
+
+        // a single error code fixes most isolated flips, but not the bursts or the rarer double errors
+        assertTrue(result.getBitErrors() < result.getChannelErrors());
+        assertTrue(result.getWordErrors() <= result.getWords());
+        assertTrue(result.getUncorrectableWords() <= result.getWordErrors());
+    }
+
+    @Test
+    void aCleanChannelHasNoErrors() {
+        ChannelSimulator.Result result = simulate(NoisyChannel.independent(0), new ForkJoinPool(2), 8);
+        assertEquals(0, result.getChannelErrors());
+        assertEquals(0, result.getWordErrors());
+        assertEquals(0.0, result.getWordErrorRate());
+    }
+
+    @Test
+    void badSettingsAreRejected() {
+        Encoder encoder = Encoder.forGenerator("10000011");
+        NoisyChannel channel = NoisyChannel.independent(0.01);
+        assertThrows(IllegalArgumentException.class, () -> new ChannelSimulator(new Encrypter(), encoder, channel, 1));
+        assertThrows(IllegalArgumentException.class, () -> new ChannelSimulator(encrypter, encoder, channel, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ChannelSimulator(encrypter, encoder, channel, MESSAGE_BYTES).run(0, 1));
+    }
+
+    /**
+     * run a simulation with the usual generator and then shut its pool down
+     * @param channel, the channel
+     * @param pool, pool to run the trials on
+     * @param seed, the seed
+     * @return the result
+     */
+    private ChannelSimulator.Result simulate(NoisyChannel channel, ForkJoinPool pool, long seed) {
+        try {
+            return new ChannelSimulator(encrypter, Encoder.forGenerator("10000011"), channel, MESSAGE_BYTES, pool)
+                    .run(TRIALS, seed);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * get every total of a result that does not depend on timing
+     * @param result, the result
+     * @return the totals
+     */
+    private static String counts(ChannelSimulator.Result result) {
+        return result.getTrials() + " " + result.getWords() + " " + result.getChannelErrors() + " "
+                + result.getBitErrors() + " " + result.getWordErrors() + " " + result.getUncorrectableWords();
+    }
+}
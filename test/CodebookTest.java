@@ -0,0 +1,88 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the codebook gives the same results as encrypting and encoding one stage at a time, in the packed and
+ * the text form, with and without errors
+ */
+class CodebookTest {
+    private static final String MESSAGE = "Hello, World! Is this the same as the separate stages? 0123456789.";
+    private static final int TRIALS = 500;
+
+    private final Encrypter encrypter = new Encrypter();
+    private final Encoder encoder = Encoder.forGenerator("10000011");
+
+    @Test
+    void encodesLikeTheSeparateStages() {
+        Codebook codebook = new Codebook(encrypter, encoder);
+        assertArrayEquals(encoder.encode(encrypter.encryptPacked(MESSAGE)), codebook.encode(MESSAGE));
+        assertEquals(encoder.encode(encrypter.encrypt(MESSAGE)), codebook.encodeText(MESSAGE));
+
+        BchCode bch = new BchCode("1000011", 7);
+        assertArrayEquals(bch.encode(encrypter.encryptPacked(MESSAGE)), new Codebook(encrypter, bch).encode(MESSAGE));
+    }
+
+    @Test
+    void decodesPackedMessagesLikeTheSeparateStages() {
+        for(WordCode code : new WordCode[] {encoder, new BchCode("1000011", 5)}) {
+            Codebook codebook = new Codebook(encrypter, code);
+            SplittableRandom random = new SplittableRandom(16);
+            for(int trial = 0; trial < TRIALS; ++trial) {
+                byte[] packed = codebook.encode(MESSAGE);
+                TestMessages.corruptWords(packed, code.getMaxErrors() + 2, random);
+                assertSameResult(() -> encrypter.decrypt(code.decode(packed)), () -> codebook.decode(packed));
+            }
+
+            byte[] packed = codebook.encode(MESSAGE);
+            TestMessages.corruptWords(packed, code.getMaxErrors(), random);
+            assertEquals(MESSAGE, codebook.decode(packed));
+        }
+    }
+
+    @Test
+    void decodesTextLikeTheSeparateStages() {
+        Codebook codebook = new Codebook(encrypter, encoder);
+        SplittableRandom random = new SplittableRandom(17);
+        for(int trial = 0; trial < TRIALS; ++trial) {
+            StringBuilder received = new StringBuilder();
+            for(String word : codebook.encodeText(MESSAGE).split(" ")) {
+                long codeword = Long.parseLong(word, 2) ^ TestMessages.pattern(random.nextInt(4), word.length(),
+                        random);
+                received.append(Long.toBinaryString(codeword)).append(' ');
+            }
+
+            String text = received.toString();
+            assertSameResult(() -> encrypter.decrypt(encoder.decode(text)), () -> codebook.decodeText(text));
+        }
+    }
+
+    @Test
+    void encryptersAndCodesThatDoNotFitAreRejected() {
+        Encrypter blocks = new Encrypter(encrypter.getKey(), true);
+        assertThrows(IllegalArgumentException.class, () -> new Codebook(blocks, encoder));
+
+        // 19 bit limbs do not fit in the 7 bit codewords of the smallest Hamming code
+        assertThrows(IllegalArgumentException.class, () -> new Codebook(encrypter, Encoder.forGenerator("1011")));
+    }
+
+    /**
+     * check that two ways of decoding give the same message, or both reject it
+     * @param expected, decoding one stage at a time
+     * @param actual, decoding with the codebook
+     */
+    private static void assertSameResult(Supplier<String> expected, Supplier<String> actual) {
+        String message;
+        try {
+            message = expected.get();
+        } catch(IllegalArgumentException ex) {
+            assertThrows(IllegalArgumentException.class, actual::get);
+            return;
+        }
+        assertEquals(message, actual.get());
+    }
+}
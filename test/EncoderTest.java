@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests of the cyclic Hamming code, the systematic form of its codewords, round trips and single bit errors
+ */
+class EncoderTest {
+    private static final int TRIALS = 2000;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1011", "10011", "10000011", "10000001001"})
+    void codewordsAreSystematicMultiplesOfTheGenerator(String generator) {
+        Encoder encoder = new Encoder(generator);
+        int parityBits = generator.length() - 1;
+        long poly = Long.parseLong(generator, 2);
+        SplittableRandom random = new SplittableRandom(1);
+        for(int i = 0; i < TRIALS; ++i) {
+            long word = random.nextLong() & ((1L << (63 - parityBits)) - 1);
+            long codeword = encoder.encodeWord(word);
+            assertEquals(word, codeword >>> parityBits);
+            assertEquals(0, remainder(codeword, poly));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1011", "10011", "10000011", "10000001001", "100000000000000001001",
+            "1000000000000000000101", "1000000000000000000000001010011"}) // from degree 21 on there is no error table
+    void correctsSingleBitErrors(String generator) {
+        Encoder encoder = new Encoder(generator);
+        int parityBits = generator.length() - 1;
+        int length = (int) Math.min((1L << parityBits) - 1, 63);
+        SplittableRandom random = new SplittableRandom(2);
+        for(int i = 0; i < TRIALS; ++i) {
+            long word = random.nextLong() & ((1L << (length - parityBits)) - 1);
+            long codeword = encoder.encodeWord(word);
+            assertEquals(word, encoder.decodeWord(codeword, length));
+            assertEquals(word, encoder.decodeWord(codeword ^ (1L << random.nextInt(length)), length));
+        }
+    }
+
+    @Test
+    void errorsPastTheEndOfAShortenedCodewordAreUncorrectable() {
+        // every location below 15 has its own syndrome, but a 10 bit codeword cannot have an error at 12
+        Encoder encoder = new Encoder("10011");
+        long codeword = encoder.encodeWord(0b101101);
+        for(int location = 0; location < 10; ++location) {
+            assertEquals(0b101101, encoder.decodeWord(codeword ^ (1L << location), 10));
+        }
+        assertEquals(-1, encoder.decodeWord(codeword ^ (1L << 12), 10));
+    }
+
+    @Test
+    void generatorsThatAreNotPrimitiveAreRejectedOnFirstDecode() {
+        assertThrows(IllegalArgumentException.class, () -> new Encoder("10001").decodeWord(3, 15));
+        assertThrows(IllegalArgumentException.class, () -> new Encoder("1000000000000000000000").decodeWord(3, 63));
+    }
+
+    @Test
+    void wordsThatDoNotFitAreRejected() {
+        Encoder encoder = new Encoder("10000011");
+        assertThrows(IllegalArgumentException.class, () -> encoder.encodeWord(-1));
+        assertThrows(IllegalArgumentException.class, () -> encoder.encodeWord(1L << 56));
+        assertEquals((1L << 56) - 1, encoder.encodeWord((1L << 56) - 1) >>> 7);
+    }
+
+    @Test
+    void textMessagesRoundTrip() {
+        Encoder encoder = new Encoder("10000011");
+        Encrypter encrypter = new Encrypter();
+        String message = "Hello, World! How are you today?";
+        assertEquals(message, encrypter.decrypt(encoder.decode(encoder.encode(encrypter.encrypt(message)))));
+    }
+
+    @Test
+    void packedMessagesSurviveOneErrorInEachWord() {
+        Encoder encoder = new Encoder("10000011");
+        byte[] packed = new Encrypter().encryptPacked("Hello, World! How are you today?");
+        byte[] encoded = encoder.encode(packed);
+        assertEquals(7, PackedWords.getParityBits(encoded));
+        assertEquals(PackedWords.getWidth(packed) + 7, PackedWords.getWidth(encoded));
+        assertArrayEquals(packed, encoder.decode(encoded));
+
+        TestMessages.corruptWords(encoded, 1, new SplittableRandom(4));
+        assertArrayEquals(packed, encoder.decode(encoded));
+    }
+
+    @Test
+    void textMessagesSurviveOneErrorInEachWord() {
+        Encoder encoder = new Encoder("10000011");
+        Encrypter encrypter = new Encrypter();
+        String message = "Hello, World! How are you today?";
+        SplittableRandom random = new SplittableRandom(3);
+        StringBuilder received = new StringBuilder();
+        for(String word : encoder.encode(encrypter.encrypt(message)).split(" ")) {
+            long codeword = Long.parseLong(word, 2) ^ (1L << random.nextInt(word.length()));
+            received.append(Long.toBinaryString(codeword)).append(' ');
+        }
+
+        assertEquals(message, encrypter.decrypt(encoder.decode(received.toString())));
+    }
+
+    /**
+     * divide a polynomial by the generator one bit at a time
+     * @param dividend, the polynomial, bit i is the coefficient of x^i
+     * @param poly, the generator
+     * @return the remainder
+     */
+    static long remainder(long dividend, long poly) {
+        int degree = 63 - Long.numberOfLeadingZeros(poly);
+        for(int bit = 62; bit >= degree; --bit) {
+            if((dividend & (1L << bit)) != 0) {
+                dividend ^= poly << (bit - degree);
+            }
+        }
+
+        return dividend;
+    }
+}
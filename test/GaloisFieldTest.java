@@ -0,0 +1,228 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests of the field arithmetic against carry-less multiplication reduced by the generator, worked out bit by bit
+ */
+class GaloisFieldTest {
+    private static final int TRIALS = 5000;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"111", "1011", "10011", "100011101", "10000001001"})
+    void logAndAntilogAreInverses(String generator) {
+        GaloisField field = new GaloisField(generator);
+        assertEquals(generator.length() - 1, field.getDegree());
+        assertEquals((1 << field.getDegree()) - 1, field.getOrder());
+        assertEquals(-1, field.getExponent(0));
+        assertEquals(0, field.getElementBits(-1));
+        for(int exp = 0; exp < field.getOrder(); ++exp) {
+            assertEquals(exp, field.getExponent(field.getElementBits(exp)));
+        }
+
+        // alpha is x, so every element is the one before it times x, reduced by the generator
+        int poly = Integer.parseInt(generator, 2);
+        for(int exp = 1; exp < field.getOrder(); ++exp) {
+            assertEquals(multiply(field.getElementBits(exp - 1), 2, poly), field.getElementBits(exp));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1011", "100011101", "10000001001"})
+    void elementArithmeticMatchesPolynomials(String generator) {
+        GaloisField field = new GaloisField(generator);
+        int poly = Integer.parseInt(generator, 2);
+        SplittableRandom random = new SplittableRandom(1);
+        for(int i = 0; i < TRIALS; ++i) {
+            int a = random.nextInt(field.getOrder() + 1);
+            int b = random.nextInt(field.getOrder() + 1);
+            int product = multiply(a, b, poly);
+            assertEquals(product, field.multiplyElements(a, b));
+            if(b != 0) {
+                assertEquals(a, field.divideElements(product, b));
+            }
+
+            // the same operations on exponents, where -1 stands for zero
+            int expA = field.getExponent(a);
+            int expB = field.getExponent(b);
+            assertEquals(a ^ b, field.getElementBits(field.add(expA, expB)));
+            assertEquals(product, field.getElementBits(field.multiply(expA, expB)));
+        }
+
+        assertThrows(ArithmeticException.class, () -> field.divideElements(1, 0));
+    }
+
+    @Test
+    void exponentiateWrapsAroundTheOrder() {
+        GaloisField field = new GaloisField("100011101");
+        int poly = Integer.parseInt("100011101", 2);
+        for(int exp = -1; exp < field.getOrder(); ++exp) {
+            int element = field.getElementBits(exp);
+            int power = 1;
+            for(int pow = 0; pow < 600; ++pow) {
+                assertEquals(pow == 0 && exp == -1 ? 0 : power, field.getElementBits(field.exponentiate(exp, pow)),
+                        "alpha^" + exp + " to the " + pow);
+                power = multiply(power, element, poly);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"10011", "100011101"})
+    void bulkByteOperationsMatchTheIntOperations(String generator) {
+        // surefire adds the module, so the byte operations take their vector paths where the hardware has them
+        assertTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent());
+        GaloisField field = new GaloisField(generator);
+        SplittableRandom random = new SplittableRandom(generator.length());
+        for(int length : new int[] {0, 1, 15, 17, 33, 100, 255, 1003}) {
+            int[] a = randomElements(field, length, random);
+            int[] b = randomElements(field, length, random);
+            int scalar = random.nextInt(field.getOrder() + 1);
+            String message = "length " + length + ", scalar " + scalar;
+
+            byte[] bytes = new byte[length];
+            int[] ints = new int[length];
+            field.addElements(toBytes(a), toBytes(b), bytes, length);
+            field.addElements(a, b, ints, length);
+            assertArrayEquals(toBytes(ints), bytes, message);
+
+            field.scaleElements(scalar, toBytes(a), bytes, length);
+            field.scaleElements(scalar, a, ints, length);
+            assertArrayEquals(toBytes(ints), bytes, message);
+
+            bytes = toBytes(b);
+            ints = b.clone();
+            field.multiplyAccumulate(scalar, toBytes(a), bytes, length);
+            field.multiplyAccumulate(scalar, a, ints, length);
+            assertArrayEquals(toBytes(ints), bytes, message);
+
+            // evaluated from an offset as well, so the vectors do not start on the array's first byte
+            for(int offset = 0; offset <= Math.min(length, 3); ++offset) {
+                assertEquals(field.evaluate(a, offset, length - offset, scalar),
+                        field.evaluate(toBytes(a), offset, length - offset, scalar), message + ", offset " + offset);
+            }
+        }
+    }
+
+    @Test
+    void forGeneratorHandsOutOneFieldPerGenerator() {
+        GaloisField field = GaloisField.forGenerator("100011101");
+        assertSame(field, GaloisField.forGenerator("100011101"));
+        assertSame(field, GaloisField.forGenerator(new String("100011101")));
+        assertEquals(8, field.getDegree());
+        assertSame(Encoder.forGenerator("10000011"), Encoder.forGenerator("10000011"));
+    }
+
+    @Test
+    void forGeneratorHandsOutOneFieldToConcurrentCallers() throws Exception {
+        // a generator that no other test asks for, so that the threads race to build it
+        String generator = "100000000000001001";
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<GaloisField>> fields = new ArrayList<>();
+            for(int i = 0; i < threads; ++i) {
+                Callable<GaloisField> call = () -> {
+                    start.await();
+                    return GaloisField.forGenerator(generator);
+                };
+                fields.add(executor.submit(call));
+            }
+            start.countDown();
+
+            GaloisField field = fields.get(0).get();
+            for(Future<GaloisField> other : fields) {
+                assertSame(field, other.get());
+            }
+            assertEquals(17, field.getDegree());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void fieldsStopAtDegreeTwentyButEncodersDoNot() {
+        String degree21 = "1000000000000000000101";
+        assertThrows(IllegalArgumentException.class, () -> new GaloisField(degree21));
+        assertEquals(20, new GaloisField("100000000000000001001").getDegree());
+        assertEquals(21, new Encoder(degree21).getParityBits());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"10001", "100000001", "1111", "11111"})
+    void generatorsThatAreNotPrimitiveAreRejected(String generator) {
+        assertThrows(IllegalArgumentException.class, () -> new GaloisField(generator));
+        assertThrows(IllegalArgumentException.class, () -> GaloisField.forGenerator(generator));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1", "0111", "10201", "10000000000000000000000000000001001"})
+    void generatorsThatAreMalformedOrTooLongAreRejected(String generator) {
+        assertThrows(IllegalArgumentException.class, () -> new GaloisField(generator));
+        assertThrows(IllegalArgumentException.class, () -> new Encoder(generator));
+    }
+
+    /**
+     * make random elements of a field, zero included
+     * @param field, the field
+     * @param length, number of elements
+     * @param random, source of the elements
+     * @return the elements
+     */
+    private static int[] randomElements(GaloisField field, int length, SplittableRandom random) {
+        return random.ints(length, 0, field.getOrder() + 1).toArray();
+    }
+
+    /**
+     * narrow field elements that fit in a byte to bytes
+     * @param elements, the elements
+     * @return the elements as bytes
+     */
+    private static byte[] toBytes(int[] elements) {
+        byte[] bytes = new byte[elements.length];
+        for(int i = 0; i < elements.length; ++i) {
+            bytes[i] = (byte) elements[i];
+        }
+
+        return bytes;
+    }
+
+    /**
+     * multiply two polynomials over Z2 and reduce the product by the generator, one bit at a time
+     * @param a, the first polynomial, bit i is the coefficient of x^i
+     * @param b, the second polynomial
+     * @param poly, the generator
+     * @return the product mod the generator
+     */
+    private static int multiply(int a, int b, int poly) {
+        int degree = 31 - Integer.numberOfLeadingZeros(poly);
+        long product = 0;
+        for(int bit = 0; bit < 32; ++bit) {
+            if((b & (1 << bit)) != 0) {
+                product ^= (long) a << bit;
+            }
+        }
+        for(int bit = 62; bit >= degree; --bit) {
+            if((product & (1L << bit)) != 0) {
+                product ^= (long) poly << (bit - degree);
+            }
+        }
+
+        return (int) product;
+    }
+}
@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the hybrid scheme, round trips with both kinds of key and through a noisy code, and messages that were
+ * tampered with or laid out wrongly
+ */
+class HybridTest {
+    private static Encrypter toy;
+    private static Encrypter real;
+
+    @BeforeAll
+    static void makeKeys() {
+        toy = new Encrypter();
+        real = new Encrypter(1024);
+    }
+
+    @Test
+    void roundTripsWithBothKeys() {
+        for(int length : new int[] {0, 1, 15, 16, 17, 1000, 65536}) {
+            byte[] data = TestMessages.randomBytes(length, new SplittableRandom(length));
+            assertArrayEquals(data, toy.decryptHybrid(toy.encryptHybrid(data)));
+            assertArrayEquals(data, real.decryptHybrid(real.encryptHybrid(data)));
+        }
+    }
+
+    @Test
+    void roundTripsThroughANoisyCode() {
+        Encoder encoder = new Encoder("10000011");
+        SplittableRandom random = new SplittableRandom(8);
+        byte[] data = TestMessages.randomBytes(5000, random);
+        byte[] encoded = encoder.encode(toy.encryptHybrid(data));
+        TestMessages.corruptWords(encoded, 1, random);
+        assertArrayEquals(data, toy.decryptHybrid(encoder.decode(encoded)));
+    }
+
+    @Test
+    void tamperedDataFailsAuthentication() {
+        byte[] packed = toy.encryptHybrid(TestMessages.randomBytes(100, new SplittableRandom(9)));
+        TestMessages.flip(packed, PackedWords.getCount(packed) - 5, 1L << 7);
+        assertThrows(IllegalArgumentException.class, () -> toy.decryptHybrid(packed));
+    }
+
+    @Test
+    void otherKeysCannotDecrypt() {
+        byte[] packed = toy.encryptHybrid(TestMessages.randomBytes(100, new SplittableRandom(10)));
+        assertThrows(IllegalArgumentException.class, () -> real.decryptHybrid(packed));
+    }
+
+    @Test
+    void lengthsThatDoNotFitAreRejected() {
+        byte[] data = TestMessages.randomBytes(100, new SplittableRandom(11));
+        int wrappedCount = (int) PackedWords.getWord(toy.encryptHybrid(data), 0);
+
+        // a wrapped key that is longer than the message, or has no limbs at all
+        byte[] longKey = toy.encryptHybrid(data);
+        TestMessages.flip(longKey, 0, wrappedCount ^ 0x7FFFFFFFL);
+        assertThrows(IllegalArgumentException.class, () -> toy.decryptHybrid(longKey));
+        byte[] noKey = toy.encryptHybrid(data);
+        TestMessages.flip(noKey, 0, wrappedCount);
+        assertThrows(IllegalArgumentException.class, () -> toy.decryptHybrid(noKey));
+
+        // sealed data that is longer than what is left, or too short for a nonce and a tag
+        int sealedIndex = 1 + wrappedCount;
+        byte[] longSealed = toy.encryptHybrid(data);
+        TestMessages.flip(longSealed, sealedIndex, PackedWords.getWord(longSealed, sealedIndex) ^ 0xFFFFFFFFL);
+        assertThrows(IllegalArgumentException.class, () -> toy.decryptHybrid(longSealed));
+        byte[] shortSealed = toy.encryptHybrid(data);
+        TestMessages.flip(shortSealed, sealedIndex, PackedWords.getWord(shortSealed, sealedIndex) ^ 27);
+        assertThrows(IllegalArgumentException.class, () -> toy.decryptHybrid(shortSealed));
+
+        // a message that is not from the hybrid scheme at all
+        assertThrows(IllegalArgumentException.class, () -> toy.decryptHybrid(toy.encryptPacked("Hello")));
+    }
+}
@@ -0,0 +1,212 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the server answers every request of every connection, in order, over the loopback address
+ */
+class MessageServerTest {
+    private final Encrypter encrypter = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true);
+    private final Encoder encoder = Encoder.forGenerator("10000011");
+    private MessageServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new MessageServer(encrypter, encoder, 0);
+        server.start();
+    }
+
+    @AfterEach
+    void closeServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void concurrentClientsGetTheirDataBack() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for(int c = 0; c < 8; ++c) {
+                long seed = c;
+                results.add(clients.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    try(Socket socket = connect()) {
+                        DataOutputStream out = output(socket);
+                        DataInputStream in = input(socket);
+                        for(int i = 0; i < 20; ++i) {
+                            byte[] data = TestMessages.randomBytes(random.nextInt(1000), random);
+                            byte[] sent = call(out, in, MessageServer.SEND, data);
+                            assertArrayEquals(data, call(out, in, MessageServer.RECEIVE, sent));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void pipelinedResponsesComeBackInOrder() throws IOException {
+        SplittableRandom random = new SplittableRandom(1);
+        List<byte[]> data = new ArrayList<>();
+        for(int i = 0; i < 200; ++i) {
+            data.add(TestMessages.randomBytes(random.nextInt(200), random));
+        }
+
+        try(Socket socket = connect()) {
+            DataOutputStream out = output(socket);
+            DataInputStream in = input(socket);
+            for(byte[] d : data) {
+                write(out, MessageServer.SEND, d);
+            }
+            out.flush();
+            for(byte[] d : data) {
+                assertArrayEquals(encoder.encode(encrypter.encryptBytes(d)), read(in, MessageServer.OK));
+            }
+        }
+    }
+
+    @Test
+    void aClientThatDoesNotReadIsPushedBack() throws Exception {
+        int count = MessageServer.MAX_PENDING * 8;
+        List<byte[]> data = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(2);
+        for(int i = 0; i < count; ++i) {
+            data.add(TestMessages.randomBytes(8192, random));
+        }
+
+        try(Socket socket = new Socket()) {
+            // small buffers, so that only the server's queues can hold the requests that were not answered yet
+            socket.setReceiveBufferSize(4096);
+            socket.setSendBufferSize(4096);
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+            DataOutputStream out = output(socket);
+            DataInputStream in = input(socket);
+            Thread writer = new Thread(() -> {
+                try {
+                    for(byte[] d : data) {
+                        write(out, MessageServer.SEND, d);
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writer.start();
+
+            writer.join(1000);
+            assertTrue(writer.isAlive(), "the server stopped reading requests that it could not answer");
+            for(byte[] d : data) {
+                assertArrayEquals(encoder.encode(encrypter.encryptBytes(d)), read(in, MessageServer.OK));
+            }
+            writer.join();
+        }
+    }
+
+    @Test
+    void badRequestsAreAnsweredWithAnError() throws IOException {
+        try(Socket socket = connect()) {
+            DataOutputStream out = output(socket);
+            DataInputStream in = input(socket);
+            call(out, in, MessageServer.RECEIVE, new byte[10], MessageServer.ERROR);
+
+            // the framing is lost after a bad operation, so the connection is closed after its answer
+            call(out, in, 3, new byte[0], MessageServer.ERROR);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void closingStopsTheServer() throws IOException, InterruptedException {
+        Socket socket = connect();
+        DataOutputStream out = output(socket);
+        DataInputStream in = input(socket);
+        call(out, in, MessageServer.SEND, new byte[] {1, 2, 3});
+
+        server.close();
+        server.close();
+        try {
+            assertEquals(-1, in.read());
+        } catch (IOException e) {
+            // a reset also means that the connection was dropped
+        } finally {
+            socket.close();
+        }
+        assertThrows(IllegalStateException.class, server::start);
+
+        // the acceptor and the workers see the flag once they are woken, and then end
+        for(Thread thread : Thread.getAllStackTraces().keySet()) {
+            if(thread.getName().startsWith("message-server-")) {
+                thread.join(5000);
+                assertFalse(thread.isAlive(), thread.getName() + " is still running");
+            }
+        }
+    }
+
+    @Test
+    void serversOnlyTakeTheByteAlphabet() {
+        assertThrows(IllegalArgumentException.class, () -> new MessageServer(new Encrypter(), encoder, 0));
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    private static DataOutputStream output(Socket socket) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    private static DataInputStream input(Socket socket) throws IOException {
+        return new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    private static void write(DataOutputStream out, int operation, byte[] payload) throws IOException {
+        out.write(operation);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    private static byte[] read(DataInputStream in, int status) throws IOException {
+        assertEquals(status, in.read());
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return body;
+    }
+
+    private static byte[] call(DataOutputStream out, DataInputStream in, int operation, byte[] payload)
+            throws IOException {
+        return call(out, in, operation, payload, MessageServer.OK);
+    }
+
+    private static byte[] call(DataOutputStream out, DataInputStream in, int operation, byte[] payload, int status)
+            throws IOException {
+        write(out, operation, payload);
+        out.flush();
+        return read(in, status);
+    }
+}
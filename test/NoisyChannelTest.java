@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Tests that the channels flip bits at the rate they claim to, and only where they are allowed to
+ */
+class NoisyChannelTest {
+    private static final long BITS = 1L << 24;
+
+    static Stream<NoisyChannel> channels() {
+        return Stream.of(NoisyChannel.independent(0.01), NoisyChannel.independent(1e-4),
+                NoisyChannel.gilbertElliott(0.001, 0.1, 0, 0.5),
+                NoisyChannel.gilbertElliott(1e-4, 0.05, 1e-5, 0.2));
+    }
+
+    @ParameterizedTest
+    @MethodSource("channels")
+    void measuredErrorRateMatchesTheChannel(NoisyChannel channel) {
+        byte[] data = new byte[(int) (BITS / 8)];
+        long flipped = channel.corrupt(data, 0, BITS, new SplittableRandom(1));
+        assertEquals(flipped, countOnes(data, 0, data.length));
+
+        // bursts make the count vary more than independent flips do, so both get a loose bound
+        double measured = (double) flipped / BITS;
+        assertEquals(channel.getBitErrorRate(), measured, 0.1 * channel.getBitErrorRate(), channel.toString());
+    }
+
+    @Test
+    void headersAndPaddingAreNeverTouched() {
+        // channels that flip a lot of bits, so any that landed outside the words would show
+        SplittableRandom random = new SplittableRandom(2);
+        NoisyChannel[] channels = {NoisyChannel.independent(0.5), NoisyChannel.gilbertElliott(0.1, 0.1, 0.1, 0.9)};
+        for(int trial = 0; trial < 200; ++trial) {
+            NoisyChannel noisy = channels[trial % channels.length];
+            // 15 bit words, so the last byte has padding after the last word unless the count is a multiple of 8
+            int count = 1 + random.nextInt(300);
+            byte[] packed = PackedWords.allocate(7, 15, count);
+            for(int i = 0; i < count; ++i) {
+                PackedWords.putWord(packed, i, random.nextLong(1L << 15));
+            }
+
+            byte[] received = noisy.transmit(packed, random);
+            assertArrayEquals(Arrays.copyOf(packed, PackedWords.HEADER_BYTES),
+                    Arrays.copyOf(received, PackedWords.HEADER_BYTES));
+            int padding = (int) (8 * (packed.length - PackedWords.HEADER_BYTES) - 15L * count);
+            int mask = (1 << padding) - 1;
+            assertEquals(packed[packed.length - 1] & mask, received[received.length - 1] & mask);
+        }
+    }
+
+    @Test
+    void theSameSeedFlipsTheSameBits() {
+        NoisyChannel channel = NoisyChannel.gilbertElliott(0.001, 0.1, 0, 0.5);
+        byte[] first = new byte[10000];
+        byte[] second = new byte[10000];
+        channel.corrupt(first, 0, 8L * first.length, new SplittableRandom(3));
+        channel.corrupt(second, 0, 8L * second.length, new SplittableRandom(3));
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void impossibleProbabilitiesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> NoisyChannel.independent(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> NoisyChannel.independent(1.5));
+        assertThrows(IllegalArgumentException.class, () -> NoisyChannel.independent(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> NoisyChannel.gilbertElliott(0, 0, 0, 0.5));
+    }
+
+    /**
+     * count the bits that are set in part of an array
+     * @param data, the array
+     * @param from, index of the first byte
+     * @param to, index after the last byte
+     * @return the number of ones
+     */
+    private static long countOnes(byte[] data, int from, int to) {
+        long ones = 0;
+        for(int i = from; i < to; ++i) {
+            ones += Integer.bitCount(data[i] & 0xFF);
+        }
+
+        return ones;
+    }
+}
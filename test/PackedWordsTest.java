@@ -0,0 +1,30 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests that words of every width read back the same as they were packed
+ */
+class PackedWordsTest {
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 8, 9, 19, 26, 32, 33, 56, 63})
+    void wordsRoundTrip(int width) {
+        SplittableRandom random = new SplittableRandom(width);
+        long[] words = new long[101];
+        byte[] packed = PackedWords.allocate(width > 5 ? 5 : 0, width, words.length);
+        for(int i = 0; i < words.length; ++i) {
+            words[i] = random.nextLong() & (-1L >>> (64 - width));
+            PackedWords.putWord(packed, i, words[i]);
+        }
+
+        assertEquals(width > 5 ? 5 : 0, PackedWords.getParityBits(packed));
+        assertEquals(width, PackedWords.getWidth(packed));
+        assertEquals(words.length, PackedWords.getCount(packed));
+        assertEquals(PackedWords.HEADER_BYTES + (words.length * width + 7) / 8, packed.length);
+        for(int i = 0; i < words.length; ++i) {
+            assertEquals(words[i], PackedWords.getWord(packed, i));
+        }
+    }
+}
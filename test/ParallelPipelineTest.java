@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the parallel pipeline gives the same bytes as the separate stages, for messages that are split into many
+ * chunks and ones that end partway through a chunk
+ */
+class ParallelPipelineTest {
+    private static final int CHUNK_BLOCKS = 2048; // the same as ParallelPipeline's
+
+    // more threads than this machine may have cores, so that chunks are always split off and run apart
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final Encoder encoder = Encoder.forGenerator("10000011");
+
+    @AfterEach
+    void shutDownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void bytesMatchTheSeparateStages() {
+        Encrypter encrypter = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true);
+        ParallelPipeline pipeline = new ParallelPipeline(encrypter, encoder, pool);
+        SplittableRandom random = new SplittableRandom(1);
+        for(int blocks : new int[] {1, CHUNK_BLOCKS - 1, CHUNK_BLOCKS, 5 * CHUNK_BLOCKS + 777}) {
+            // the last block is a short one, except when there is only one
+            byte[] data = TestMessages.randomBytes(blocks * encrypter.getSymbolsPerBlock() - 1, random);
+            byte[] packed = pipeline.encryptAndEncode(data);
+            assertArrayEquals(encoder.encode(encrypter.encryptBytes(data)), packed, blocks + " blocks");
+            assertArrayEquals(data, pipeline.decodeAndDecryptBytes(packed), blocks + " blocks");
+        }
+    }
+
+    @Test
+    void textMatchesTheSeparateStages() {
+        Encrypter encrypter = new Encrypter();
+        ParallelPipeline pipeline = new ParallelPipeline(encrypter, encoder, pool);
+        String message = "Hello, World! How are you today? ".repeat(3 * CHUNK_BLOCKS / 10 + 1);
+
+        byte[] packed = pipeline.encryptAndEncode(message);
+        assertArrayEquals(encoder.encode(encrypter.encryptPacked(message)), packed);
+        assertEquals(message, pipeline.decodeAndDecrypt(packed));
+    }
+
+    @Test
+    void errorsAreCorrectedInEveryChunk() {
+        Encrypter encrypter = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true);
+        ParallelPipeline pipeline = new ParallelPipeline(encrypter, encoder, pool);
+        SplittableRandom random = new SplittableRandom(2);
+        byte[] data = TestMessages.randomBytes(3 * CHUNK_BLOCKS * encrypter.getSymbolsPerBlock() + 5, random);
+
+        byte[] packed = pipeline.encryptAndEncode(data);
+        TestMessages.corruptWords(packed, 1, random);
+        assertArrayEquals(data, pipeline.decodeAndDecryptBytes(packed));
+    }
+}
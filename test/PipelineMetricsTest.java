@@ -0,0 +1,126 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the stages are counted and timed, and that turning recording off stops it
+ * The metrics are shared by the whole JVM, so every test starts from a reset
+ */
+class PipelineMetricsTest {
+    private final PipelineMetrics metrics = PipelineMetrics.get();
+    private final Encrypter encrypter = new Encrypter();
+    private final Encoder encoder = Encoder.forGenerator("10000011");
+
+    @BeforeEach
+    void resetMetrics() {
+        metrics.setEnabled(true);
+        metrics.reset();
+    }
+
+    @Test
+    void everyStageIsCounted() {
+        byte[] encrypted = encrypter.encryptPacked("Hello, World!");
+        byte[] encoded = encoder.encode(encrypted);
+        encrypter.decrypt(encoder.decode(encoded));
+
+        int words = PackedWords.getCount(encrypted);
+        assertEquals(13, metrics.getSymbolsEncrypted());
+        assertEquals(words, metrics.getWordsEncoded());
+        assertEquals(words, metrics.getWordsDecoded());
+        assertEquals(0, metrics.getWordsCorrected());
+        assertEquals(0, metrics.getWordsUncorrectable());
+        assertEquals(13, metrics.getSymbolsDecrypted());
+        for(PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+            assertEquals(1, metrics.getCalls(stage.name()), stage.name());
+            assertTrue(metrics.getTotalNanos(stage.name()) >= 0, stage.name());
+        }
+    }
+
+    @Test
+    void correctedAndUncorrectableWordsAreCounted() {
+        byte[] encoded = encoder.encode(encrypter.encryptPacked("Hello"));
+        int width = PackedWords.getWidth(encoded);
+        // an error in the data bits, since one in the parity bits leaves the decoded word as it was
+        TestMessages.flip(encoded, 0, 1L << (width - 1));
+
+        // two errors that a shortened codeword cannot hold, which the decoder knows it cannot correct
+        long codeword = PackedWords.getWord(encoded, 1);
+        long pattern = 0;
+        for(int i = 0; i < width && pattern == 0; ++i) {
+            for(int j = i + 1; j < width && pattern == 0; ++j) {
+                long errors = 1L << i | 1L << j;
+                pattern = encoder.decodeWord(codeword ^ errors, width) == -1 ? errors : 0;
+            }
+        }
+        TestMessages.flip(encoded, 1, pattern);
+
+        encoder.decode(encoded);
+        assertEquals(1, metrics.getCalls("DECODE"));
+        assertEquals(PackedWords.getCount(encoded), metrics.getWordsDecoded());
+        assertEquals(1, metrics.getWordsCorrected());
+        assertEquals(1, metrics.getWordsUncorrectable());
+    }
+
+    @Test
+    void percentilesAreTheUpperEndsOfTheirBuckets() {
+        assertEquals(0, metrics.getLatencyPercentile("ENCRYPT", 50));
+
+        // bucket i holds latencies from 2^(i-1) to 2^i - 1 nanoseconds
+        for(int i = 0; i < 90; ++i) {
+            PipelineMetrics.recordTime(PipelineMetrics.Stage.ENCRYPT, 100, 1);
+        }
+        for(int i = 0; i < 10; ++i) {
+            PipelineMetrics.recordTime(PipelineMetrics.Stage.ENCRYPT, 5000, 1);
+        }
+        assertEquals(127, metrics.getLatencyPercentile("ENCRYPT", 0));
+        assertEquals(127, metrics.getLatencyPercentile("ENCRYPT", 50));
+        assertEquals(127, metrics.getLatencyPercentile("ENCRYPT", 90));
+        assertEquals(8191, metrics.getLatencyPercentile("ENCRYPT", 90.5));
+        assertEquals(8191, metrics.getLatencyPercentile("ENCRYPT", 100));
+        assertEquals(100 * 90 + 5000 * 10, metrics.getTotalNanos("ENCRYPT"));
+
+        PipelineMetrics.recordTime(PipelineMetrics.Stage.ENCODE, 0, 1);
+        assertEquals(0, metrics.getLatencyPercentile("ENCODE", 100));
+        PipelineMetrics.recordTime(PipelineMetrics.Stage.ENCODE, 128, 1);
+        assertEquals(255, metrics.getLatencyPercentile("ENCODE", 100));
+        PipelineMetrics.recordTime(PipelineMetrics.Stage.ENCODE, Long.MAX_VALUE, 1);
+        assertEquals(Long.MAX_VALUE, metrics.getLatencyPercentile("ENCODE", 100));
+
+        assertThrows(IllegalArgumentException.class, () -> metrics.getLatencyPercentile("ENCRYPT", 101));
+        assertThrows(IllegalArgumentException.class, () -> metrics.getLatencyPercentile("SEND", 50));
+    }
+
+    @Test
+    void nothingIsRecordedWhileDisabled() {
+        metrics.setEnabled(false);
+        try {
+            encrypter.decrypt(encoder.decode(encoder.encode(encrypter.encryptPacked("Hello"))));
+            for(PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+                assertEquals(0, metrics.getCalls(stage.name()), stage.name());
+            }
+            assertEquals(0, metrics.getSymbolsEncrypted());
+        } finally {
+            metrics.setEnabled(true);
+        }
+
+        encoder.encode(encrypter.encryptPacked("Hello"));
+        assertEquals(1, metrics.getCalls("ENCODE"));
+    }
+
+    @Test
+    void codebooksAreCountedAsOneStage() {
+        Codebook codebook = new Codebook(encrypter, encoder);
+        metrics.reset();
+        codebook.decode(codebook.encode("Hello"));
+
+        assertEquals(1, metrics.getCalls("ENCRYPT"));
+        assertEquals(1, metrics.getCalls("DECRYPT"));
+        assertEquals(0, metrics.getCalls("ENCODE"));
+        assertEquals(0, metrics.getCalls("DECODE"));
+        assertEquals(5, metrics.getSymbolsEncrypted());
+        assertEquals(5, metrics.getSymbolsDecrypted());
+    }
+}
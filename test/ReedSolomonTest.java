@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests of the Reed-Solomon code, with byte errors, erasures and bursts spread over full and shortened blocks
+ */
+class ReedSolomonTest {
+    private static final String GENERATOR = "100011101";
+    private static final int BLOCK_BYTES = 255;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 16, 32})
+    void correctsUpToHalfTheParityInErrors(int paritySymbols) {
+        ReedSolomon code = new ReedSolomon(GENERATOR, paritySymbols);
+        SplittableRandom random = new SplittableRandom(paritySymbols);
+        byte[] data = TestMessages.randomBytes(3 * code.getDataSymbols() + 17, random);
+        byte[] encoded = code.encode(data);
+        assertEquals(code.getEncodedLength(data.length), encoded.length);
+        assertArrayEquals(data, code.decode(encoded));
+
+        for(int from = 0; from < encoded.length; from += BLOCK_BYTES) {
+            int length = Math.min(BLOCK_BYTES, encoded.length - from);
+            for(int i = 0; i < paritySymbols / 2; ++i) {
+                encoded[from + random.nextInt(length)] ^= (byte) (1 + random.nextInt(255));
+            }
+        }
+        assertArrayEquals(data, code.decode(encoded));
+    }
+
+    @Test
+    void correctsErasuresAndErrorsTogether() {
+        ReedSolomon code = new ReedSolomon(GENERATOR, 32);
+        SplittableRandom random = new SplittableRandom(5);
+        byte[] data = TestMessages.randomBytes(2 * code.getDataSymbols(), random);
+        byte[] encoded = code.encode(data);
+
+        // 2 errors + 28 erasures = 32 in each block, the erasures are bytes 0-27 and the errors come after them
+        int[] erasures = new int[2 * 28];
+        for(int block = 0; block < 2; ++block) {
+            for(int i = 0; i < 28; ++i) {
+                erasures[block * 28 + i] = block * BLOCK_BYTES + i;
+                encoded[block * BLOCK_BYTES + i] = (byte) random.nextInt(256);
+            }
+            encoded[block * BLOCK_BYTES + 100] ^= 0x5A;
+            encoded[block * BLOCK_BYTES + 200] ^= (byte) 0xFF;
+        }
+        assertArrayEquals(data, code.decode(encoded, erasures));
+    }
+
+    @Test
+    void correctsABurstWithinOneBlock() {
+        ReedSolomon code = new ReedSolomon(GENERATOR, 32);
+        byte[] data = TestMessages.randomBytes(1000, new SplittableRandom(6));
+        byte[] encoded = code.encode(data);
+
+        // 128 bits in a row are wrong, which is 16 bytes of one block
+        for(int i = 64; i < 80; ++i) {
+            encoded[i] = (byte) ~encoded[i];
+        }
+        assertArrayEquals(data, code.decode(encoded));
+    }
+
+    @Test
+    void blocksWithTooManyErrorsArePassedOn() {
+        ReedSolomon code = new ReedSolomon(GENERATOR, 4);
+        byte[] data = TestMessages.randomBytes(100, new SplittableRandom(7));
+        byte[] encoded = code.encode(data);
+        for(int i = 0; i < 10; ++i) {
+            encoded[i * 7] ^= 1;
+        }
+
+        // too many errors are either found or miscorrected, but the length of the data is kept either way
+        assertEquals(data.length, code.decode(encoded).length);
+    }
+}
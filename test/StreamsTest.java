@@ -0,0 +1,132 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests that the four streams chained together give back what went in, and refuse streams that are cut short or have
+ * messages that are too big
+ */
+class StreamsTest {
+    private static final int FRAME_SYMBOLS = 1 << 16; // the same as EncryptingOutputStream's
+
+    private final Encrypter encrypter = new Encrypter(new Encrypter().getKey(), SymbolAlphabet.BYTES, true);
+    private final Encoder encoder = Encoder.forGenerator("10000011");
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, FRAME_SYMBOLS - 1, FRAME_SYMBOLS, FRAME_SYMBOLS + 1, 3 * FRAME_SYMBOLS + 5})
+    void theFullChainGivesBackTheData(int length) throws IOException {
+        byte[] data = TestMessages.randomBytes(length, new SplittableRandom(length));
+        byte[] sent = send(data, false);
+        assertArrayEquals(data, receive(sent, PackedWords.DEFAULT_MAX_FRAME_BYTES).readAllBytes());
+    }
+
+    @Test
+    void singleBytesGoThroughTheChain() throws IOException {
+        byte[] data = TestMessages.randomBytes(FRAME_SYMBOLS + 100, new SplittableRandom(1));
+        byte[] sent = send(data, true);
+        assertArrayEquals(send(data, false), sent);
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        try(InputStream in = receive(sent, PackedWords.DEFAULT_MAX_FRAME_BYTES)) {
+            int b;
+            while((b = in.read()) != -1) {
+                received.write(b);
+            }
+        }
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test
+    void flushingEndsAMessage() throws IOException {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        try(OutputStream out = new EncryptingOutputStream(new EncodingOutputStream(sent, encoder), encrypter)) {
+            out.write(new byte[] {1, 2, 3});
+            out.flush();
+            assertEquals(encoder.encode(encrypter.encryptBytes(new byte[] {1, 2, 3})).length, sent.size());
+            out.write(4);
+        }
+
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, receive(sent.toByteArray(), 1 << 20).readAllBytes());
+    }
+
+    @Test
+    void messagesOverTheLimitAreRefused() throws IOException {
+        byte[] sent = send(TestMessages.randomBytes(FRAME_SYMBOLS, new SplittableRandom(2)), false);
+        assertThrows(IOException.class, () -> receive(sent, 1000).readAllBytes());
+
+        // the encoding stream refuses the header before it makes room for the message
+        byte[] packed = encrypter.encryptBytes(new byte[1000]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingOutputStream encoding = new EncodingOutputStream(out, encoder, 100);
+        assertThrows(IOException.class, () -> encoding.write(packed));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    void truncatedStreamsAreRefused() throws IOException {
+        byte[] sent = send(TestMessages.randomBytes(1000, new SplittableRandom(3)), false);
+        for(int length : new int[] {3, PackedWords.HEADER_BYTES, sent.length - 1}) {
+            InputStream in = receive(Arrays.copyOf(sent, length), PackedWords.DEFAULT_MAX_FRAME_BYTES);
+            assertThrows(IOException.class, in::readAllBytes, length + " bytes");
+        }
+
+        // an encoding stream that is closed partway through a message says so, but only the first time
+        byte[] packed = encrypter.encryptBytes(new byte[100]);
+        EncodingOutputStream encoding = new EncodingOutputStream(new ByteArrayOutputStream(), encoder);
+        encoding.write(packed, 0, packed.length - 1);
+        assertThrows(IOException.class, encoding::close);
+        encoding.close();
+    }
+
+    @Test
+    void bytesThatAreNotMessagesAreRefused() {
+        byte[] garbage = {0, 0, 0, 0, 0, 1, 0, 0};
+        assertThrows(IOException.class, () -> receive(garbage, PackedWords.DEFAULT_MAX_FRAME_BYTES).readAllBytes());
+        EncodingOutputStream encoding = new EncodingOutputStream(new ByteArrayOutputStream(), encoder);
+        assertThrows(IOException.class, () -> encoding.write(garbage));
+    }
+
+    /**
+     * send data through an encrypting stream and an encoding stream
+     * @param data, the data
+     * @param singleBytes, whether the data is written a byte at a time
+     * @return the packed encrypted and encoded messages
+     * @throws IOException if a stream fails
+     */
+    private byte[] send(byte[] data, boolean singleBytes) throws IOException {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        try(OutputStream out = new EncryptingOutputStream(new EncodingOutputStream(sent, encoder), encrypter)) {
+            if(singleBytes) {
+                for(byte b : data) {
+                    out.write(b);
+                }
+            } else {
+                out.write(data);
+            }
+        }
+
+        return sent.toByteArray();
+    }
+
+    /**
+     * make the decoding and decrypting streams that read back what send wrote
+     * @param sent, the packed encrypted and encoded messages
+     * @param maxFrameBytes, most bytes a message can have
+     * @return the stream of the data
+     */
+    private InputStream receive(byte[] sent, int maxFrameBytes) {
+        return new DecryptingInputStream(new DecodingInputStream(new ByteArrayInputStream(sent), encoder,
+                maxFrameBytes), encrypter, maxFrameBytes);
+    }
+}
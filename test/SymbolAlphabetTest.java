@@ -0,0 +1,46 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the alphabets map messages to symbols and back, and that the byte alphabet has no characters to look up
+ */
+class SymbolAlphabetTest {
+    @Test
+    void charactersMapToTheirSymbols() {
+        SymbolAlphabet alphabet = new SymbolAlphabet(new char[] {'a', 'b', '!'});
+        assertEquals(2, alphabet.indexOf('!'));
+        assertEquals(-1, alphabet.indexOf('c'));
+        assertEquals(-1, alphabet.indexOf('\uffff'));
+        assertEquals('b', alphabet.charAt(1));
+        assertArrayEquals(new int[] {0, 2, 1}, alphabet.toSymbols("a!b"));
+        assertEquals("ba", alphabet.fromSymbols(new int[] {1, 0, 2}, 2));
+        assertThrows(IllegalArgumentException.class, () -> alphabet.toSymbols("abc"));
+    }
+
+    @Test
+    void theDefaultAlphabetTakesEveryLegalCharacter() {
+        String message = "Hello, World! How are you today? 0123456789.";
+        assertEquals(message, SymbolAlphabet.DEFAULT.fromSymbols(SymbolAlphabet.DEFAULT.toSymbols(message),
+                message.length()));
+        assertThrows(IllegalArgumentException.class, () -> SymbolAlphabet.DEFAULT.toSymbols("50%"));
+    }
+
+    @Test
+    void theByteAlphabetWorksOnUtf8() {
+        String message = "Grüße, 世界";
+        int[] symbols = SymbolAlphabet.BYTES.toSymbols(message);
+        assertEquals(message.getBytes(StandardCharsets.UTF_8).length, symbols.length);
+        assertEquals(message, SymbolAlphabet.BYTES.fromSymbols(symbols, symbols.length));
+        assertEquals(256, SymbolAlphabet.BYTES.size());
+    }
+
+    @Test
+    void theByteAlphabetHasNoCharactersToLookUp() {
+        assertThrows(IllegalStateException.class, () -> SymbolAlphabet.BYTES.indexOf('a'));
+        assertThrows(IllegalStateException.class, () -> SymbolAlphabet.BYTES.charAt(65));
+    }
+}
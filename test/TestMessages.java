@@ -0,0 +1,78 @@
+import java.util.SplittableRandom;
+
+/**
+ * Helpers that make random data and put errors into packed messages, for the tests of the codes and the stages that
+ * use them
+ */
+final class TestMessages {
+    private TestMessages() {
+    }
+
+    /**
+     * make random bytes
+     * @param length, number of bytes
+     * @param random, source of the bytes
+     * @return the bytes
+     */
+    static byte[] randomBytes(int length, SplittableRandom random) {
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; ++i) {
+            bytes[i] = (byte) random.nextInt(256);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * flip bits of one word of a packed message in place
+     * putWord only sets bits, so the bits are flipped where the word sits instead of writing the word back
+     * @param packed, the packed message
+     * @param index, index of the word
+     * @param pattern, bits of the word to flip, bit i is the coefficient of x^i
+     */
+    static void flip(byte[] packed, int index, long pattern) {
+        int width = PackedWords.getWidth(packed);
+        for(int bit = 0; bit < width; ++bit) {
+            if((pattern & (1L << bit)) != 0) {
+                // words are packed with their most significant bit first
+                long position = (long) index * width + width - 1 - bit;
+                packed[PackedWords.HEADER_BYTES + (int) (position >>> 3)] ^= (byte) (0x80 >>> (position & 7));
+            }
+        }
+    }
+
+    /**
+     * make a pattern of distinct bit errors
+     * @param errors, number of bits to set
+     * @param length, number of bits the errors can be in
+     * @param random, source of the locations
+     * @return the pattern
+     */
+    static long pattern(int errors, int length, SplittableRandom random) {
+        long pattern = 0;
+        while(Long.bitCount(pattern) < errors) {
+            pattern |= 1L << random.nextInt(length);
+        }
+
+        return pattern;
+    }
+
+    /**
+     * put up to some number of bit errors into every word of a packed message
+     * @param packed, the packed message, which is changed in place
+     * @param maxErrors, largest number of errors in a word
+     * @param random, source of the errors
+     * @return the number of bits that were flipped
+     */
+    static int corruptWords(byte[] packed, int maxErrors, SplittableRandom random) {
+        int width = PackedWords.getWidth(packed);
+        int flipped = 0;
+        for(int i = 0; i < PackedWords.getCount(packed); ++i) {
+            int errors = random.nextInt(maxErrors + 1);
+            flip(packed, i, pattern(errors, width, random));
+            flipped += errors;
+        }
+
+        return flipped;
+    }
+}